@@ -0,0 +1,41 @@
+package fenix.aw.reader.benchmarks;
+
+import fenix.aw.reader.service.impl.LinearSynthesisCostModel;
+import fenix.aw.reader.service.impl.TTSBatchPlanner;
+import fenix.aw.reader.util.TextChunker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost-based batch packing over the chunks of a whole book.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchPlanningBenchmark {
+
+    @Param({"100", "2000"})
+    public int pages;
+
+    @Param({"5000", "20000"})
+    public double targetMillis;
+
+    private List<String> chunks;
+    private LinearSynthesisCostModel costModel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        chunks = TextChunker.splitIntoChunks(SampleDocuments.text(SampleDocuments.TextShape.PROSE, pages, 42), 1000);
+        costModel = new LinearSynthesisCostModel(200, 4);
+    }
+
+    @Benchmark
+    public List<List<String>> plan() {
+        return new TTSBatchPlanner(costModel, targetMillis, 20).plan(chunks);
+    }
+}
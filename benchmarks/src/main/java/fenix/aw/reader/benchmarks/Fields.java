@@ -0,0 +1,23 @@
+package fenix.aw.reader.benchmarks;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Sets the {@code @Value} fields Spring would normally inject, so services can be benchmarked without a context.
+ */
+public final class Fields {
+
+    private Fields() {
+    }
+
+    public static void set(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        if (field == null) {
+            throw new IllegalArgumentException("No field " + name + " on " + target.getClass().getName());
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
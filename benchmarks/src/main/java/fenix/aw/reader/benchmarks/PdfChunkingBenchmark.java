@@ -0,0 +1,64 @@
+package fenix.aw.reader.benchmarks;
+
+import fenix.aw.reader.util.PDFChunk;
+import fenix.aw.reader.util.PDFChunkSource;
+import fenix.aw.reader.util.PDFProcessor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end extraction plus chunking of generated PDFs, the first stage of every audiobook job.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PdfChunkingBenchmark {
+
+    @Param({"10", "200"})
+    public int pages;
+
+    @Param({"PROSE", "TABLE", "DENSE"})
+    public SampleDocuments.TextShape shape;
+
+    @Param({"1", "4"})
+    public int partitions;
+
+    @Param("1000")
+    public int chunkSize;
+
+    private File pdf;
+    private PDFProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        pdf = SampleDocuments.pdf(shape, pages, 42);
+        processor = new PDFProcessor(partitions);
+    }
+
+    @Benchmark
+    public List<String> splitPdfIntoChunks() throws Exception {
+        return processor.splitPdfIntoChunks(pdf, chunkSize);
+    }
+
+    @Benchmark
+    public List<String> splitPdfIntoSentences() throws Exception {
+        return processor.splitPdfIntoSentences(pdf, 5);
+    }
+
+    @Benchmark
+    public void streamChunks(Blackhole blackhole) throws Exception {
+        try (PDFChunkSource source = processor.openChunkSource(pdf, chunkSize, 10)) {
+            while (source.hasNext()) {
+                PDFChunk chunk = source.next();
+                blackhole.consume(chunk);
+            }
+        }
+    }
+}
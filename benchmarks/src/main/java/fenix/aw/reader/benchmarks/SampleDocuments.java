@@ -0,0 +1,91 @@
+package fenix.aw.reader.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Deterministic sample text and PDFs for the benchmarks, in shapes that stress different chunker paths.
+ */
+public final class SampleDocuments {
+
+    public enum TextShape {
+        // Ordinary sentences: chunks break at ". "
+        PROSE,
+        // Numeric tables: spaces but no sentence ends
+        TABLE,
+        // OCR junk: neither periods nor spaces, the worst case for backward searches
+        DENSE
+    }
+
+    private static final int LINES_PER_PAGE = 45;
+    private static final int CHARACTERS_PER_LINE = 90;
+    private static final String[] WORDS = {
+            "the", "reader", "converts", "every", "page", "into", "speech", "while", "chapters",
+            "stream", "audio", "quickly", "document", "narration", "voice", "sentence", "long", "short"
+    };
+
+    private SampleDocuments() {
+    }
+
+    public static String text(TextShape shape, int pages, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(pages * LINES_PER_PAGE * (CHARACTERS_PER_LINE + 1));
+        for (int i = 0; i < pages * LINES_PER_PAGE; i++) {
+            text.append(line(shape, random)).append('\n');
+        }
+        return text.toString();
+    }
+
+    public static File pdf(TextShape shape, int pages, long seed) throws IOException {
+        Path file = Files.createTempFile("benchmark-" + shape.name().toLowerCase() + "-" + pages + "-", ".pdf");
+        file.toFile().deleteOnExit();
+        Random random = new Random(seed);
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 9);
+                    content.setLeading(14);
+                    content.newLineAtOffset(40, 740);
+                    for (int i = 0; i < LINES_PER_PAGE; i++) {
+                        content.showText(line(shape, random));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file.toFile();
+    }
+
+    private static String line(TextShape shape, Random random) {
+        StringBuilder line = new StringBuilder(CHARACTERS_PER_LINE + 16);
+        while (line.length() < CHARACTERS_PER_LINE) {
+            switch (shape) {
+                case PROSE:
+                    line.append(WORDS[random.nextInt(WORDS.length)]);
+                    line.append(random.nextInt(8) == 0 ? ". " : " ");
+                    break;
+                case TABLE:
+                    line.append(random.nextInt(100_000)).append("   ");
+                    break;
+                default:
+                    line.append((char) ('a' + random.nextInt(26)));
+                    break;
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,232 @@
+package fenix.aw.reader.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fenix.aw.reader.model.CombineResponse;
+import fenix.aw.reader.model.TTSBatchRequest;
+import fenix.aw.reader.model.TTSBatchResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * In-process stand-in for the Python TTS service. Every chunk is answered with the same short
+ * silent WAV after a delay drawn from a configurable distribution, and a share of requests can be
+ * failed with 503. With a capacity set, requests beyond it are turned away with 429 and a
+ * Retry-After header, the way an overloaded service behaves.
+ */
+public class StubTTSServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        // Without TCP_NODELAY, Nagle plus delayed ACKs add ~40ms to every response and swamp the numbers
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Path segment;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong combines = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public enum Distribution {
+        // Always the mean
+        FIXED,
+        // Evenly spread between zero and twice the mean
+        UNIFORM,
+        // Memoryless, a long tail of slow requests
+        EXPONENTIAL,
+        // Mostly near the mean with occasional stragglers several times slower
+        LOGNORMAL
+    }
+
+    private volatile Distribution distribution = Distribution.FIXED;
+    private volatile long latencyMillis;
+    private volatile double latencyMicrosPerChar;
+    private volatile double failureRate;
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile long combineLatencyMillis;
+
+    public StubTTSServer(Path workDirectory) throws IOException {
+        Files.createDirectories(workDirectory);
+        this.segment = writeSilence(workDirectory.resolve("segment.wav"));
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.setExecutor(executor);
+        server.createContext("/tts", this::synthesize);
+        server.createContext("/combine", exchange -> {
+            combines.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            sleepMicros(combineLatencyMillis * 1000);
+            respond(exchange, 200, MAPPER.writeValueAsBytes(new CombineResponse(segment.toString())));
+        });
+        server.start();
+    }
+
+    public StubTTSServer latency(long millis, double microsPerChar) {
+        return latency(Distribution.FIXED, millis, microsPerChar);
+    }
+
+    /**
+     * Each request takes {@code millis + microsPerChar * characters} on average, scaled by a factor
+     * drawn from {@code distribution}.
+     */
+    public StubTTSServer latency(Distribution distribution, long millis, double microsPerChar) {
+        this.distribution = distribution;
+        this.latencyMillis = millis;
+        this.latencyMicrosPerChar = microsPerChar;
+        return this;
+    }
+
+    /**
+     * Requests beyond {@code capacity} concurrent ones are answered with 429.
+     */
+    public StubTTSServer capacity(int capacity) {
+        this.capacity = capacity <= 0 ? Integer.MAX_VALUE : capacity;
+        return this;
+    }
+
+    public StubTTSServer combineLatency(long millis) {
+        this.combineLatencyMillis = millis;
+        return this;
+    }
+
+    public StubTTSServer failureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    public String ttsUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/tts";
+    }
+
+    public String combineUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/combine";
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public long getCombines() {
+        return combines.get();
+    }
+
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void synthesize(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        TTSBatchRequest request = MAPPER.readValue(exchange.getRequestBody(), TTSBatchRequest.class);
+        int current = inFlight.incrementAndGet();
+        try {
+            if (current > capacity) {
+                rejections.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                respond(exchange, 429, "{}".getBytes());
+                return;
+            }
+            peakInFlight.accumulateAndGet(current, Math::max);
+
+            int characters = 0;
+            for (String chunk : request.text()) {
+                characters += chunk.length();
+            }
+            double meanMicros = latencyMillis * 1000 + latencyMicrosPerChar * characters;
+            sleepMicros((long) (meanMicros * factor(distribution)));
+
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failures.incrementAndGet();
+                respond(exchange, 503, "{}".getBytes());
+                return;
+            }
+            TTSBatchResponse response = new TTSBatchResponse(
+                    Collections.nCopies(request.text().size(), segment.toString()));
+            respond(exchange, 200, MAPPER.writeValueAsBytes(response));
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // A random factor with mean 1
+    private static double factor(Distribution distribution) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (distribution) {
+            case UNIFORM:
+                return 2 * random.nextDouble();
+            case EXPONENTIAL:
+                return -Math.log(1 - random.nextDouble());
+            case LOGNORMAL:
+                // sigma 0.5, shifted so the mean stays at 1
+                return Math.exp(0.5 * random.nextGaussian() - 0.125);
+            default:
+                return 1;
+        }
+    }
+
+    private static void sleepMicros(long micros) {
+        if (micros <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Path writeSilence(Path file) throws IOException {
+        AudioFormat format = new AudioFormat(22050, 16, 1, true, false);
+        // A tenth of a second of silence
+        int frames = (int) format.getFrameRate() / 10;
+        byte[] data = new byte[frames * format.getFrameSize()];
+        try (AudioInputStream audio = new AudioInputStream(new ByteArrayInputStream(data), format, frames)) {
+            AudioSystem.write(audio, AudioFileFormat.Type.WAVE, file.toFile());
+        }
+        return file;
+    }
+}
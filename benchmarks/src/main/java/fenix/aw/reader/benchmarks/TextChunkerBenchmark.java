@@ -0,0 +1,42 @@
+package fenix.aw.reader.benchmarks;
+
+import fenix.aw.reader.util.TextChunker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunking alone, on text that is already extracted, so chunker regressions are not hidden by PDF parsing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextChunkerBenchmark {
+
+    @Param({"100", "2000"})
+    public int pages;
+
+    @Param({"PROSE", "TABLE", "DENSE"})
+    public SampleDocuments.TextShape shape;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = SampleDocuments.text(shape, pages, 42);
+    }
+
+    @Benchmark
+    public List<String> splitIntoChunks() {
+        return TextChunker.splitIntoChunks(text, 1000);
+    }
+
+    @Benchmark
+    public List<String> splitIntoSentenceChunks() {
+        return TextChunker.splitIntoSentenceChunks(text, 5);
+    }
+}
@@ -0,0 +1,330 @@
+package fenix.aw.reader.benchmarks.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fenix.aw.reader.Application;
+import fenix.aw.reader.benchmarks.SampleDocuments;
+import fenix.aw.reader.benchmarks.StubTTSServer;
+import fenix.aw.reader.model.DocumentStatus;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of the audiobook pipeline that runs offline. Starts the application in this JVM
+ * on an in-memory H2 database, points {@code python.tts.url} and {@code python.combine.url} at a
+ * {@link StubTTSServer}, uploads generated PDFs through {@code POST /} and converts them through
+ * {@code POST /audiobooks} with a fixed number of concurrent clients, each polling its job until it
+ * finishes; a submission refused with 429 is retried after its Retry-After. Prints throughput, job latency percentiles, peak threads and heap, and writes the same
+ * numbers as JSON so runs with different settings can be compared.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar fenix.aw.reader.benchmarks.loadtest.LoadTest \
+ *     --documents=40 --concurrency=8 --pages=20 --latency-ms=300 --latency-distribution=LOGNORMAL \
+ *     --error-rate=0.02 --capacity=16 --tts.concurrency.max=16
+ * </pre>
+ *
+ * Options not listed in {@link #DEFAULTS} are passed to the application as Spring properties.
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("documents", "20");
+        DEFAULTS.put("concurrency", "4");
+        DEFAULTS.put("pages", "10");
+        DEFAULTS.put("shape", "PROSE");
+        DEFAULTS.put("latency-ms", "200");
+        DEFAULTS.put("latency-us-per-char", "20");
+        DEFAULTS.put("latency-distribution", "LOGNORMAL");
+        DEFAULTS.put("error-rate", "0");
+        // Concurrent requests the stub accepts before answering 429, 0 for no limit
+        DEFAULTS.put("capacity", "0");
+        DEFAULTS.put("combine-latency-ms", "0");
+        DEFAULTS.put("timeout-s", "600");
+        DEFAULTS.put("poll-ms", "100");
+        DEFAULTS.put("work-dir", "");
+        DEFAULTS.put("out", "loadtest-result.json");
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        Map<String, String> springProperties = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            (DEFAULTS.containsKey(name) ? options : springProperties).put(name, value);
+        }
+        System.exit(new LoadTest(options, springProperties).run() ? 0 : 1);
+    }
+
+    private final Map<String, String> options;
+    private final Map<String, String> springProperties;
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    private LoadTest(Map<String, String> options, Map<String, String> springProperties) {
+        this.options = options;
+        this.springProperties = springProperties;
+    }
+
+    private boolean run() throws Exception {
+        Path workDirectory = options.get("work-dir").isEmpty()
+                ? Files.createTempDirectory("aw-reader-loadtest")
+                : Files.createDirectories(Paths.get(options.get("work-dir")));
+        int documents = intOption("documents");
+        int concurrency = intOption("concurrency");
+
+        try (StubTTSServer stub = new StubTTSServer(workDirectory.resolve("stub"))) {
+            stub.latency(StubTTSServer.Distribution.valueOf(options.get("latency-distribution")),
+                            intOption("latency-ms"), Double.parseDouble(options.get("latency-us-per-char")))
+                    .failureRate(Double.parseDouble(options.get("error-rate")))
+                    .capacity(intOption("capacity"))
+                    .combineLatency(intOption("combine-latency-ms"));
+
+            try (ConfigurableApplicationContext context = startApplication(workDirectory, stub)) {
+                String baseUrl = "http://127.0.0.1:"
+                        + ((WebServerApplicationContext) context).getWebServer().getPort();
+
+                List<String> fileNames = new ArrayList<>();
+                long uploadStart = System.nanoTime();
+                for (int i = 0; i < documents; i++) {
+                    fileNames.add(upload(baseUrl, i));
+                }
+                long uploadNanos = System.nanoTime() - uploadStart;
+
+                ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>(fileNames);
+                List<JobResult> results = Collections.synchronizedList(new ArrayList<>());
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(intOption("timeout-s"));
+                ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+
+                try (ResourceSampler sampler = new ResourceSampler(Metrics.globalRegistry, 50)) {
+                    long start = System.nanoTime();
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int i = 0; i < concurrency; i++) {
+                        futures.add(clients.submit(() -> {
+                            String fileName;
+                            while ((fileName = pending.poll()) != null) {
+                                results.add(convert(baseUrl, fileName, deadline));
+                            }
+                            return null;
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                    long elapsedNanos = System.nanoTime() - start;
+                    clients.shutdown();
+
+                    Map<String, Object> report = report(results, elapsedNanos, uploadNanos, sampler, stub);
+                    System.out.println(MAPPER.writeValueAsString(report));
+                    File out = new File(options.get("out"));
+                    MAPPER.writeValue(out, report);
+                    System.out.println("Results written to " + out.getAbsolutePath());
+                }
+                return results.stream().allMatch(result -> "COMPLETED".equals(result.status));
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication(Path workDirectory, StubTTSServer stub) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("python.tts.url", stub.ttsUrl());
+        properties.put("python.combine.url", stub.combineUrl());
+        properties.put("storage.location", workDirectory.resolve("upload_dir").toString());
+        properties.put("audio.temp.dir", workDirectory.resolve("audio_files").toString());
+        properties.put("audio.output.dir", workDirectory.resolve("combined_audio").toString());
+        // Every document is distinct anyway; the cache would only add disk traffic to the numbers
+        properties.put("tts.cache.enabled", "false");
+        properties.put("tts.cache.dir", workDirectory.resolve("tts_cache").toString());
+        properties.put("pdf.text.store.dir", workDirectory.resolve("extracted_text").toString());
+        properties.put("audiobook.job.resume.on.startup", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.fenix.aw.reader", "WARN");
+        properties.putAll(springProperties);
+
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        System.out.println("Starting application with " + Arrays.toString(args));
+        return new SpringApplicationBuilder(Application.class).run(args);
+    }
+
+    private String upload(String baseUrl, int index) throws Exception {
+        File pdf = SampleDocuments.pdf(SampleDocuments.TextShape.valueOf(options.get("shape")),
+                intOption("pages"), index);
+        String fileName = "loadtest-" + index + ".pdf";
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new FileSystemResource(pdf) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        // Answers with a redirect back to the listing
+        restTemplate.postForEntity(baseUrl + "/", new HttpEntity<>(body, headers), String.class);
+        return fileName;
+    }
+
+    private JobResult convert(String baseUrl, String fileName, long deadline) throws InterruptedException {
+        long start = System.nanoTime();
+        JobResult result = new JobResult();
+        try {
+            JsonNode job = submit(baseUrl, fileName, deadline, result);
+            long jobId = job.get("id").asLong();
+            while (!isTerminal(job.get("status").asText()) && System.nanoTime() < deadline) {
+                if (result.firstAudioNanos < 0 && job.get("chunksSynthesized").asInt() > 0) {
+                    result.firstAudioNanos = System.nanoTime() - start;
+                }
+                Thread.sleep(intOption("poll-ms"));
+                job = restTemplate.getForObject(baseUrl + "/audiobooks/jobs/{jobId}", JsonNode.class, jobId);
+            }
+            result.status = isTerminal(job.get("status").asText()) ? job.get("status").asText() : "TIMED_OUT";
+            result.chunks = job.get("totalChunks").asInt();
+        } catch (RuntimeException ex) {
+            result.status = "ERROR";
+            System.err.println("Conversion of " + fileName + " failed: " + ex.getMessage());
+        }
+        result.latencyNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private JsonNode submit(String baseUrl, String fileName, long deadline, JobResult result)
+            throws InterruptedException {
+        while (true) {
+            try {
+                return restTemplate.postForObject(
+                        baseUrl + "/audiobooks?fileName={fileName}", null, JsonNode.class, fileName);
+            } catch (HttpClientErrorException.TooManyRequests ex) {
+                result.rejections++;
+                String retryAfter = ex.getResponseHeaders() == null ? null
+                        : ex.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                long delayNanos = TimeUnit.SECONDS.toNanos(retryAfter == null ? 1 : Long.parseLong(retryAfter));
+                if (System.nanoTime() + delayNanos > deadline) {
+                    throw ex;
+                }
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            }
+        }
+    }
+
+    private Map<String, Object> report(List<JobResult> results, long elapsedNanos, long uploadNanos,
+                                       ResourceSampler sampler, StubTTSServer stub) {
+        double seconds = elapsedNanos / 1e9;
+        List<Long> latencies = new ArrayList<>();
+        List<Long> firstAudio = new ArrayList<>();
+        Map<String, Integer> statuses = new LinkedHashMap<>();
+        long chunks = 0;
+        int rejections = 0;
+        for (JobResult result : results) {
+            rejections += result.rejections;
+            statuses.merge(result.status, 1, Integer::sum);
+            if ("COMPLETED".equals(result.status)) {
+                latencies.add(result.latencyNanos);
+                chunks += result.chunks;
+            }
+            if (result.firstAudioNanos >= 0) {
+                firstAudio.add(result.firstAudioNanos);
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("properties", springProperties);
+        report.put("elapsedSeconds", round(seconds));
+        report.put("uploadSeconds", round(uploadNanos / 1e9));
+        report.put("jobs", statuses);
+        report.put("admissionRejections", rejections);
+        report.put("documentsPerSecond", round(latencies.size() / seconds));
+        report.put("chunksPerSecond", round(chunks / seconds));
+        report.put("jobLatencyMillis", percentiles(latencies));
+        report.put("firstAudioMillis", percentiles(firstAudio));
+        report.put("peakThreads", sampler.getPeakThreads());
+        report.put("maxHeapUsedMb", sampler.getMaxHeapUsed() / (1024 * 1024));
+        report.put("maxHeapCommittedMb", sampler.getMaxHeapCommitted() / (1024 * 1024));
+        report.put("maxQueuedBatches", sampler.getMaxQueuedBatches());
+
+        Map<String, Object> stubStats = new LinkedHashMap<>();
+        stubStats.put("requests", stub.getRequests());
+        stubStats.put("failures", stub.getFailures());
+        stubStats.put("rejections", stub.getRejections());
+        stubStats.put("combines", stub.getCombines());
+        stubStats.put("peakInFlight", stub.getPeakInFlight());
+        report.put("stub", stubStats);
+        return report;
+    }
+
+    private static Map<String, Object> percentiles(List<Long> nanos) {
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        if (nanos.isEmpty()) {
+            return percentiles;
+        }
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        for (double quantile : new double[]{0.5, 0.9, 0.95, 0.99}) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            percentiles.put("p" + Math.round(quantile * 100), sorted[Math.max(0, index)] / 1_000_000);
+        }
+        percentiles.put("max", sorted[sorted.length - 1] / 1_000_000);
+        return percentiles;
+    }
+
+    private static boolean isTerminal(String status) {
+        return DocumentStatus.valueOf(status).isTerminal();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private static final class JobResult {
+        private String status;
+        private int chunks;
+        private long latencyNanos;
+        private long firstAudioNanos = -1;
+        private int rejections;
+    }
+}
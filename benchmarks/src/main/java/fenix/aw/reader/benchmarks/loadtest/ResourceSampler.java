@@ -0,0 +1,69 @@
+package fenix.aw.reader.benchmarks.loadtest;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the JVM while a load test runs and keeps the high-water marks: live threads, heap in use
+ * and committed, and the depth of the TTS batch queue.
+ */
+class ResourceSampler implements AutoCloseable {
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-test-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Gauge queuedBatches;
+
+    private volatile long maxHeapUsed;
+    private volatile long maxHeapCommitted;
+    private volatile int maxQueuedBatches;
+
+    ResourceSampler(MeterRegistry meterRegistry, long intervalMillis) {
+        this.queuedBatches = meterRegistry.find("tts.scheduler.queued").gauge();
+        threads.resetPeakThreadCount();
+        timer.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    long getMaxHeapUsed() {
+        return maxHeapUsed;
+    }
+
+    long getMaxHeapCommitted() {
+        return maxHeapCommitted;
+    }
+
+    int getPeakThreads() {
+        return threads.getPeakThreadCount();
+    }
+
+    int getMaxQueuedBatches() {
+        return maxQueuedBatches;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        sample();
+    }
+
+    private synchronized void sample() {
+        long used = memory.getHeapMemoryUsage().getUsed();
+        long committed = memory.getHeapMemoryUsage().getCommitted();
+        maxHeapUsed = Math.max(maxHeapUsed, used);
+        maxHeapCommitted = Math.max(maxHeapCommitted, committed);
+        if (queuedBatches != null) {
+            maxQueuedBatches = Math.max(maxQueuedBatches, (int) queuedBatches.value());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.benchmarks.Fields;
+import fenix.aw.reader.benchmarks.SampleDocuments;
+import fenix.aw.reader.benchmarks.StubTTSServer;
+import fenix.aw.reader.util.TextChunker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TTS client path against an in-process stub with configurable latency: single batch round
+ * trips under concurrent callers, and a whole document through extraction, scheduling and synthesis.
+ * Lives in the service package to reach the package-private batch entry point.
+ */
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TTSClientBenchmark {
+
+    @Param({"0", "20"})
+    public long stubLatencyMillis;
+
+    @Param({"10"})
+    public int maxConcurrency;
+
+    private StubTTSServer stub;
+    private CloseableHttpClient httpClient;
+    private ExecutorService ttsExecutor;
+    private ExecutorService hedgeExecutor;
+    private TTSClientService service;
+    private File pdf;
+    private List<String> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path workDirectory = Files.createTempDirectory("tts-benchmark");
+        stub = new StubTTSServer(workDirectory).latency(stubLatencyMillis, 0);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TTSConcurrencyLimiter limiter = new TTSConcurrencyLimiter(meterRegistry);
+        Fields.set(limiter, "minConcurrency", 1);
+        Fields.set(limiter, "maxConcurrency", maxConcurrency);
+        Fields.set(limiter, "initialConcurrency", maxConcurrency);
+        Fields.set(limiter, "backoffRatio", 0.5);
+        Fields.set(limiter, "latencyTolerance", 100.0);
+        Fields.set(limiter, "minRate", 1.0);
+        Fields.set(limiter, "maxRate", 100_000.0);
+        limiter.init();
+
+        ttsExecutor = Executors.newFixedThreadPool(maxConcurrency);
+        hedgeExecutor = Executors.newCachedThreadPool();
+        TTSBatchScheduler scheduler = new TTSBatchScheduler(ttsExecutor, limiter, meterRegistry);
+        Fields.set(scheduler, "quantumChars", 4000);
+
+        // Left disabled so every batch reaches the stub; keys are still derived for checkpoints
+        TTSChunkCache chunkCache = new TTSChunkCache();
+        Fields.set(chunkCache, "pythonTTSUrl", stub.ttsUrl());
+        Fields.set(chunkCache, "namespace", "");
+
+        // Pooled HttpClient5 like the production ttsRestTemplate
+        httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConcurrency * 2)
+                        .setMaxConnPerRoute(maxConcurrency * 2)
+                        .build())
+                .build();
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        service = new TTSClientService(restTemplate, chunkCache, scheduler, hedgeExecutor, ttsExecutor,
+                limiter, new LinearSynthesisCostModel(200, 4), meterRegistry);
+        Fields.set(service, "pythonTTSUrl", stub.ttsUrl());
+        Fields.set(service, "batchSize", 20);
+        Fields.set(service, "batchTargetMillis", 20_000.0);
+        Fields.set(service, "maxInFlightBatches", 8);
+        Fields.set(service, "pdfChunkSize", 1000);
+        Fields.set(service, "pdfWindowPages", 10);
+        Fields.set(service, "pdfExtractionPartitions", 1);
+        Fields.set(service, "retryMaxAttempts", 3);
+        Fields.set(service, "retryInitialBackoffMillis", 50L);
+        Fields.set(service, "retryMaxBackoffMillis", 1000L);
+
+        pdf = SampleDocuments.pdf(SampleDocuments.TextShape.PROSE, 50, 42);
+        batch = TextChunker.splitIntoChunks(SampleDocuments.text(SampleDocuments.TextShape.PROSE, 5, 42), 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        httpClient.close();
+        stub.close();
+        ttsExecutor.shutdownNow();
+        hedgeExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public List<String> batchRoundTrip() {
+        return service.requestBatch(batch);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<String> processDocument() {
+        return service.processFileForTTS(pdf.getAbsolutePath());
+    }
+}
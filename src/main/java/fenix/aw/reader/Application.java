@@ -2,6 +2,7 @@ package fenix.aw.reader;
 
 import fenix.aw.reader.service.impl.StorageService;
 import fenix.aw.reader.util.StorageProperties;
+import fenix.aw.reader.util.TTSHttpClientProperties;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -9,7 +10,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
-@EnableConfigurationProperties(StorageProperties.class)
+@EnableConfigurationProperties({StorageProperties.class, TTSHttpClientProperties.class})
 public class Application {
 
 	public static void main(String[] args) {
@@ -0,0 +1,12 @@
+package fenix.aw.reader.Exception;
+
+public class AudioCombineException extends RuntimeException {
+
+    public AudioCombineException(String message) {
+        super(message);
+    }
+
+    public AudioCombineException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package fenix.aw.reader.Exception;
+
+/**
+ * The upload is not a PDF, or its name or declared size is not acceptable.
+ */
+public class InvalidUploadException extends StorageException {
+
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+}
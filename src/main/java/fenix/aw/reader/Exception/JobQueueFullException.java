@@ -0,0 +1,15 @@
+package fenix.aw.reader.Exception;
+
+public class JobQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public JobQueueFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
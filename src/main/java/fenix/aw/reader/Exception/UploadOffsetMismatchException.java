@@ -0,0 +1,18 @@
+package fenix.aw.reader.Exception;
+
+/**
+ * A chunk of a resumable upload did not start where the stored part ends.
+ */
+public class UploadOffsetMismatchException extends StorageException {
+
+    private final long expectedOffset;
+
+    public UploadOffsetMismatchException(String message, long expectedOffset) {
+        super(message);
+        this.expectedOffset = expectedOffset;
+    }
+
+    public long getExpectedOffset() {
+        return expectedOffset;
+    }
+}
@@ -0,0 +1,15 @@
+package fenix.aw.reader.Exception;
+
+public class UploadTooLargeException extends StorageException {
+
+    private final long maxSize;
+
+    public UploadTooLargeException(String message, long maxSize) {
+        super(message);
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,104 @@
+package fenix.aw.reader.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Async request handling for progressive audiobook streams. A listener holds a thread until its job
+ * stops synthesizing, so async requests run on a bounded pool of their own, and listeners beyond
+ * {@code audiobook.stream.max.listeners} are turned away instead of queued. Async requests time out
+ * after {@code spring.mvc.async.request-timeout}; only requests marked with {@link #STREAM_REQUEST}
+ * get the longer {@code audiobook.stream.timeout}, after which the listener's thread is interrupted.
+ */
+@Configuration
+public class AudiobookStreamConfig implements WebMvcConfigurer
+{
+    private static final Logger logger = LoggerFactory.getLogger(AudiobookStreamConfig.class);
+
+    /**
+     * Request attribute a handler sets to give its async response the stream timeout.
+     */
+    public static final String STREAM_REQUEST = AudiobookStreamConfig.class.getName() + ".STREAM_REQUEST";
+
+    @Value("${audiobook.stream.max.listeners:32}")
+    private int maxListeners;
+
+    @Value("${spring.mvc.async.request-timeout:30s}")
+    private Duration defaultTimeout;
+
+    @Value("${audiobook.stream.timeout:6h}")
+    private Duration streamTimeout;
+
+    private final MeterRegistry meterRegistry;
+
+    public AudiobookStreamConfig(MeterRegistry meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor audiobookStreamExecutor()
+    {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxListeners);
+        executor.setMaxPoolSize(maxListeners);
+        // No queue: a listener waiting behind another would wait for a whole audiobook
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("audiobook-stream-");
+        executor.setDaemon(true);
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "audiobook-stream", Tags.empty())
+                .bindTo(meterRegistry);
+        logger.info("Audiobook streams limited to {} listeners, open for at most {}", maxListeners, streamTimeout);
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer)
+    {
+        AsyncTaskExecutor executor = audiobookStreamExecutor();
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(defaultTimeout.toMillis());
+        configurer.registerCallableInterceptors(new StreamTimeoutInterceptor(streamTimeout));
+    }
+
+    /**
+     * Raises the timeout of marked requests just before async processing starts.
+     */
+    static final class StreamTimeoutInterceptor implements CallableProcessingInterceptor
+    {
+        private final Duration timeout;
+
+        StreamTimeoutInterceptor(Duration timeout)
+        {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task)
+        {
+            if (request instanceof AsyncWebRequest asyncRequest
+                    && request.getAttribute(STREAM_REQUEST, RequestAttributes.SCOPE_REQUEST) != null)
+            {
+                asyncRequest.setTimeout(timeout.toMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package fenix.aw.reader.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Application-wide executor for TTS batch work, fed by
+ * {@link fenix.aw.reader.service.impl.TTSBatchScheduler} on behalf of every audiobook job. Runs on virtual
+ * threads when the JDK provides them, otherwise on a fixed pool of {@code tts.thread.pool.size}
+ * platform threads. The number of requests actually in flight is bounded separately by
+ * {@link fenix.aw.reader.service.impl.TTSConcurrencyLimiter}. PDF page partitions are parsed on a pool of
+ * their own. All executors are monitored, so task counts and run times show up under {@code executor.*}
+ * tagged {@code name=tts}, {@code name=tts-hedge} and {@code name=pdf-extraction}.
+ */
+@Configuration
+public class TTSExecutorConfig
+{
+    private static final Logger logger = LoggerFactory.getLogger(TTSExecutorConfig.class);
+
+    @Value("${tts.thread.pool.size:10}")
+    private int threadPoolSize;
+
+    // 0 uses one thread per available processor
+    @Value("${pdf.extraction.threads:0}")
+    private int extractionThreads;
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService ttsExecutor(MeterRegistry meterRegistry)
+    {
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        if (virtualExecutor != null)
+        {
+            logger.info("TTS executor using virtual threads");
+            return ExecutorServiceMetrics.monitor(meterRegistry, virtualExecutor, "tts");
+        }
+        logger.info("TTS executor using {} platform threads", threadPoolSize);
+        return ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(threadPoolSize, new NamedThreadFactory("tts-worker-")), "tts");
+    }
+
+    /**
+     * Runs the attempts of hedged batches. Kept apart from {@link #ttsExecutor(MeterRegistry)} because a batch
+     * blocks on its attempts, which would deadlock a saturated fixed pool. Threads are created on
+     * demand; how many requests they may actually send is still decided by the concurrency limiter.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService ttsHedgeExecutor(MeterRegistry meterRegistry)
+    {
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        if (virtualExecutor != null)
+        {
+            return ExecutorServiceMetrics.monitor(meterRegistry, virtualExecutor, "tts-hedge");
+        }
+        return ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newCachedThreadPool(new NamedThreadFactory("tts-hedge-")), "tts-hedge");
+    }
+
+    /**
+     * Parses the page partitions of PDFs. Parsing is CPU bound and blocks for whole page ranges, so it
+     * gets a fixed pool instead of the common fork-join pool, where it would starve parallel streams
+     * and async completions elsewhere in the application.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService pdfExtractionExecutor(MeterRegistry meterRegistry)
+    {
+        int threads = extractionThreads > 0 ? extractionThreads : Runtime.getRuntime().availableProcessors();
+        logger.info("PDF extraction executor using {} threads", threads);
+        return ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(threads, new NamedThreadFactory("pdf-extract-")), "pdf-extraction");
+    }
+
+    private static ExecutorService newVirtualThreadExecutor()
+    {
+        try
+        {
+            // Resolved reflectively so the build keeps targeting Java 17
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            return null;
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package fenix.aw.reader.config;
+
+import fenix.aw.reader.util.TTSHttpClientProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HeaderElements;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HTTP client used for the TTS and combine calls: a pooled keep-alive Apache client with
+ * per-route limits and timeouts, or the JDK client when HTTP/2 is enabled.
+ */
+@Configuration
+public class TTSHttpClientConfig
+{
+    private static final Logger logger = LoggerFactory.getLogger(TTSHttpClientConfig.class);
+
+    @Bean
+    public RestTemplate ttsRestTemplate(TTSHttpClientProperties properties, MeterRegistry meterRegistry)
+    {
+        return new RestTemplate(requestFactory(properties, meterRegistry));
+    }
+
+    private ClientHttpRequestFactory requestFactory(TTSHttpClientProperties properties, MeterRegistry meterRegistry)
+    {
+        if (properties.isHttp2Enabled())
+        {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(properties.getConnectTimeout())
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+            factory.setReadTimeout(properties.getReadTimeout());
+            logger.info("TTS HTTP client using JDK client with HTTP/2");
+            return factory;
+        }
+
+        TimedConnectionManager connectionManager = new TimedConnectionManager(
+                Timer.builder("tts.http.pool.wait")
+                        .description("Time spent waiting to lease a pooled TTS connection")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+        connectionManager.setMaxTotal(properties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                .setSocketTimeout(Timeout.of(properties.getReadTimeout()))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "tts").bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> keepAlive(response, TimeValue.of(properties.getKeepAlive())))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleEviction()))
+                .build();
+
+        logger.info("TTS HTTP client pool: {} connections, {} per route",
+                properties.getMaxConnections(), properties.getMaxConnectionsPerRoute());
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * How long an idle connection may be reused: the configured TTL, or less if the server announces
+     * in {@code Keep-Alive: timeout=<seconds>} that it closes idle connections sooner.
+     */
+    static TimeValue keepAlive(HttpResponse response, TimeValue configured)
+    {
+        Iterator<HeaderElement> elements = MessageSupport.iterate(response, HeaderElements.KEEP_ALIVE);
+        while (elements.hasNext())
+        {
+            HeaderElement element = elements.next();
+            if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null)
+            {
+                try
+                {
+                    TimeValue offered = TimeValue.ofSeconds(Long.parseLong(element.getValue().trim()));
+                    return offered.compareTo(configured) < 0 ? offered : configured;
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // Malformed header, keep the configured TTL
+                }
+            }
+        }
+        return configured;
+    }
+
+    /**
+     * Records how long callers block waiting for a pooled connection, the signal for sizing the pool.
+     */
+    private static final class TimedConnectionManager extends PoolingHttpClientConnectionManager
+    {
+        private final Timer leaseTimer;
+
+        private TimedConnectionManager(Timer leaseTimer)
+        {
+            this.leaseTimer = leaseTimer;
+        }
+
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state)
+        {
+            LeaseRequest delegate = super.lease(id, route, requestTimeout, state);
+            return new LeaseRequest()
+            {
+                @Override
+                public ConnectionEndpoint get(Timeout timeout)
+                        throws InterruptedException, ExecutionException, TimeoutException
+                {
+                    long start = System.nanoTime();
+                    try
+                    {
+                        return delegate.get(timeout);
+                    }
+                    finally
+                    {
+                        leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public boolean cancel()
+                {
+                    return delegate.cancel();
+                }
+            };
+        }
+    }
+}
@@ -1,40 +1,85 @@
 package fenix.aw.reader.controller;
 
+import fenix.aw.reader.Exception.InvalidUploadException;
+import fenix.aw.reader.Exception.JobQueueFullException;
 import fenix.aw.reader.Exception.StorageFileNotFoundException;
+import fenix.aw.reader.Exception.UploadOffsetMismatchException;
+import fenix.aw.reader.Exception.UploadTooLargeException;
+import fenix.aw.reader.config.AudiobookStreamConfig;
+import fenix.aw.reader.model.CatalogPage;
+import fenix.aw.reader.model.CatalogQuery;
+import fenix.aw.reader.model.CatalogSort;
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.JobPriority;
+import fenix.aw.reader.model.JobQueueStatus;
+import fenix.aw.reader.model.SearchHit;
+import fenix.aw.reader.model.DocumentStatus;
+import fenix.aw.reader.model.UploadSession;
+import fenix.aw.reader.service.AudiobookStream;
+import fenix.aw.reader.service.IAudiobookJobService;
+import fenix.aw.reader.service.IFileCatalogService;
+import fenix.aw.reader.service.ISearchService;
 import fenix.aw.reader.service.IStorageService;
-import fenix.aw.reader.service.impl.TTSClientService;
+import fenix.aw.reader.util.HttpFileSender;
 import fenix.aw.reader.util.PDFProcessor;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
 public class FileUploadController implements IFileUploadController{
 
     private static final Logger logger = LoggerFactory.getLogger(FileUploadController.class);
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+    private static final long STREAM_RETRY_AFTER_SECONDS = 30;
 
     private final IStorageService storageService;
-    private final TTSClientService ttsClientService;
+    private final IAudiobookJobService audiobookJobService;
+    private final IFileCatalogService catalog;
+    private final ISearchService searchService;
+    private final HttpFileSender fileSender = new HttpFileSender();
+
+    @Value("${audio.output.dir:../shared_data/combined_audio}")
+    private String audioOutputDir;
 
     @Autowired
-    public FileUploadController(IStorageService storageService, TTSClientService ttsClientService)
+    public FileUploadController(IStorageService storageService, IAudiobookJobService audiobookJobService,
+                                IFileCatalogService catalog, ISearchService searchService)
     {
         this.storageService = storageService;
-        this.ttsClientService = ttsClientService;
+        this.audiobookJobService = audiobookJobService;
+        this.catalog = catalog;
+        this.searchService = searchService;
     }
 
     @GetMapping("/")
@@ -42,14 +87,9 @@ public class FileUploadController implements IFileUploadController{
     {
         try
         {
-            List<String> fileUris = storageService.loadAll()
-                    .map(path -> MvcUriComponentsBuilder.fromMethodName(
-                                    FileUploadController.class,
-                                    "serveFile",
-                                    path.getFileName().toString())
-                            .build()
-                            .toUri()
-                            .toString())
+            String prefix = fileUrlPrefix();
+            List<String> fileUris = catalog.fileNames().stream()
+                    .map(name -> prefix + UriUtils.encodePathSegment(name, StandardCharsets.UTF_8))
                     .collect(Collectors.toList());
 
             logger.info("Listed {} uploaded files", fileUris.size());
@@ -62,37 +102,76 @@ public class FileUploadController implements IFileUploadController{
         }
     }
 
+    @GetMapping("/files")
+    public ResponseEntity<CatalogPage> listFiles(@RequestParam(value = "cursor", required = false) String cursor,
+                                                 @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                                 @RequestParam(value = "sort", defaultValue = "NAME") CatalogSort sort,
+                                                 @RequestParam(value = "order", defaultValue = "asc") String order,
+                                                 @RequestParam(value = "status", required = false) DocumentStatus status,
+                                                 @RequestParam(value = "minSize", required = false) Long minSize,
+                                                 @RequestParam(value = "maxSize", required = false) Long maxSize,
+                                                 @RequestParam(value = "uploadedAfter", required = false)
+                                                 @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant uploadedAfter,
+                                                 @RequestParam(value = "uploadedBefore", required = false)
+                                                 @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant uploadedBefore)
+    {
+        if (!order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc"))
+        {
+            logger.warn("Listing requested with unknown order: {}", order);
+            return ResponseEntity.badRequest().build();
+        }
+        try
+        {
+            CatalogQuery query = new CatalogQuery(cursor, limit, sort, order.equalsIgnoreCase("desc"), status,
+                    minSize, maxSize, uploadedAfter, uploadedBefore);
+            CatalogPage page = catalog.list(query, fileUrlPrefix());
+            logger.debug("Listed {} catalog entries sorted by {} {}", page.items().size(), sort, order);
+            return ResponseEntity.ok(page);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            logger.warn("Rejected catalog listing: {}", ex.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Built once per listing rather than once per file
+    private static String fileUrlPrefix()
+    {
+        return ServletUriComponentsBuilder.fromCurrentContextPath().path("/files/").toUriString();
+    }
+
     @GetMapping("/files/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename)
+    public void serveFile(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response)
+            throws IOException
     {
         try
         {
             if (filename == null || filename.trim().isEmpty())
             {
                 logger.warn("Attempted to serve file with null or empty filename");
-                return ResponseEntity.badRequest().build();
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                return;
             }
 
             Resource file = storageService.loadAsResource(filename);
 
-            if (file == null)
-            {
-                logger.warn("File not found: {}", filename);
-                return ResponseEntity.notFound().build();
-            }
-
             logger.info("Serving file: {}", filename);
-
-            return ResponseEntity
-                    .ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + file.getFilename() + "\"")
-                .body(file);
+            // Uploads are content addressed, so the digest is the strongest possible validator
+            fileSender.send(request, response, file.getFile().toPath(), MediaType.APPLICATION_PDF_VALUE,
+                    storageService.getDigest(filename).orElse(null));
+        }
+        catch (StorageFileNotFoundException ex)
+        {
+            throw ex;
         }
         catch (Exception ex)
         {
             logger.error("Error serving file: {}", filename, ex);
-            return ResponseEntity.internalServerError().build();
+            if (!response.isCommitted())
+            {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
 
@@ -123,15 +202,100 @@ public class FileUploadController implements IFileUploadController{
         }
     }
 
+    /**
+     * Stores the raw request body as {@code filename} in one pass, without multipart buffering.
+     */
+    @PutMapping("/files/{filename:.+}")
+    public ResponseEntity<Void> streamFileUpload(@PathVariable String filename, HttpServletRequest request)
+            throws IOException
+    {
+        String digest = storageService.store(filename, request.getInputStream(), request.getContentLengthLong());
+        URI location = MvcUriComponentsBuilder.fromMethodName(
+                        FileUploadController.class, "serveFile", filename, null, null)
+                .build()
+                .toUri();
+        return ResponseEntity.created(location).eTag(digest).build();
+    }
+
+    @DeleteMapping("/files/{filename:.+}")
+    public ResponseEntity<Void> deleteFile(@PathVariable String filename)
+    {
+        if (!storageService.delete(filename))
+        {
+            logger.warn("File not found: {}", filename);
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Opens a resumable upload; the chunks are sent with {@code PATCH} to the returned location.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadSession> createUpload(@RequestParam("fileName") String fileName,
+                                                      @RequestParam("size") long size)
+    {
+        UploadSession upload = storageService.createUpload(fileName, size);
+        URI location = MvcUriComponentsBuilder.fromMethodName(
+                        FileUploadController.class, "getUpload", upload.id())
+                .build()
+                .toUri();
+        return ResponseEntity.created(location)
+                .header(UPLOAD_OFFSET, "0")
+                .header(UPLOAD_LENGTH, Long.toString(size))
+                .body(upload);
+    }
+
+    /**
+     * Where to resume: the offset is also sent as a header so {@code HEAD} is enough.
+     */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSession> getUpload(@PathVariable String uploadId)
+    {
+        UploadSession upload = storageService.getUpload(uploadId);
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, Long.toString(upload.offset()))
+                .header(UPLOAD_LENGTH, Long.toString(upload.size()))
+                .body(upload);
+    }
+
+    @PatchMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSession> appendUpload(@PathVariable String uploadId,
+                                                      @RequestHeader(UPLOAD_OFFSET) long offset,
+                                                      HttpServletRequest request) throws IOException
+    {
+        UploadSession upload = storageService.appendUpload(uploadId, offset, request.getInputStream());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, Long.toString(upload.offset()))
+                .header(UPLOAD_LENGTH, Long.toString(upload.size()));
+        if (upload.complete())
+        {
+            response.location(MvcUriComponentsBuilder.fromMethodName(
+                            FileUploadController.class, "serveFile", upload.fileName(), null, null)
+                    .build()
+                    .toUri())
+                    .eTag(upload.digest());
+        }
+        return response.body(upload);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId)
+    {
+        storageService.abortUpload(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/audiobooks")
-    public ResponseEntity<String> processFileForTTS(@RequestParam("fileName") String fileName)
+    public ResponseEntity<Document> processFileForTTS(@RequestParam("fileName") String fileName,
+                                                    @RequestParam(value = "priority", defaultValue = "NORMAL") JobPriority priority)
     {
         try
         {
             if (fileName == null || fileName.trim().isEmpty())
             {
                 logger.warn("TTS processing attempted with null or empty filename");
-                return ResponseEntity.badRequest().body("Filename cannot be null or empty");
+                return ResponseEntity.badRequest().build();
             }
             logger.info("Processing file for TTS: {}", fileName);
             // Locate te file in the storage directory
@@ -139,66 +303,199 @@ public class FileUploadController implements IFileUploadController{
 
             if( fileResource == null || !fileResource.exists()) {
                 logger.warn("File not found for TTS processing: {}", fileName);
-                return ResponseEntity.badRequest().body("File not found " + fileName);
+                return ResponseEntity.badRequest().build();
             }
 
+            // Hand the extract -> synthesize -> combine run to a background job
+            Document job = audiobookJobService.submit(fileName, priority);
 
-            // Process the file for TTS
-            List<String> audioPaths = ttsClientService.processFileForTTS
-                    (
-                            fileResource.getFile().getAbsolutePath()
-                    );
+            URI location = MvcUriComponentsBuilder.fromMethodName(
+                            FileUploadController.class, "getAudiobookJob", job.getId())
+                    .build()
+                    .toUri();
 
-            if (audioPaths.isEmpty())
+            if (job.getStatus() == DocumentStatus.COMPLETED)
             {
-                logger.error("Failed to generate audio files for: {}", fileName);
-                return ResponseEntity.badRequest().body("Failed to generate audio files.");
+                logger.info("Returning existing audiobook from job {} for: {}", job.getId(), fileName);
+                return ResponseEntity.ok().location(location).body(job);
             }
 
-            String combinedFilePath = ttsClientService.combineAudioFiles(audioPaths, fileName);
-
-            logger.info("Successfully generated audiobook for: {}", fileName);
-            return ResponseEntity.ok("Audio files combined successfully. Path: " + combinedFilePath);
+            logger.info("Accepted audiobook job {} for: {}", job.getId(), fileName);
+            return ResponseEntity.accepted().location(location).body(job);
+        }
+        catch (StorageFileNotFoundException | JobQueueFullException ex)
+        {
+            throw ex;
         }
         catch (Exception ex)
         {
             logger.error("Error processing file for TTS: {}", fileName, ex);
-            return ResponseEntity.status(500).body("Error processing file for TTS.");
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<SearchHit>> search(@RequestParam("q") String query,
+                                                  @RequestParam(value = "jobId", required = false) Long jobId,
+                                                  @RequestParam(value = "limit", defaultValue = "20") int limit)
+    {
+        if (query == null || query.isBlank())
+        {
+            logger.warn("Search attempted with an empty query");
+            return ResponseEntity.badRequest().build();
+        }
+        List<SearchHit> hits = searchService.search(query, jobId, limit);
+        logger.debug("Search for '{}' returned {} hits", query, hits.size());
+        return ResponseEntity.ok(hits);
+    }
+
+    @GetMapping("/audiobooks/queue")
+    public ResponseEntity<JobQueueStatus> getAudiobookQueue()
+    {
+        return ResponseEntity.ok(audiobookJobService.getQueueStatus());
+    }
+
+    @GetMapping("/audiobooks/jobs/{jobId}")
+    public ResponseEntity<Document> getAudiobookJob(@PathVariable long jobId)
+    {
+        return audiobookJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/audiobooks/jobs/{jobId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamAudiobook(@PathVariable long jobId, HttpServletRequest request)
+    {
+        Optional<AudiobookStream> stream = audiobookJobService.openStream(jobId);
+        if (stream.isEmpty())
+        {
+            logger.warn("No audio available to stream for job: {}", jobId);
+            return ResponseEntity.notFound().build();
+        }
+
+        logger.info("Streaming audiobook for job: {}", jobId);
+        AudiobookStream audio = stream.get();
+        // Listeners stay connected until the job finishes, well past the default async timeout
+        request.setAttribute(AudiobookStreamConfig.STREAM_REQUEST, Boolean.TRUE);
+        // No Content-Length: the body is sent with chunked transfer encoding as segments finish
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(audio.getContentType()))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(audio::writeTo);
+    }
+
+    @PostMapping("/audiobooks/jobs/{jobId}/retry")
+    public ResponseEntity<Document> retryAudiobookJob(@PathVariable long jobId)
+    {
+        Optional<Document> job = audiobookJobService.resume(jobId);
+        if (job.isEmpty())
+        {
+            logger.warn("Audiobook job not found: {}", jobId);
+            return ResponseEntity.notFound().build();
+        }
+
+        URI location = MvcUriComponentsBuilder.fromMethodName(
+                        FileUploadController.class, "getAudiobookJob", jobId)
+                .build()
+                .toUri();
+        if (job.get().getStatus() == DocumentStatus.COMPLETED)
+        {
+            return ResponseEntity.ok().location(location).body(job.get());
         }
+        logger.info("Retrying audiobook job: {}", jobId);
+        return ResponseEntity.accepted().location(location).body(job.get());
+    }
+
+    @DeleteMapping("/audiobooks/jobs/{jobId}")
+    public ResponseEntity<Void> deleteAudiobookJob(@PathVariable long jobId)
+    {
+        if (!audiobookJobService.cancel(jobId))
+        {
+            logger.warn("Audiobook job not found: {}", jobId);
+            return ResponseEntity.notFound().build();
+        }
+        logger.info("Deleted audiobook job: {}", jobId);
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/audiobooks/{filename}")
-    public ResponseEntity<Resource> getAudiobook(@PathVariable String filename)
+    public void getAudiobook(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response)
+            throws IOException
     {
         try
         {
             if (filename == null || filename.trim().isEmpty())
             {
                 logger.warn("Attempted to get audiobook with null or empty filename");
-                return ResponseEntity.badRequest().build();
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                return;
             }
 
-            Path filePath = Paths.get("audio_files").resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
+            Path audioDir = Paths.get(audioOutputDir).toAbsolutePath().normalize();
+            Path filePath = audioDir.resolve(filename).normalize();
 
-            if (!resource.exists())
+            if (!filePath.startsWith(audioDir) || !Files.isReadable(filePath) || Files.isDirectory(filePath))
             {
                 logger.warn("Audiobook not found: {}", filename);
-                return ResponseEntity.notFound().build();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
 
             logger.info("Serving audiobook: {}", filename);
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+            String contentType = filename.toLowerCase().endsWith(".mp3") ? "audio/mpeg" : "audio/wav";
+            fileSender.send(request, response, filePath, contentType, null);
         }
         catch (Exception ex)
         {
             logger.error("Error serving audiobook: {}", filename, ex);
-            return ResponseEntity.internalServerError().build();
+            if (!response.isCommitted())
+            {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
 
+    @ExceptionHandler(InvalidUploadException.class)
+    public ResponseEntity<String> handleInvalidUpload(InvalidUploadException exc)
+    {
+        logger.warn("Rejected upload: {}", exc.getMessage());
+        return ResponseEntity.badRequest().body(exc.getMessage());
+    }
+
+    @ExceptionHandler(UploadTooLargeException.class)
+    public ResponseEntity<String> handleUploadTooLarge(UploadTooLargeException exc)
+    {
+        logger.warn("Rejected upload: {}", exc.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(exc.getMessage());
+    }
+
+    @ExceptionHandler(UploadOffsetMismatchException.class)
+    public ResponseEntity<String> handleUploadOffsetMismatch(UploadOffsetMismatchException exc)
+    {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(UPLOAD_OFFSET, Long.toString(exc.getExpectedOffset()))
+                .body(exc.getMessage());
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<String> handleStreamRejected(TaskRejectedException exc)
+    {
+        logger.warn("Rejected audiobook listener, all stream threads are busy");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(STREAM_RETRY_AFTER_SECONDS))
+                .contentType(MediaType.TEXT_PLAIN)
+                .body("Too many audiobook listeners, try again later");
+    }
+
+    @ExceptionHandler(JobQueueFullException.class)
+    public ResponseEntity<String> handleJobQueueFull(JobQueueFullException exc)
+    {
+        logger.warn("Rejected audiobook job, retry in {}s: {}", exc.getRetryAfterSeconds(), exc.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(exc.getRetryAfterSeconds()))
+                .body(exc.getMessage());
+    }
+
     @ExceptionHandler(StorageFileNotFoundException.class)
     public ResponseEntity<?> handleStorageFileNotFound(StorageFileNotFoundException exc)
     {
@@ -1,19 +1,44 @@
 package fenix.aw.reader.controller;
 
-import org.springframework.core.io.Resource;
+import fenix.aw.reader.model.CatalogPage;
+import fenix.aw.reader.model.CatalogSort;
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.DocumentStatus;
+import fenix.aw.reader.model.JobPriority;
+import fenix.aw.reader.model.JobQueueStatus;
+import fenix.aw.reader.model.SearchHit;
+import fenix.aw.reader.model.UploadSession;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 
 public interface IFileUploadController {
     ResponseEntity<List<String>> listUploadedFiles();
-    ResponseEntity<Resource> serveFile(@PathVariable String filename);
+    ResponseEntity<CatalogPage> listFiles(@RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "limit", defaultValue = "50") int limit, @RequestParam(value = "sort", defaultValue = "NAME") CatalogSort sort, @RequestParam(value = "order", defaultValue = "asc") String order, @RequestParam(value = "status", required = false) DocumentStatus status, @RequestParam(value = "minSize", required = false) Long minSize, @RequestParam(value = "maxSize", required = false) Long maxSize, @RequestParam(value = "uploadedAfter", required = false) Instant uploadedAfter, @RequestParam(value = "uploadedBefore", required = false) Instant uploadedBefore);
+    void serveFile(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response) throws IOException;
     String handleFileUpload(@RequestParam("file") MultipartFile file, RedirectAttributes redirectAttributes);
-    ResponseEntity<String> processFileForTTS(@RequestParam("fileName") String fileName);
-    ResponseEntity<Resource> getAudiobook(@PathVariable String filename);
+    ResponseEntity<Void> streamFileUpload(@PathVariable String filename, HttpServletRequest request) throws IOException;
+    ResponseEntity<UploadSession> createUpload(@RequestParam("fileName") String fileName, @RequestParam("size") long size);
+    ResponseEntity<UploadSession> getUpload(@PathVariable String uploadId);
+    ResponseEntity<UploadSession> appendUpload(@PathVariable String uploadId, @RequestHeader("Upload-Offset") long offset, HttpServletRequest request) throws IOException;
+    ResponseEntity<Void> abortUpload(@PathVariable String uploadId);
+    ResponseEntity<Document> processFileForTTS(@RequestParam("fileName") String fileName, @RequestParam(value = "priority", defaultValue = "NORMAL") JobPriority priority);
+    ResponseEntity<List<SearchHit>> search(@RequestParam("q") String query, @RequestParam(value = "jobId", required = false) Long jobId, @RequestParam(value = "limit", defaultValue = "20") int limit);
+    ResponseEntity<JobQueueStatus> getAudiobookQueue();
+    ResponseEntity<Document> getAudiobookJob(@PathVariable long jobId);
+    ResponseEntity<StreamingResponseBody> streamAudiobook(@PathVariable long jobId, HttpServletRequest request);
+    ResponseEntity<Document> retryAudiobookJob(@PathVariable long jobId);
+    ResponseEntity<Void> deleteAudiobookJob(@PathVariable long jobId);
+    void getAudiobook(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response) throws IOException;
 }
@@ -0,0 +1,11 @@
+package fenix.aw.reader.model;
+
+import java.time.Instant;
+
+/**
+ * One uploaded file in a catalog listing. {@code status} and {@code jobId} describe the latest
+ * audiobook job for the file's content and are null if it has never been converted.
+ */
+public record CatalogItem(String fileName, String url, long size, Instant uploadedAt, String digest,
+                          DocumentStatus status, Long jobId) {
+}
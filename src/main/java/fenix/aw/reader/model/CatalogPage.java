@@ -0,0 +1,9 @@
+package fenix.aw.reader.model;
+
+import java.util.List;
+
+/**
+ * A page of the file catalog; pass {@code nextCursor} back to get the following page, it is null on the last one.
+ */
+public record CatalogPage(List<CatalogItem> items, String nextCursor) {
+}
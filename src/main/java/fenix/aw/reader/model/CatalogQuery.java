@@ -0,0 +1,12 @@
+package fenix.aw.reader.model;
+
+import java.time.Instant;
+
+/**
+ * Which part of the file catalog to list. Every filter is optional; {@code cursor} comes from the
+ * previous page and is only valid with the same sort and order.
+ */
+public record CatalogQuery(String cursor, int limit, CatalogSort sort, boolean descending,
+                           DocumentStatus status, Long minSize, Long maxSize,
+                           Instant uploadedAfter, Instant uploadedBefore) {
+}
@@ -0,0 +1,7 @@
+package fenix.aw.reader.model;
+
+public enum CatalogSort {
+    NAME,
+    SIZE,
+    UPLOADED
+}
@@ -0,0 +1,67 @@
+package fenix.aw.reader.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Durable record of one synthesized chunk of a {@link Document}, so a retried or restarted job only
+ * sends the chunks that are still missing.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_chunk_checkpoint_document_chunk",
+        columnNames = {"documentId", "chunkIndex"}))
+public class ChunkCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(updatable = false, nullable = false)
+    private long id;
+
+    @Column(nullable = false)
+    private long documentId;
+
+    @Column(nullable = false)
+    private int chunkIndex;
+
+    // Hash of the chunk text, guards against reuse when chunking settings changed between runs
+    @Column(nullable = false, length = 64)
+    private String chunkKey;
+
+    @Column(nullable = false, length = 1024)
+    private String segmentPath;
+
+    public long getId() {
+        return id;
+    }
+
+    public long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(long documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public String getChunkKey() {
+        return chunkKey;
+    }
+
+    public void setChunkKey(String chunkKey) {
+        this.chunkKey = chunkKey;
+    }
+
+    public String getSegmentPath() {
+        return segmentPath;
+    }
+
+    public void setSegmentPath(String segmentPath) {
+        this.segmentPath = segmentPath;
+    }
+}
@@ -0,0 +1,12 @@
+package fenix.aw.reader.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Body of a call to the Python combine service.
+ */
+public record CombineRequest(@JsonProperty("file_paths") List<String> filePaths,
+                             @JsonProperty("file_name") String fileName) {
+}
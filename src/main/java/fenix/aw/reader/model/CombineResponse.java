@@ -0,0 +1,8 @@
+package fenix.aw.reader.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record CombineResponse(@JsonProperty("file_path") String filePath) {
+}
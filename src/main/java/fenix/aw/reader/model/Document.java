@@ -2,9 +2,10 @@ package fenix.aw.reader.model;
 
 import jakarta.persistence.*;
 
-import javax.annotation.processing.Generated;
+import java.time.Instant;
 
 @Entity
+@Table(indexes = @Index(name = "idx_document_content_digest", columnList = "contentDigest"))
 public class Document {
 
     @Id
@@ -12,6 +13,47 @@ public class Document {
     @Column(updatable = false, nullable = false)
     private long id;
 
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(length = 64)
+    private String contentDigest;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DocumentStatus status = DocumentStatus.QUEUED;
+
+    // Nullable so the column can be added to existing tables; null reads as NORMAL
+    @Enumerated(EnumType.STRING)
+    private JobPriority priority = JobPriority.NORMAL;
+
+    private int chunksExtracted;
+
+    private int chunksSynthesized;
+
+    private int totalChunks;
+
+    private String outputPath;
+
+    @Column(length = 1024)
+    private String errorMessage;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    @PrePersist
+    void onCreate() {
+        createdAt = Instant.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updatedAt = Instant.now();
+    }
+
     public long getId() {
         return id;
     }
@@ -19,4 +61,84 @@ public class Document {
     public void setId(long id) {
         this.id = id;
     }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
+    public DocumentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(DocumentStatus status) {
+        this.status = status;
+    }
+
+    public JobPriority getPriority() {
+        return priority == null ? JobPriority.NORMAL : priority;
+    }
+
+    public void setPriority(JobPriority priority) {
+        this.priority = priority;
+    }
+
+    public int getChunksExtracted() {
+        return chunksExtracted;
+    }
+
+    public void setChunksExtracted(int chunksExtracted) {
+        this.chunksExtracted = chunksExtracted;
+    }
+
+    public int getChunksSynthesized() {
+        return chunksSynthesized;
+    }
+
+    public void setChunksSynthesized(int chunksSynthesized) {
+        this.chunksSynthesized = chunksSynthesized;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
 }
@@ -0,0 +1,14 @@
+package fenix.aw.reader.model;
+
+public enum DocumentStatus {
+    QUEUED,
+    EXTRACTING,
+    SYNTHESIZING,
+    COMBINING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
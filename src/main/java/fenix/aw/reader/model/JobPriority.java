@@ -0,0 +1,11 @@
+package fenix.aw.reader.model;
+
+/**
+ * Scheduling class of an audiobook job. TTS work of a higher class is always dispatched before
+ * work of a lower one; jobs within a class share the backend fairly.
+ */
+public enum JobPriority {
+    INTERACTIVE,
+    NORMAL,
+    BULK
+}
@@ -0,0 +1,11 @@
+package fenix.aw.reader.model;
+
+/**
+ * Load of the audiobook job queue. {@code charactersPerSecond} is the recent synthesis throughput and
+ * {@code estimatedWaitSeconds} how long a job submitted now would wait for a worker; both are null
+ * until there has been recent progress to measure.
+ */
+public record JobQueueStatus(int runningJobs, int queuedJobs, int maxQueuedJobs,
+                             long outstandingCharacters, long maxOutstandingCharacters,
+                             Double charactersPerSecond, Long estimatedWaitSeconds) {
+}
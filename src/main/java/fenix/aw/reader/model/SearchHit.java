@@ -0,0 +1,10 @@
+package fenix.aw.reader.model;
+
+/**
+ * A chunk of a converted book that matches a search. {@code audioOffsetMillis} is where the match is
+ * spoken in the audiobook of job {@code jobId}, estimated within the chunk, or null while its audio is
+ * not known.
+ */
+public record SearchHit(long jobId, String fileName, int chunkIndex, int startPage, int endPage,
+                        Long audioOffsetMillis, double score) {
+}
@@ -0,0 +1,9 @@
+package fenix.aw.reader.model;
+
+import java.util.List;
+
+/**
+ * Body of a synthesis call to the Python TTS service.
+ */
+public record TTSBatchRequest(List<String> text) {
+}
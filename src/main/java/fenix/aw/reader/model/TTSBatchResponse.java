@@ -0,0 +1,10 @@
+package fenix.aw.reader.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TTSBatchResponse(@JsonProperty("file_paths") List<String> filePaths) {
+}
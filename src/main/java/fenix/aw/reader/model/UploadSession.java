@@ -0,0 +1,13 @@
+package fenix.aw.reader.model;
+
+/**
+ * State of a resumable upload. {@code offset} is how many bytes the server holds, so a client resumes
+ * by sending the rest from there; {@code digest} is set once all {@code size} bytes have arrived and
+ * the file has been stored.
+ */
+public record UploadSession(String id, String fileName, long size, long offset, String digest) {
+
+    public boolean complete() {
+        return digest != null;
+    }
+}
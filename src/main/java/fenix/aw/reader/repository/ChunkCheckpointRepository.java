@@ -0,0 +1,19 @@
+package fenix.aw.reader.repository;
+
+import fenix.aw.reader.model.ChunkCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ChunkCheckpointRepository extends JpaRepository<ChunkCheckpoint, Long> {
+
+    List<ChunkCheckpoint> findByDocumentId(long documentId);
+
+    @Modifying
+    @Transactional
+    void deleteByDocumentId(long documentId);
+}
@@ -0,0 +1,18 @@
+package fenix.aw.reader.repository;
+
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.DocumentStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DocumentRepository extends JpaRepository<Document, Long> {
+
+    List<Document> findByContentDigestAndStatusInOrderByCreatedAtDesc(String contentDigest,
+                                                                      Collection<DocumentStatus> statuses);
+
+    List<Document> findByStatusIn(Collection<DocumentStatus> statuses);
+}
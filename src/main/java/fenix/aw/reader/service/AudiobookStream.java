@@ -0,0 +1,17 @@
+package fenix.aw.reader.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Audio of an audiobook job written out in chunk order, possibly while it is still being generated.
+ */
+public interface AudiobookStream {
+
+    String getContentType();
+
+    /**
+     * Writes the audio to {@code out}, blocking whenever the next segment is not synthesized yet.
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,36 @@
+package fenix.aw.reader.service;
+
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.JobPriority;
+import fenix.aw.reader.model.JobQueueStatus;
+
+import java.util.Optional;
+
+public interface IAudiobookJobService {
+
+    Document submit(String fileName);
+
+    /**
+     * @param priority scheduling class of the job's TTS work against other running jobs
+     */
+    Document submit(String fileName, JobPriority priority);
+
+    /**
+     * How full the job queue is and how long a job submitted now would wait.
+     */
+    JobQueueStatus getQueueStatus();
+
+    Optional<Document> getJob(long jobId);
+
+    boolean cancel(long jobId);
+
+    /**
+     * Restarts a failed or interrupted job, reusing the chunks it already synthesized.
+     */
+    Optional<Document> resume(long jobId);
+
+    /**
+     * Opens the job's audio for listening: progressively while the job runs, the combined file once it completed.
+     */
+    Optional<AudiobookStream> openStream(long jobId);
+}
@@ -0,0 +1,26 @@
+package fenix.aw.reader.service;
+
+import fenix.aw.reader.model.CatalogPage;
+import fenix.aw.reader.model.CatalogQuery;
+import fenix.aw.reader.model.Document;
+
+import java.util.List;
+
+public interface IFileCatalogService {
+
+    /**
+     * Lists uploaded files in the requested order, {@code query.limit()} at a time.
+     *
+     * @param urlPrefix prepended to the encoded file name to form each item's URL
+     */
+    CatalogPage list(CatalogQuery query, String urlPrefix);
+
+    /**
+     * Names of every uploaded file, in name order.
+     */
+    List<String> fileNames();
+
+    void onJobUpdated(Document document);
+
+    void onJobDeleted(Document document);
+}
@@ -0,0 +1,31 @@
+package fenix.aw.reader.service;
+
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.SearchHit;
+import fenix.aw.reader.util.PDFChunk;
+
+import java.util.List;
+
+public interface ISearchService {
+
+    /**
+     * Ranked chunks containing every word of the query, or the exact phrase if it is quoted.
+     *
+     * @param jobId only search the book of this job, or null for every book
+     */
+    List<SearchHit> search(String query, Long jobId, int limit);
+
+    /**
+     * Starts indexing the book of a job from its first chunk, replacing anything indexed for it before.
+     */
+    void startBook(Document document);
+
+    void addChunk(long jobId, PDFChunk chunk);
+
+    /**
+     * Adds the audio of the job's next chunks, one segment per chunk in chunk order.
+     */
+    void addSegments(long jobId, List<String> segmentPaths);
+
+    void removeBook(long jobId);
+}
@@ -1,9 +1,12 @@
 package fenix.aw.reader.service;
 
+import fenix.aw.reader.model.UploadSession;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 public interface IStorageService {
@@ -15,10 +18,44 @@ public interface IStorageService {
     Resource loadAsResource(String filename);
 
 
-    void store(MultipartFile file);
+    /**
+     * Stores the upload content-addressed and returns its SHA-256 digest (lowercase hex).
+     */
+    String store(MultipartFile file);
+
+    /**
+     * Streams a PDF into storage in a single pass, checking its magic bytes and size as it arrives,
+     * and returns its SHA-256 digest. {@code contentLength} is the declared length, or -1 if unknown.
+     */
+    String store(String filename, InputStream content, long contentLength);
+
+    /**
+     * Opens a resumable upload of {@code size} bytes that is stored as {@code filename} once complete.
+     */
+    UploadSession createUpload(String filename, long size);
+
+    UploadSession getUpload(String uploadId);
+
+    /**
+     * Appends a chunk that must start at the current offset of the upload. The last chunk stores the file.
+     */
+    UploadSession appendUpload(String uploadId, long offset, InputStream content);
+
+    void abortUpload(String uploadId);
+
+    Optional<String> getDigest(String filename);
+
+    /**
+     * Deletes the stored file, and its content once no other file has the same content.
+     *
+     * @return false if there was no such file
+     */
+    boolean delete(String filename);
 
 
     void deleteAll();
 
+    void addListener(StorageListener listener);
+
     void init();
 }
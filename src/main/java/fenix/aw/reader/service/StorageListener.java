@@ -0,0 +1,13 @@
+package fenix.aw.reader.service;
+
+/**
+ * Told about changes made through {@link IStorageService}, on the thread that made them.
+ */
+public interface StorageListener {
+
+    void onStored(String filename, String digest);
+
+    void onDeleted(String filename);
+
+    void onCleared();
+}
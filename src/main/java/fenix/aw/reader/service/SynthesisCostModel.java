@@ -0,0 +1,18 @@
+package fenix.aw.reader.service;
+
+/**
+ * Estimates how long the TTS backend takes to synthesize a batch, used to pack batches of even cost.
+ */
+public interface SynthesisCostModel {
+
+    /**
+     * @param characters total characters in the batch
+     * @return estimated synthesis time of one request carrying that many characters, in milliseconds
+     */
+    double estimateMillis(int characters);
+
+    /**
+     * Feeds back the measured latency of a completed request so the model can calibrate itself.
+     */
+    default void observe(int characters, long latencyMillis) {}
+}
@@ -0,0 +1,29 @@
+package fenix.aw.reader.service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Durable per-chunk completion state consulted by {@link fenix.aw.reader.service.impl.TTSClientService}.
+ * {@link #record} is called from worker threads as batches finish and must be thread safe.
+ */
+public interface TTSCheckpointStore {
+
+    TTSCheckpointStore NONE = new TTSCheckpointStore() {
+        @Override
+        public Optional<String> completedSegment(int chunkIndex, String chunkKey) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void record(List<Integer> chunkIndexes, List<String> chunkKeys, List<String> segmentPaths) {
+        }
+    };
+
+    /**
+     * Returns the segment synthesized earlier for this chunk, if its text is unchanged and the file still exists.
+     */
+    Optional<String> completedSegment(int chunkIndex, String chunkKey);
+
+    void record(List<Integer> chunkIndexes, List<String> chunkKeys, List<String> segmentPaths);
+}
@@ -0,0 +1,30 @@
+package fenix.aw.reader.service;
+
+import fenix.aw.reader.util.PDFChunk;
+
+import java.util.List;
+
+/**
+ * Receives stage progress from {@link fenix.aw.reader.service.impl.TTSClientService}.
+ * Callbacks are invoked on the thread that drives the job, never concurrently.
+ */
+public interface TTSProgressListener {
+
+    TTSProgressListener NONE = new TTSProgressListener() {};
+
+    default void onChunksExtracted(int extractedChunks) {}
+
+    /**
+     * Called with every chunk as it is extracted, in chunk order and before it is synthesized.
+     */
+    default void onChunkExtracted(PDFChunk chunk) {}
+
+    default void onExtractionComplete(int totalChunks) {}
+
+    default void onChunksSynthesized(int synthesizedChunks) {}
+
+    /**
+     * Called with the audio segments of each completed batch, in chunk order.
+     */
+    default void onSegmentsReady(List<String> segmentPaths) {}
+}
@@ -0,0 +1,576 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.model.ChunkCheckpoint;
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.DocumentStatus;
+import fenix.aw.reader.model.JobPriority;
+import fenix.aw.reader.model.JobQueueStatus;
+import fenix.aw.reader.repository.ChunkCheckpointRepository;
+import fenix.aw.reader.repository.DocumentRepository;
+import fenix.aw.reader.service.AudiobookStream;
+import fenix.aw.reader.service.IAudiobookJobService;
+import fenix.aw.reader.service.IFileCatalogService;
+import fenix.aw.reader.service.ISearchService;
+import fenix.aw.reader.service.IStorageService;
+import fenix.aw.reader.service.TTSCheckpointStore;
+import fenix.aw.reader.service.TTSProgressListener;
+import fenix.aw.reader.util.PDFChunk;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+@Service
+public class AudiobookJobService implements IAudiobookJobService
+{
+    private static final Logger logger = LoggerFactory.getLogger(AudiobookJobService.class);
+    private static final int MAX_ERROR_LENGTH = 1024;
+    private static final Set<DocumentStatus> REUSABLE_STATUSES = EnumSet.of(
+            DocumentStatus.QUEUED, DocumentStatus.EXTRACTING, DocumentStatus.SYNTHESIZING,
+            DocumentStatus.COMBINING, DocumentStatus.COMPLETED, DocumentStatus.FAILED);
+    private static final Set<DocumentStatus> UNFINISHED_STATUSES = EnumSet.of(
+            DocumentStatus.QUEUED, DocumentStatus.EXTRACTING, DocumentStatus.SYNTHESIZING,
+            DocumentStatus.COMBINING);
+
+    private final DocumentRepository documentRepository;
+    private final ChunkCheckpointRepository checkpointRepository;
+    private final IStorageService storageService;
+    private final TTSClientService ttsClientService;
+    private final IFileCatalogService catalog;
+    private final ISearchService searchService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, RunningJob> runningJobs = new ConcurrentHashMap<>();
+
+    @Value("${audiobook.job.pool.size:2}")
+    private int jobPoolSize;
+
+    @Value("${audiobook.job.resume.on.startup:true}")
+    private boolean resumeOnStartup;
+
+    // Jobs admitted beyond the worker threads, waiting for one
+    @Value("${audiobook.queue.max.jobs:20}")
+    private int maxQueuedJobs;
+
+    // Characters still to synthesize across admitted jobs
+    @Value("${audiobook.queue.max.chars:5000000}")
+    private long maxOutstandingCharacters;
+
+    // Size estimate for PDFs whose text has not been extracted yet
+    @Value("${audiobook.queue.chars.per.byte:0.5}")
+    private double charactersPerByte;
+
+    @Value("${audiobook.queue.throughput.window.s:120}")
+    private long throughputWindowSeconds;
+
+    @Value("${audiobook.queue.retry.after.default.s:10}")
+    private long defaultRetryAfterSeconds;
+
+    private ExecutorService jobExecutor;
+
+    private JobAdmission admission;
+
+    public AudiobookJobService(DocumentRepository documentRepository,
+                               ChunkCheckpointRepository checkpointRepository,
+                               IStorageService storageService,
+                               TTSClientService ttsClientService,
+                               IFileCatalogService catalog,
+                               ISearchService searchService,
+                               MeterRegistry meterRegistry)
+    {
+        this.documentRepository = documentRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.storageService = storageService;
+        this.ttsClientService = ttsClientService;
+        this.catalog = catalog;
+        this.searchService = searchService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        this.jobExecutor = Executors.newFixedThreadPool(jobPoolSize);
+        this.admission = new JobAdmission(jobPoolSize, maxQueuedJobs, maxOutstandingCharacters,
+                throughputWindowSeconds, defaultRetryAfterSeconds);
+        Gauge.builder("audiobook.queue.jobs", admission, JobAdmission::queuedJobs).tag("state", "queued")
+                .description("Audiobook jobs by state")
+                .register(meterRegistry);
+        Gauge.builder("audiobook.queue.jobs", admission, JobAdmission::runningJobs).tag("state", "running")
+                .description("Audiobook jobs by state")
+                .register(meterRegistry);
+        Gauge.builder("audiobook.queue.characters", admission, JobAdmission::outstandingCharacters)
+                .description("Characters still to synthesize across admitted jobs")
+                .baseUnit("characters")
+                .register(meterRegistry);
+        Gauge.builder("audiobook.queue.wait.estimate", admission, JobAdmission::estimatedWaitSeconds)
+                .description("Estimated wait for a worker of a job submitted now")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        logger.info("Audiobook job service initialized with {} worker threads, {} queued jobs and {} outstanding characters at most",
+                jobPoolSize, maxQueuedJobs, maxOutstandingCharacters);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Picks up jobs a previous run of the application left unfinished; their checkpoints make this cheap.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs()
+    {
+        if (!resumeOnStartup)
+        {
+            return;
+        }
+        for (Document document : documentRepository.findByStatusIn(UNFINISHED_STATUSES))
+        {
+            logger.info("Resuming interrupted audiobook job {} for: {}", document.getId(), document.getFileName());
+            // Accepted before the restart, so not subject to admission
+            start(document, admission.admitAlways(estimateCharacters(document.getFileName(), document.getContentDigest())));
+        }
+    }
+
+    @Override
+    public Document submit(String fileName)
+    {
+        return submit(fileName, JobPriority.NORMAL);
+    }
+
+    @Override
+    public synchronized Document submit(String fileName, JobPriority priority)
+    {
+        if (fileName == null || fileName.trim().isEmpty())
+        {
+            throw new IllegalArgumentException("File name cannot be null or empty");
+        }
+
+        String digest = storageService.getDigest(fileName).orElse(null);
+        Optional<Document> existing = findReusableJob(digest);
+        if (existing.isPresent())
+        {
+            if (existing.get().getStatus() == DocumentStatus.FAILED)
+            {
+                logger.info("Content of {} failed in job {}, resuming it", fileName, existing.get().getId());
+                return restart(existing.get());
+            }
+            logger.info("Content of {} already converted by job {}, reusing it", fileName, existing.get().getId());
+            return existing.get();
+        }
+
+        JobAdmission.Ticket ticket = admission.admit(estimateCharacters(fileName, digest));
+        Document saved;
+        try
+        {
+            Document document = new Document();
+            document.setFileName(fileName);
+            document.setContentDigest(digest);
+            document.setPriority(priority);
+            document.setStatus(DocumentStatus.QUEUED);
+            saved = documentRepository.save(document);
+        }
+        catch (RuntimeException ex)
+        {
+            ticket.close();
+            throw ex;
+        }
+        catalog.onJobUpdated(saved);
+
+        start(saved, ticket);
+        logger.info("Queued audiobook job {} for: {}", saved.getId(), fileName);
+        return saved;
+    }
+
+    @Override
+    public synchronized Optional<Document> resume(long jobId)
+    {
+        RunningJob running = runningJobs.get(jobId);
+        if (running != null)
+        {
+            return Optional.of(running.document);
+        }
+        Optional<Document> document = documentRepository.findById(jobId);
+        if (document.isEmpty() || document.get().getStatus() == DocumentStatus.COMPLETED)
+        {
+            return document;
+        }
+        logger.info("Resuming audiobook job {} for: {}", jobId, document.get().getFileName());
+        return Optional.of(restart(document.get()));
+    }
+
+    private Document restart(Document document)
+    {
+        JobAdmission.Ticket ticket = admission.admit(
+                estimateCharacters(document.getFileName(), document.getContentDigest()));
+        Document saved;
+        try
+        {
+            document.setStatus(DocumentStatus.QUEUED);
+            document.setErrorMessage(null);
+            saved = documentRepository.save(document);
+        }
+        catch (RuntimeException ex)
+        {
+            ticket.close();
+            throw ex;
+        }
+        catalog.onJobUpdated(saved);
+        start(saved, ticket);
+        return saved;
+    }
+
+    private void start(Document document, JobAdmission.Ticket ticket)
+    {
+        RunningJob job = new RunningJob(document, ticket);
+        runningJobs.put(document.getId(), job);
+        job.future = jobExecutor.submit(() -> run(job));
+    }
+
+    /**
+     * Finds a completed job whose audiobook still exists, or a job that is still converting the same content.
+     */
+    private Optional<Document> findReusableJob(String digest)
+    {
+        if (digest == null)
+        {
+            return Optional.empty();
+        }
+        List<Document> candidates = documentRepository.findByContentDigestAndStatusInOrderByCreatedAtDesc(
+                digest, REUSABLE_STATUSES);
+        for (Document candidate : candidates)
+        {
+            if (candidate.getStatus() != DocumentStatus.COMPLETED)
+            {
+                return Optional.of(candidate);
+            }
+            if (candidate.getOutputPath() != null && Files.exists(Paths.get(candidate.getOutputPath())))
+            {
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Characters of the upload's stored text, or a guess from the file size before it was ever extracted.
+     */
+    private long estimateCharacters(String fileName, String digest)
+    {
+        OptionalLong stored = ttsClientService.extractedLength(digest);
+        if (stored.isPresent())
+        {
+            return stored.getAsLong();
+        }
+        File pdfFile = storageService.load(fileName).toFile();
+        return (long) (pdfFile.length() * charactersPerByte);
+    }
+
+    @Override
+    public JobQueueStatus getQueueStatus()
+    {
+        return admission.status();
+    }
+
+    @Override
+    public Optional<Document> getJob(long jobId)
+    {
+        return documentRepository.findById(jobId);
+    }
+
+    @Override
+    public boolean cancel(long jobId)
+    {
+        RunningJob job = runningJobs.remove(jobId);
+        if (job != null)
+        {
+            // Waits for a checkpoint write in progress; none starts after this, so the delete below is final
+            synchronized (job)
+            {
+                job.cancelled = true;
+            }
+            job.audio.fail("Audiobook job was cancelled");
+            if (job.future != null)
+            {
+                job.future.cancel(true);
+            }
+            job.ticket.close();
+            logger.info("Cancelled audiobook job {}", jobId);
+        }
+        searchService.removeBook(jobId);
+
+        checkpointRepository.deleteByDocumentId(jobId);
+        Optional<Document> document = documentRepository.findById(jobId);
+        if (document.isEmpty())
+        {
+            return job != null;
+        }
+        documentRepository.deleteById(jobId);
+        catalog.onJobDeleted(document.get());
+        return true;
+    }
+
+    @Override
+    public Optional<AudiobookStream> openStream(long jobId)
+    {
+        RunningJob job = runningJobs.get(jobId);
+        if (job != null)
+        {
+            return Optional.of(job.audio);
+        }
+        return documentRepository.findById(jobId)
+                .filter(document -> document.getStatus() == DocumentStatus.COMPLETED)
+                .map(Document::getOutputPath)
+                .map(Paths::get)
+                .filter(Files::isReadable)
+                .map(FileAudiobookStream::new);
+    }
+
+    private void run(RunningJob job)
+    {
+        String fileName = job.document.getFileName();
+        if (job.cancelled)
+        {
+            job.ticket.close();
+            return;
+        }
+        job.ticket.started();
+        try
+        {
+            String pdfPath = storageService.load(fileName).toAbsolutePath().toString();
+
+            job.update(document -> document.setStatus(DocumentStatus.EXTRACTING));
+            searchService.startBook(job.document);
+            List<String> audioPaths = ttsClientService.processFileForTTS(pdfPath, new TTSProgressListener()
+            {
+                @Override
+                public void onChunksExtracted(int extractedChunks)
+                {
+                    job.update(document -> document.setChunksExtracted(extractedChunks));
+                }
+
+                @Override
+                public void onChunkExtracted(PDFChunk chunk)
+                {
+                    searchService.addChunk(job.document.getId(), chunk);
+                    job.chunkLengths.add(chunk.getText().length());
+                    job.extractedCharacters += chunk.getText().length();
+                }
+
+                @Override
+                public void onExtractionComplete(int totalChunks)
+                {
+                    job.ticket.extracted(job.extractedCharacters);
+                    job.update(document -> {
+                        document.setChunksExtracted(totalChunks);
+                        document.setTotalChunks(totalChunks);
+                        document.setStatus(DocumentStatus.SYNTHESIZING);
+                    });
+                }
+
+                @Override
+                public void onSegmentsReady(List<String> segmentPaths)
+                {
+                    job.audio.addSegments(segmentPaths);
+                    searchService.addSegments(job.document.getId(), segmentPaths);
+                    long characters = 0;
+                    for (int i = 0; i < segmentPaths.size() && job.synthesizedChunks < job.chunkLengths.size(); i++)
+                    {
+                        characters += job.chunkLengths.get(job.synthesizedChunks++);
+                    }
+                    job.ticket.synthesized(characters);
+                }
+
+                @Override
+                public void onChunksSynthesized(int synthesizedChunks)
+                {
+                    job.update(document -> document.setChunksSynthesized(synthesizedChunks));
+                }
+            }, new DocumentCheckpoints(job), job.document.getPriority());
+
+            if (audioPaths.isEmpty())
+            {
+                throw new IllegalStateException("No audio was generated for " + fileName);
+            }
+
+            job.update(document -> document.setStatus(DocumentStatus.COMBINING));
+            String combinedFilePath = ttsClientService.combineAudioFiles(audioPaths, outputName(job.document));
+
+            job.update(document -> {
+                document.setOutputPath(combinedFilePath);
+                document.setStatus(DocumentStatus.COMPLETED);
+            });
+            job.audio.finish();
+            logger.info("Audiobook job {} completed: {}", job.document.getId(), combinedFilePath);
+        }
+        catch (Exception ex)
+        {
+            job.audio.fail(job.cancelled ? "Audiobook job was cancelled" : ex.getMessage());
+            if (job.cancelled || Thread.currentThread().isInterrupted())
+            {
+                logger.info("Audiobook job {} stopped after cancellation", job.document.getId());
+                return;
+            }
+            logger.error("Audiobook job {} failed for: {}", job.document.getId(), fileName, ex);
+            job.update(document -> {
+                document.setStatus(DocumentStatus.FAILED);
+                document.setErrorMessage(truncate(ex.getMessage()));
+            });
+        }
+        finally
+        {
+            job.audio.finish();
+            job.ticket.close();
+            runningJobs.remove(job.document.getId(), job);
+        }
+    }
+
+    /**
+     * Names the combined audiobook after the content, or after the job when the digest is unknown,
+     * so different uploads sharing a file name never overwrite each other's audio.
+     */
+    private static String outputName(Document document)
+    {
+        return document.getContentDigest() != null ? document.getContentDigest() : "job-" + document.getId();
+    }
+
+    private static String truncate(String message)
+    {
+        if (message == null)
+        {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    /**
+     * Checkpoints of one job, loaded once when the job starts and written through as batches finish.
+     */
+    private final class DocumentCheckpoints implements TTSCheckpointStore
+    {
+        private final RunningJob job;
+        private final long documentId;
+        private final Map<Integer, ChunkCheckpoint> byChunk = new HashMap<>();
+
+        private DocumentCheckpoints(RunningJob job)
+        {
+            this.job = job;
+            this.documentId = job.document.getId();
+            for (ChunkCheckpoint checkpoint : checkpointRepository.findByDocumentId(documentId))
+            {
+                byChunk.put(checkpoint.getChunkIndex(), checkpoint);
+            }
+        }
+
+        @Override
+        public Optional<String> completedSegment(int chunkIndex, String chunkKey)
+        {
+            synchronized (job)
+            {
+                ChunkCheckpoint checkpoint = byChunk.get(chunkIndex);
+                if (checkpoint == null || !checkpoint.getChunkKey().equals(chunkKey)
+                        || !Files.exists(Paths.get(checkpoint.getSegmentPath())))
+                {
+                    return Optional.empty();
+                }
+                return Optional.of(checkpoint.getSegmentPath());
+            }
+        }
+
+        /**
+         * Writes under the job's monitor, the one {@code cancel} sets the flag under, so once a
+         * cancel has set it no batch can write rows after the checkpoints were deleted.
+         */
+        @Override
+        public void record(List<Integer> chunkIndexes, List<String> chunkKeys, List<String> segmentPaths)
+        {
+            synchronized (job)
+            {
+                if (job.cancelled)
+                {
+                    // The document and its checkpoints are being deleted
+                    return;
+                }
+                List<ChunkCheckpoint> changed = new ArrayList<>(chunkIndexes.size());
+                for (int i = 0; i < chunkIndexes.size(); i++)
+                {
+                    ChunkCheckpoint checkpoint = byChunk.get(chunkIndexes.get(i));
+                    if (checkpoint == null)
+                    {
+                        checkpoint = new ChunkCheckpoint();
+                        checkpoint.setDocumentId(documentId);
+                        checkpoint.setChunkIndex(chunkIndexes.get(i));
+                    }
+                    checkpoint.setChunkKey(chunkKeys.get(i));
+                    checkpoint.setSegmentPath(segmentPaths.get(i));
+                    changed.add(checkpoint);
+                }
+                try
+                {
+                    for (ChunkCheckpoint saved : checkpointRepository.saveAll(changed))
+                    {
+                        byChunk.put(saved.getChunkIndex(), saved);
+                    }
+                }
+                catch (RuntimeException ex)
+                {
+                    // Losing a checkpoint only costs a re-synthesis on resume, never the running job
+                    logger.warn("Failed to checkpoint {} chunks of job {}", changed.size(), documentId, ex);
+                }
+            }
+        }
+    }
+
+    private final class RunningJob
+    {
+        private Document document;
+        private final JobAdmission.Ticket ticket;
+        private final ProgressiveAudio audio = new ProgressiveAudio();
+        // Length of every extracted chunk, to turn synthesized segments into characters; job thread only
+        private final List<Integer> chunkLengths = new ArrayList<>();
+        private long extractedCharacters;
+        private int synthesizedChunks;
+        private volatile Future<?> future;
+        private volatile boolean cancelled;
+
+        private RunningJob(Document document, JobAdmission.Ticket ticket)
+        {
+            this.document = document;
+            this.ticket = ticket;
+        }
+
+        private synchronized void update(Consumer<Document> change)
+        {
+            if (cancelled)
+            {
+                return;
+            }
+            change.accept(document);
+            document = documentRepository.save(document);
+            catalog.onJobUpdated(document);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.service.AudiobookStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stream over the combined audiobook of a completed job.
+ */
+class FileAudiobookStream implements AudiobookStream
+{
+    private final Path file;
+
+    FileAudiobookStream(Path file)
+    {
+        this.file = file;
+    }
+
+    @Override
+    public String getContentType()
+    {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".wav"))
+        {
+            return "audio/wav";
+        }
+        return name.endsWith(".mp3") ? "audio/mpeg" : "application/octet-stream";
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException
+    {
+        Files.copy(file, out);
+    }
+}
@@ -0,0 +1,445 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.model.CatalogItem;
+import fenix.aw.reader.model.CatalogPage;
+import fenix.aw.reader.model.CatalogQuery;
+import fenix.aw.reader.model.CatalogSort;
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.repository.DocumentRepository;
+import fenix.aw.reader.service.IFileCatalogService;
+import fenix.aw.reader.service.IStorageService;
+import fenix.aw.reader.service.StorageListener;
+import fenix.aw.reader.util.StorageProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory catalog of the uploaded files, so listings never scan the upload directory. Files are kept
+ * in one sorted set per {@link CatalogSort}; a page starts with a logarithmic seek to the cursor (or to
+ * the start of a size or date range when sorted by that field) and then reads just the page. The
+ * catalog is built once the application is ready and then kept current by the storage service's store
+ * paths plus a {@link WatchService} on the upload directory for files placed there by other means.
+ * Job status comes from the {@link Document} table, loaded at startup and updated by the job service,
+ * and is looked up by content digest when a page is built.
+ */
+@Service
+public class FileCatalogService implements IFileCatalogService, StorageListener
+{
+    private static final Logger logger = LoggerFactory.getLogger(FileCatalogService.class);
+    private static final int MAX_LIMIT = 500;
+    private static final String HIGHEST_NAME = "\uffff";
+
+    private final IStorageService storageService;
+    private final DocumentRepository documentRepository;
+    private final Path rootLocation;
+
+    private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+    private final Map<CatalogSort, NavigableSet<Entry>> sorted = new EnumMap<>(CatalogSort.class);
+    // Latest job per content digest
+    private final Map<String, JobState> jobs = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    public FileCatalogService(IStorageService storageService, DocumentRepository documentRepository,
+                              StorageProperties storageProperties)
+    {
+        this.storageService = storageService;
+        this.documentRepository = documentRepository;
+        this.rootLocation = Paths.get(storageProperties.getLocation()).toAbsolutePath();
+        sorted.put(CatalogSort.NAME, new ConcurrentSkipListSet<>(
+                Comparator.comparing((Entry entry) -> entry.fileName)));
+        sorted.put(CatalogSort.SIZE, new ConcurrentSkipListSet<>(
+                Comparator.comparingLong((Entry entry) -> entry.size).thenComparing(entry -> entry.fileName)));
+        sorted.put(CatalogSort.UPLOADED, new ConcurrentSkipListSet<>(
+                Comparator.comparing((Entry entry) -> entry.uploadedAt).thenComparing(entry -> entry.fileName)));
+        storageService.addListener(this);
+    }
+
+    /**
+     * Runs after the storage directories exist; the watch is registered before the scan so nothing
+     * created in between is missed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start()
+    {
+        try
+        {
+            watchService = rootLocation.getFileSystem().newWatchService();
+            rootLocation.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watcher = new Thread(this::watch, "file-catalog-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Cannot watch {}, the catalog only sees files stored through the API", rootLocation, ex);
+        }
+
+        long start = System.nanoTime();
+        rescan();
+        for (Document document : documentRepository.findAll(Sort.by("id")))
+        {
+            onJobUpdated(document);
+        }
+        logger.info("File catalog loaded {} files and {} jobs in {} ms", byName.size(), jobs.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException
+    {
+        if (watchService != null)
+        {
+            watchService.close();
+        }
+    }
+
+    @Override
+    public CatalogPage list(CatalogQuery query, String urlPrefix)
+    {
+        CatalogSort sort = query.sort() == null ? CatalogSort.NAME : query.sort();
+        int limit = Math.max(1, Math.min(query.limit() <= 0 ? 50 : query.limit(), MAX_LIMIT));
+        NavigableSet<Entry> view = query.descending() ? sorted.get(sort).descendingSet() : sorted.get(sort);
+
+        Entry rangeStart = rangeStart(query, sort);
+        if (rangeStart != null)
+        {
+            view = view.tailSet(rangeStart, true);
+        }
+        if (query.cursor() != null && !query.cursor().isEmpty())
+        {
+            view = view.tailSet(decodeCursor(query.cursor(), sort, query.descending()), false);
+        }
+
+        List<CatalogItem> items = new ArrayList<>(limit);
+        String nextCursor = null;
+        for (Entry entry : view)
+        {
+            if (pastRange(entry, query, sort))
+            {
+                break;
+            }
+            if (!matches(entry, query))
+            {
+                continue;
+            }
+            if (items.size() == limit)
+            {
+                nextCursor = encodeCursor(items.get(limit - 1), sort, query.descending());
+                break;
+            }
+            JobState job = entry.digest == null ? null : jobs.get(entry.digest);
+            items.add(new CatalogItem(entry.fileName,
+                    urlPrefix + UriUtils.encodePathSegment(entry.fileName, StandardCharsets.UTF_8),
+                    entry.size, entry.uploadedAt, entry.digest,
+                    job == null ? null : job.document.getStatus(), job == null ? null : job.document.getId()));
+        }
+        return new CatalogPage(items, nextCursor);
+    }
+
+    @Override
+    public List<String> fileNames()
+    {
+        List<String> names = new ArrayList<>(byName.size());
+        for (Entry entry : sorted.get(CatalogSort.NAME))
+        {
+            names.add(entry.fileName);
+        }
+        return names;
+    }
+
+    @Override
+    public void onJobUpdated(Document document)
+    {
+        if (document.getContentDigest() == null)
+        {
+            return;
+        }
+        // The newest job for a digest is the one listings show
+        jobs.merge(document.getContentDigest(), new JobState(document),
+                (current, update) -> update.document.getId() >= current.document.getId() ? update : current);
+    }
+
+    @Override
+    public void onJobDeleted(Document document)
+    {
+        if (document.getContentDigest() != null)
+        {
+            jobs.computeIfPresent(document.getContentDigest(),
+                    (digest, current) -> current.document.getId() == document.getId() ? null : current);
+        }
+    }
+
+    @Override
+    public void onStored(String filename, String digest)
+    {
+        refresh(rootLocation.resolve(filename), digest);
+    }
+
+    @Override
+    public void onDeleted(String filename)
+    {
+        refresh(rootLocation.resolve(filename), null);
+    }
+
+    @Override
+    public void onCleared()
+    {
+        synchronized (this)
+        {
+            byName.clear();
+            sorted.values().forEach(NavigableSet::clear);
+        }
+    }
+
+    private void watch()
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    {
+                        logger.info("Missed file events in {}, rescanning", rootLocation);
+                        rescan();
+                        continue;
+                    }
+                    refresh(rootLocation.resolve((Path) event.context()), null);
+                }
+                if (!key.reset())
+                {
+                    logger.warn("Stopped watching {}", rootLocation);
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException ex)
+        {
+            logger.debug("File catalog watcher stopped");
+        }
+        catch (RuntimeException ex)
+        {
+            logger.error("File catalog watcher failed", ex);
+        }
+    }
+
+    private void rescan()
+    {
+        List<String> seen = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(rootLocation))
+        {
+            for (Path file : files)
+            {
+                String filename = file.getFileName().toString();
+                if (!filename.startsWith("."))
+                {
+                    Entry known = byName.get(filename);
+                    // Hashes files that predate content addressing once; known ones come from the alias index
+                    refresh(file, known != null ? known.digest : storageService.getDigest(filename).orElse(null));
+                    seen.add(filename);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.error("Failed to scan {}", rootLocation, ex);
+            return;
+        }
+        List<String> gone = new ArrayList<>(byName.keySet());
+        gone.removeAll(seen);
+        gone.forEach(filename -> refresh(rootLocation.resolve(filename), null));
+    }
+
+    /**
+     * Brings the entry for {@code file} in line with the file system. A null digest keeps the known one
+     * as long as the file is unchanged.
+     */
+    private synchronized void refresh(Path file, String digest)
+    {
+        String filename = file.getFileName().toString();
+        if (filename.startsWith("."))
+        {
+            return;
+        }
+        Entry current = byName.get(filename);
+        Entry updated = null;
+        try
+        {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attributes.isRegularFile())
+            {
+                Instant modified = attributes.lastModifiedTime().toInstant();
+                if (digest == null && current != null && current.size == attributes.size()
+                        && current.uploadedAt.equals(modified))
+                {
+                    digest = current.digest;
+                }
+                updated = new Entry(filename, attributes.size(), modified, digest);
+            }
+        }
+        catch (IOException ex)
+        {
+            // Deleted
+        }
+
+        if (current != null)
+        {
+            sorted.values().forEach(set -> set.remove(current));
+            byName.remove(filename);
+        }
+        if (updated != null)
+        {
+            byName.put(filename, updated);
+            for (NavigableSet<Entry> set : sorted.values())
+            {
+                set.add(updated);
+            }
+        }
+    }
+
+    /**
+     * Where a listing sorted by size or date can start, so entries outside the range are never visited.
+     */
+    private static Entry rangeStart(CatalogQuery query, CatalogSort sort)
+    {
+        String name = query.descending() ? HIGHEST_NAME : "";
+        if (sort == CatalogSort.SIZE)
+        {
+            Long bound = query.descending() ? query.maxSize() : query.minSize();
+            return bound == null ? null : new Entry(name, bound, Instant.EPOCH, null);
+        }
+        if (sort == CatalogSort.UPLOADED)
+        {
+            Instant bound = query.descending() ? query.uploadedBefore() : query.uploadedAfter();
+            return bound == null ? null : new Entry(name, 0, bound, null);
+        }
+        return null;
+    }
+
+    private static boolean pastRange(Entry entry, CatalogQuery query, CatalogSort sort)
+    {
+        if (sort == CatalogSort.SIZE)
+        {
+            Long bound = query.descending() ? query.minSize() : query.maxSize();
+            return bound != null && (query.descending() ? entry.size < bound : entry.size > bound);
+        }
+        if (sort == CatalogSort.UPLOADED)
+        {
+            Instant bound = query.descending() ? query.uploadedAfter() : query.uploadedBefore();
+            return bound != null && (query.descending() ? entry.uploadedAt.isBefore(bound)
+                    : entry.uploadedAt.isAfter(bound));
+        }
+        return false;
+    }
+
+    private boolean matches(Entry entry, CatalogQuery query)
+    {
+        if (query.minSize() != null && entry.size < query.minSize()
+                || query.maxSize() != null && entry.size > query.maxSize()
+                || query.uploadedAfter() != null && entry.uploadedAt.isBefore(query.uploadedAfter())
+                || query.uploadedBefore() != null && entry.uploadedAt.isAfter(query.uploadedBefore()))
+        {
+            return false;
+        }
+        if (query.status() == null)
+        {
+            return true;
+        }
+        JobState job = entry.digest == null ? null : jobs.get(entry.digest);
+        return job != null && job.document.getStatus() == query.status();
+    }
+
+    // The cursor is the sort key of the last item returned, so it stays valid when that file is deleted
+    private static String encodeCursor(CatalogItem last, CatalogSort sort, boolean descending)
+    {
+        String key = switch (sort)
+        {
+            case NAME -> "";
+            case SIZE -> Long.toString(last.size());
+            case UPLOADED -> last.uploadedAt().toString();
+        };
+        String cursor = sort + "|" + descending + "|" + key + "|" + last.fileName();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Entry decodeCursor(String cursor, CatalogSort sort, boolean descending)
+    {
+        try
+        {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\\|", 4);
+            if (parts.length != 4 || CatalogSort.valueOf(parts[0]) != sort
+                    || Boolean.parseBoolean(parts[1]) != descending)
+            {
+                throw new IllegalArgumentException("Cursor belongs to a different sort order");
+            }
+            long size = sort == CatalogSort.SIZE ? Long.parseLong(parts[2]) : 0;
+            Instant uploadedAt = sort == CatalogSort.UPLOADED ? Instant.parse(parts[2]) : Instant.EPOCH;
+            return new Entry(parts[3], size, uploadedAt, null);
+        }
+        catch (RuntimeException ex)
+        {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, ex);
+        }
+    }
+
+    private static final class Entry
+    {
+        private final String fileName;
+        private final long size;
+        private final Instant uploadedAt;
+        private final String digest;
+
+        private Entry(String fileName, long size, Instant uploadedAt, String digest)
+        {
+            this.fileName = fileName;
+            this.size = size;
+            this.uploadedAt = uploadedAt;
+            this.digest = digest;
+        }
+    }
+
+    private static final class JobState
+    {
+        private final Document document;
+
+        private JobState(Document document)
+        {
+            this.document = document;
+        }
+    }
+}
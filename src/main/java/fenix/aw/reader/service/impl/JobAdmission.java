@@ -0,0 +1,263 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.Exception.JobQueueFullException;
+import fenix.aw.reader.model.JobQueueStatus;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for audiobook jobs. A job is only taken while fewer than {@code maxQueuedJobs}
+ * jobs are waiting for a worker and the characters still to synthesize across admitted jobs stay
+ * within {@code maxOutstandingCharacters}; beyond that submissions are refused with a retry delay
+ * derived from the measured synthesis throughput, so the jobs already admitted keep the TTS backend to
+ * themselves instead of every job slowing down. A job larger than the whole limit is still admitted
+ * when nothing else is outstanding.
+ */
+public class JobAdmission
+{
+    private static final long MAX_RETRY_AFTER_SECONDS = 3600;
+
+    private final int workers;
+    private final int maxQueuedJobs;
+    private final long maxOutstandingCharacters;
+    private final long windowNanos;
+    private final long defaultRetryAfterSeconds;
+
+    private final Set<Ticket> tickets = new LinkedHashSet<>();
+    // Characters synthesized across jobs, with when; only the last window counts towards throughput
+    private final Deque<long[]> progress = new ArrayDeque<>();
+    private long progressInWindow;
+
+    /**
+     * @param workers                  jobs that run at once; admitted jobs beyond these are queued
+     * @param throughputWindowSeconds  how far back synthesis progress counts towards throughput
+     * @param defaultRetryAfterSeconds retry delay while there is no recent progress to measure
+     */
+    public JobAdmission(int workers, int maxQueuedJobs, long maxOutstandingCharacters,
+                        long throughputWindowSeconds, long defaultRetryAfterSeconds)
+    {
+        this.workers = workers;
+        this.maxQueuedJobs = maxQueuedJobs;
+        this.maxOutstandingCharacters = maxOutstandingCharacters;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(throughputWindowSeconds);
+        this.defaultRetryAfterSeconds = defaultRetryAfterSeconds;
+    }
+
+    /**
+     * Admits a job of about {@code characters} characters.
+     *
+     * @throws JobQueueFullException if the queue or the character limit is full
+     */
+    public synchronized Ticket admit(long characters)
+    {
+        if (tickets.size() >= workers + maxQueuedJobs)
+        {
+            throw new JobQueueFullException("Audiobook queue is full: " + queuedJobs() + " jobs waiting",
+                    retryAfterSeconds(nextJobFinishSeconds()));
+        }
+        long outstanding = outstandingCharacters();
+        if (outstanding > 0 && outstanding + characters > maxOutstandingCharacters)
+        {
+            throw new JobQueueFullException("Audiobook queue is full: " + outstanding + " characters outstanding",
+                    retryAfterSeconds(secondsFor(outstanding + characters - maxOutstandingCharacters)));
+        }
+        return admitAlways(characters);
+    }
+
+    /**
+     * Admits a job regardless of the limits, for jobs the service was already committed to.
+     */
+    public synchronized Ticket admitAlways(long characters)
+    {
+        Ticket ticket = new Ticket(characters);
+        tickets.add(ticket);
+        return ticket;
+    }
+
+    public synchronized JobQueueStatus status()
+    {
+        double rate = charactersPerSecond();
+        double wait = estimatedWaitSeconds();
+        return new JobQueueStatus(runningJobs(), queuedJobs(), maxQueuedJobs, outstandingCharacters(),
+                maxOutstandingCharacters, Double.isNaN(rate) ? null : rate, Double.isNaN(wait) ? null : Math.round(wait));
+    }
+
+    public synchronized int runningJobs()
+    {
+        int running = 0;
+        for (Ticket ticket : tickets)
+        {
+            if (ticket.running)
+            {
+                running++;
+            }
+        }
+        return running;
+    }
+
+    public synchronized int queuedJobs()
+    {
+        return tickets.size() - runningJobs();
+    }
+
+    public synchronized long outstandingCharacters()
+    {
+        long outstanding = 0;
+        for (Ticket ticket : tickets)
+        {
+            outstanding += ticket.remaining();
+        }
+        return outstanding;
+    }
+
+    /**
+     * Estimated seconds until a job submitted now gets a worker, or {@code NaN} without recent progress.
+     */
+    public synchronized double estimatedWaitSeconds()
+    {
+        double rate = charactersPerSecond();
+        if (Double.isNaN(rate))
+        {
+            return Double.NaN;
+        }
+        return runningJobs() < workers ? 0 : queueDrainSeconds(rate);
+    }
+
+    /**
+     * Time for the next worker to free up plus the queued work ahead, at the current throughput.
+     */
+    private double queueDrainSeconds(double rate)
+    {
+        long queued = 0;
+        for (Ticket ticket : tickets)
+        {
+            if (!ticket.running)
+            {
+                queued += ticket.remaining();
+            }
+        }
+        return nextJobFinishSeconds() + queued / rate;
+    }
+
+    /**
+     * Running jobs share the throughput, so the one with the least left finishes first.
+     */
+    private double nextJobFinishSeconds()
+    {
+        long least = Long.MAX_VALUE;
+        int running = 0;
+        for (Ticket ticket : tickets)
+        {
+            if (ticket.running)
+            {
+                least = Math.min(least, ticket.remaining());
+                running++;
+            }
+        }
+        return running == 0 ? 0 : secondsFor(least * running);
+    }
+
+    private double secondsFor(long characters)
+    {
+        double rate = charactersPerSecond();
+        return Double.isNaN(rate) ? Double.NaN : characters / rate;
+    }
+
+    private long retryAfterSeconds(double seconds)
+    {
+        if (Double.isNaN(seconds))
+        {
+            return defaultRetryAfterSeconds;
+        }
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(seconds)));
+    }
+
+    private double charactersPerSecond()
+    {
+        long now = System.nanoTime();
+        expireProgress(now);
+        if (progress.isEmpty() || progressInWindow == 0)
+        {
+            return Double.NaN;
+        }
+        // Measured over the window, or since the first progress when that is more recent
+        double seconds = Math.max(1, (double) Math.min(windowNanos, now - progress.peekFirst()[0]) / 1e9);
+        return progressInWindow / seconds;
+    }
+
+    private synchronized void recordProgress(long characters)
+    {
+        long now = System.nanoTime();
+        progress.addLast(new long[] {now, characters});
+        progressInWindow += characters;
+        expireProgress(now);
+    }
+
+    private void expireProgress(long now)
+    {
+        while (!progress.isEmpty() && now - progress.peekFirst()[0] > windowNanos)
+        {
+            progressInWindow -= progress.removeFirst()[1];
+        }
+    }
+
+    private synchronized void release(Ticket ticket)
+    {
+        tickets.remove(ticket);
+    }
+
+    /**
+     * One admitted job. Its size starts as an estimate and becomes exact once its text is extracted.
+     */
+    public final class Ticket implements AutoCloseable
+    {
+        private long characters;
+        private long synthesized;
+        private boolean running;
+
+        private Ticket(long characters)
+        {
+            this.characters = characters;
+        }
+
+        private long remaining()
+        {
+            return Math.max(0, characters - synthesized);
+        }
+
+        public void started()
+        {
+            synchronized (JobAdmission.this)
+            {
+                running = true;
+            }
+        }
+
+        public void extracted(long totalCharacters)
+        {
+            synchronized (JobAdmission.this)
+            {
+                characters = totalCharacters;
+            }
+        }
+
+        public void synthesized(long characters)
+        {
+            synchronized (JobAdmission.this)
+            {
+                synthesized += characters;
+            }
+            recordProgress(characters);
+        }
+
+        @Override
+        public void close()
+        {
+            release(this);
+        }
+    }
+}
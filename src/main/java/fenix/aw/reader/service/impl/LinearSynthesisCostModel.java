@@ -0,0 +1,81 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.service.SynthesisCostModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Models a request as {@code overhead + perChar * characters}. Both terms start from configured
+ * values and are refitted with exponentially weighted least squares over observed batch latencies,
+ * so the model follows the backend as its model or hardware changes.
+ */
+@Service
+public class LinearSynthesisCostModel implements SynthesisCostModel
+{
+    private static final Logger logger = LoggerFactory.getLogger(LinearSynthesisCostModel.class);
+    // Weight kept by older observations on every new one, roughly a 50-sample memory
+    private static final double DECAY = 0.98;
+    private static final int MIN_OBSERVATIONS = 5;
+
+    private double overheadMillis;
+    private double millisPerChar;
+
+    private double sumWeight;
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+    private long observations;
+
+    public LinearSynthesisCostModel(@Value("${tts.cost.initial.overhead.ms:200}") double overheadMillis,
+                                    @Value("${tts.cost.initial.ms.per.char:4}") double millisPerChar)
+    {
+        this.overheadMillis = overheadMillis;
+        this.millisPerChar = millisPerChar;
+    }
+
+    @Override
+    public synchronized double estimateMillis(int characters)
+    {
+        return overheadMillis + millisPerChar * characters;
+    }
+
+    @Override
+    public synchronized void observe(int characters, long latencyMillis)
+    {
+        if (characters <= 0 || latencyMillis < 0)
+        {
+            return;
+        }
+        sumWeight = sumWeight * DECAY + 1;
+        sumX = sumX * DECAY + characters;
+        sumY = sumY * DECAY + latencyMillis;
+        sumXX = sumXX * DECAY + (double) characters * characters;
+        sumXY = sumXY * DECAY + (double) characters * latencyMillis;
+        observations++;
+        if (observations < MIN_OBSERVATIONS)
+        {
+            return;
+        }
+
+        double denominator = sumWeight * sumXX - sumX * sumX;
+        double slope = denominator > 1e-9 ? (sumWeight * sumXY - sumX * sumY) / denominator : 0;
+        if (slope <= 0)
+        {
+            // Batches of near-identical size cannot separate the terms, attribute everything to characters
+            millisPerChar = Math.max(1e-3, (sumY / sumWeight - overheadMillis) / (sumX / sumWeight));
+        }
+        else
+        {
+            millisPerChar = slope;
+            overheadMillis = Math.max(0, (sumY - slope * sumX) / sumWeight);
+        }
+        if (logger.isDebugEnabled() && observations % 50 == 0)
+        {
+            logger.debug("Synthesis cost model: {} ms overhead + {} ms/char after {} batches",
+                    String.format("%.1f", overheadMillis), String.format("%.3f", millisPerChar), observations);
+        }
+    }
+}
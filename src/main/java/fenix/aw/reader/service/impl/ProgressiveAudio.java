@@ -0,0 +1,167 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.Exception.AudioCombineException;
+import fenix.aw.reader.service.AudiobookStream;
+import fenix.aw.reader.util.WavAudioCombiner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered segment list of a running job that listeners can stream from while it grows. WAV segments
+ * are sent as one WAV stream (the first segment's header with an open-ended length, then each
+ * segment's sample data); other formats are sent as the raw concatenation of the segment files.
+ * A WAV segment whose format differs from the first ends the stream with an error rather than being
+ * played with the wrong header; the combined audiobook falls back to the combine service for those.
+ */
+class ProgressiveAudio implements AudiobookStream
+{
+    private static final Logger logger = LoggerFactory.getLogger(ProgressiveAudio.class);
+    // Open-ended data length, players treat it as "until end of stream"
+    private static final long UNKNOWN_LENGTH = 0xFFFFFFFFL;
+
+    private final List<String> segments = new ArrayList<>();
+    private boolean finished;
+    private String failure;
+
+    synchronized void addSegments(List<String> segmentPaths)
+    {
+        segments.addAll(segmentPaths);
+        notifyAll();
+    }
+
+    synchronized void finish()
+    {
+        finished = true;
+        notifyAll();
+    }
+
+    synchronized void fail(String message)
+    {
+        failure = message == null ? "Audiobook generation failed" : message;
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns the segment at {@code index}, waiting for it, or {@code null} once the job finished without it.
+     */
+    private synchronized String awaitSegment(int index) throws IOException
+    {
+        while (index >= segments.size() && !finished)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for audio segment " + index);
+            }
+        }
+        if (index < segments.size())
+        {
+            return segments.get(index);
+        }
+        if (failure != null)
+        {
+            throw new IOException(failure);
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized String getContentType()
+    {
+        // Segments not synthesized yet are assumed to be WAV, the TTS service's default output
+        if (segments.isEmpty() || WavAudioCombiner.isWav(Paths.get(segments.get(0))))
+        {
+            return "audio/wav";
+        }
+        return segments.get(0).toLowerCase().endsWith(".mp3") ? "audio/mpeg" : "application/octet-stream";
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException
+    {
+        WritableByteChannel target = Channels.newChannel(out);
+        WavAudioCombiner.WavInfo firstWav = null;
+        int index = 0;
+        String segment;
+        while ((segment = awaitSegment(index)) != null)
+        {
+            Path path = Paths.get(segment);
+            if (WavAudioCombiner.isWav(path))
+            {
+                WavAudioCombiner.WavInfo info = readInfo(path);
+                if (firstWav == null)
+                {
+                    firstWav = info;
+                    ByteBuffer header = WavAudioCombiner.header(info.getFormat(), UNKNOWN_LENGTH);
+                    while (header.hasRemaining())
+                    {
+                        target.write(header);
+                    }
+                }
+                else if (!info.isCompatibleWith(firstWav))
+                {
+                    // Appending it would turn the rest of the stream into noise; the combined file handles it
+                    logger.warn("Ending stream at segment {}: its audio format differs from the stream", path.getFileName());
+                    throw new IOException("Segment " + index + " has a different audio format than the stream;"
+                            + " download the audiobook once the job completes");
+                }
+                copy(path, info.getDataOffset(), info.getDataLength(), target);
+            }
+            else
+            {
+                copy(path, 0, -1, target);
+            }
+            out.flush();
+            index++;
+        }
+    }
+
+    private static WavAudioCombiner.WavInfo readInfo(Path path) throws IOException
+    {
+        try
+        {
+            return WavAudioCombiner.readInfo(path);
+        }
+        catch (AudioCombineException ex)
+        {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    private static void copy(Path path, long offset, long length, WritableByteChannel target) throws IOException
+    {
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long position = offset;
+            long remaining = length < 0 ? source.size() - offset : length;
+            while (remaining > 0)
+            {
+                long transferred = source.transferTo(position, remaining, target);
+                if (transferred <= 0)
+                {
+                    throw new IOException("Segment ended early: " + path);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.model.ChunkCheckpoint;
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.DocumentStatus;
+import fenix.aw.reader.model.SearchHit;
+import fenix.aw.reader.repository.ChunkCheckpointRepository;
+import fenix.aw.reader.repository.DocumentRepository;
+import fenix.aw.reader.service.ISearchService;
+import fenix.aw.reader.service.IStorageService;
+import fenix.aw.reader.util.PDFChunk;
+import fenix.aw.reader.util.PDFChunkSource;
+import fenix.aw.reader.util.TextSearchIndex;
+import fenix.aw.reader.util.WavAudioCombiner;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Full-text search over converted books. Jobs feed the {@link TextSearchIndex} while they run: chunks
+ * as they are extracted and the length of each audio segment as its batch completes, which places every
+ * chunk on the audiobook's timeline. The index lives in memory; completed books are indexed again in
+ * the background at startup from their stored text and checkpointed segments.
+ */
+@Service
+public class SearchService implements ISearchService
+{
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+    private static final int MAX_LIMIT = 100;
+
+    private final TextSearchIndex index = new TextSearchIndex();
+    private final DocumentRepository documentRepository;
+    private final ChunkCheckpointRepository checkpointRepository;
+    private final IStorageService storageService;
+    private final TTSClientService ttsClientService;
+
+    @Value("${search.index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.index.rebuild.on.startup:true}")
+    private boolean rebuildOnStartup;
+
+    public SearchService(DocumentRepository documentRepository,
+                         ChunkCheckpointRepository checkpointRepository,
+                         IStorageService storageService,
+                         TTSClientService ttsClientService,
+                         MeterRegistry meterRegistry)
+    {
+        this.documentRepository = documentRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.storageService = storageService;
+        this.ttsClientService = ttsClientService;
+        Gauge.builder("search.index.chunks", index, TextSearchIndex::getChunkCount)
+                .description("Searchable chunks")
+                .register(meterRegistry);
+        Gauge.builder("search.index.terms", index, TextSearchIndex::getTermCount)
+                .description("Distinct terms in the search index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild()
+    {
+        if (!enabled || !rebuildOnStartup)
+        {
+            return;
+        }
+        Thread rebuild = new Thread(this::indexCompletedBooks, "search-index-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    private void indexCompletedBooks()
+    {
+        long start = System.nanoTime();
+        int indexed = 0;
+        for (Document document : documentRepository.findByStatusIn(EnumSet.of(DocumentStatus.COMPLETED)))
+        {
+            try
+            {
+                if (!index.containsBook(document.getId()) && indexStoredBook(document))
+                {
+                    indexed++;
+                }
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                index.removeBook(document.getId());
+                logger.warn("Could not index job {} for: {}", document.getId(), document.getFileName(), ex);
+            }
+        }
+        logger.info("Indexed {} completed books for search in {} ms", indexed,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Chunks the job's PDF the way the job did and lines the chunks up with its checkpointed segments.
+     */
+    private boolean indexStoredBook(Document document) throws IOException
+    {
+        String digest = storageService.getDigest(document.getFileName()).orElse(null);
+        if (document.getContentDigest() == null || !Objects.equals(digest, document.getContentDigest()))
+        {
+            logger.debug("Upload of job {} is gone or changed, not indexing it", document.getId());
+            return false;
+        }
+        Map<Integer, String> segments = new HashMap<>();
+        for (ChunkCheckpoint checkpoint : checkpointRepository.findByDocumentId(document.getId()))
+        {
+            segments.put(checkpoint.getChunkIndex(), checkpoint.getSegmentPath());
+        }
+
+        File pdfFile = storageService.load(document.getFileName()).toFile();
+        startBook(document);
+        int chunks = 0;
+        try (PDFChunkSource source = ttsClientService.openChunkSource(pdfFile))
+        {
+            while (source.hasNext())
+            {
+                addChunk(document.getId(), source.next());
+                chunks++;
+            }
+        }
+        List<String> segmentPaths = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++)
+        {
+            segmentPaths.add(segments.get(i));
+        }
+        addSegments(document.getId(), segmentPaths);
+        return true;
+    }
+
+    @Override
+    public List<SearchHit> search(String query, Long jobId, int limit)
+    {
+        if (query == null || query.isBlank())
+        {
+            throw new IllegalArgumentException("Search query cannot be empty");
+        }
+        List<SearchHit> hits = new ArrayList<>();
+        for (TextSearchIndex.Hit hit : index.search(query, jobId, Math.min(Math.max(limit, 1), MAX_LIMIT)))
+        {
+            hits.add(new SearchHit(hit.getBookId(), hit.getTitle(), hit.getChunkIndex(), hit.getStartPage(),
+                    hit.getEndPage(), hit.getAudioOffsetMillis() < 0 ? null : hit.getAudioOffsetMillis(),
+                    hit.getScore()));
+        }
+        return hits;
+    }
+
+    @Override
+    public void startBook(Document document)
+    {
+        if (enabled)
+        {
+            index.startBook(document.getId(), document.getFileName());
+        }
+    }
+
+    @Override
+    public void addChunk(long jobId, PDFChunk chunk)
+    {
+        if (enabled)
+        {
+            index.addChunk(jobId, chunk.getText(), chunk.getStartPage(), chunk.getEndPage());
+        }
+    }
+
+    @Override
+    public void addSegments(long jobId, List<String> segmentPaths)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        for (String segmentPath : segmentPaths)
+        {
+            index.addAudio(jobId, durationMillis(segmentPath));
+        }
+    }
+
+    @Override
+    public void removeBook(long jobId)
+    {
+        index.removeBook(jobId);
+    }
+
+    /**
+     * @return the segment's length from its WAV header, or -1 if it cannot be read
+     */
+    private static long durationMillis(String segmentPath)
+    {
+        if (segmentPath == null)
+        {
+            return -1;
+        }
+        try
+        {
+            return WavAudioCombiner.readInfo(Paths.get(segmentPath)).getDurationMillis();
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            // The segment may live on a volume this instance cannot see; only the timestamps suffer
+            logger.debug("Cannot read length of audio segment {}: {}", segmentPath, ex.getMessage());
+            return -1;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package fenix.aw.reader.service.impl;
 
+import fenix.aw.reader.Exception.InvalidUploadException;
 import fenix.aw.reader.Exception.StorageException;
 import fenix.aw.reader.Exception.StorageFileNotFoundException;
+import fenix.aw.reader.Exception.UploadOffsetMismatchException;
+import fenix.aw.reader.Exception.UploadTooLargeException;
+import fenix.aw.reader.model.UploadSession;
 import fenix.aw.reader.util.StorageProperties;
 import fenix.aw.reader.service.IStorageService;
+import fenix.aw.reader.service.StorageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,24 +18,67 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 
 @Service
 public class StorageService implements IStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(StorageService.class);
-    private static final long MAX_FILE_SIZE = 50 * 1024 * 1024; // 50MB
     private static final String[] ALLOWED_EXTENSIONS = {".pdf"};
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F', '-'};
+    private static final String OBJECTS_DIR = ".objects";
+    private static final String UPLOADS_DIR = ".uploads";
+    // One "<digest>\t<url-encoded name>" line per stored alias, appended as files are stored and deleted
+    private static final String ALIAS_JOURNAL = ".aliases.journal";
+    // Digest of the journal line that removes an alias
+    private static final String DELETED_ALIAS = "-";
+    // Whole-map index written by earlier versions, migrated into the journal on startup
+    private static final String LEGACY_ALIAS_INDEX = ".aliases.properties";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
 
     private final Path rootLocation;
+    private final long maxFileSize;
+    private final Duration uploadExpiry;
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+    // Aliases per digest; an object is deleted when its count drops to zero. Guarded by this
+    private final Map<String, Integer> references = new HashMap<>();
+    // Running digests of the resumable uploads, so completing one never reads the file back
+    private final Map<String, MessageDigest> uploadDigests = new ConcurrentHashMap<>();
+    private final Map<String, Object> uploadLocks = new ConcurrentHashMap<>();
+    private final List<StorageListener> listeners = new CopyOnWriteArrayList<>();
 
     @Autowired
     public StorageService(StorageProperties properties)
@@ -41,6 +89,8 @@ public class StorageService implements IStorageService {
         }
 
         this.rootLocation = Paths.get(properties.getLocation());
+        this.maxFileSize = properties.getMaxFileSize().toBytes();
+        this.uploadExpiry = properties.getUploadExpiry();
         logger.info("Storage service initialized with root location: {}", rootLocation);
     }
 
@@ -50,6 +100,7 @@ public class StorageService implements IStorageService {
         {
             return Files.walk(this.rootLocation, 1)
                     .filter(path -> !path.equals(this.rootLocation))
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
                     .map(this.rootLocation::relativize);
         }
         catch (IOException ex)
@@ -95,26 +146,19 @@ public class StorageService implements IStorageService {
     }
 
     @Override
-    public void store(MultipartFile file) {
+    public String store(MultipartFile file) {
         try
         {
             validateFileStorage(file);
 
             String originalFilename = file.getOriginalFilename();
-            Path destinationFile = this.rootLocation.resolve(
-                    Paths.get(Objects.requireNonNull(originalFilename))
-            ).normalize().toAbsolutePath();
-
-            if(!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath()))
-            {
-                logger.error("Attempted path traversal attack with file: {}", originalFilename);
-                throw new StorageException("Cannot store file outside current directory.");
-            }
+            Path destinationFile = resolveAlias(Objects.requireNonNull(originalFilename));
 
             try (InputStream inputStream = file.getInputStream())
             {
-                Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-                logger.info("Successfully stored file: {}", originalFilename);
+                String digest = storeContent(inputStream, destinationFile);
+                logger.info("Successfully stored file: {} (sha256 {})", originalFilename, digest);
+                return digest;
             }
         }
         catch (IOException ex)
@@ -124,20 +168,605 @@ public class StorageService implements IStorageService {
         }
     }
 
-    private static void validateFileStorage(MultipartFile file) {
+    @Override
+    public String store(String filename, InputStream content, long contentLength)
+    {
+        validateFilename(filename);
+        validateSize(contentLength);
+        Path destinationFile = resolveAlias(filename);
+        try
+        {
+            // Written straight to the objects directory while hashing and validating, no intermediate copy
+            String digest = storeContent(new PdfUploadStream(content, 0, maxFileSize, true), destinationFile);
+            logger.info("Successfully streamed file: {} (sha256 {})", filename, digest);
+            return digest;
+        }
+        catch (IOException ex)
+        {
+            logger.error("Failed to store streamed file: {}", filename, ex);
+            throw new StorageException("Failed to store file. " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public UploadSession createUpload(String filename, long size)
+    {
+        validateFilename(filename);
+        validateSize(size);
+        if (size < PDF_MAGIC.length)
+        {
+            throw new InvalidUploadException("Upload size must be at least " + PDF_MAGIC.length + " bytes");
+        }
+        resolveAlias(filename);
+
+        expireUploads();
+        String uploadId = UUID.randomUUID().toString();
+        Properties metadata = new Properties();
+        metadata.setProperty("fileName", filename);
+        metadata.setProperty("size", Long.toString(size));
+        try
+        {
+            Path uploadsDir = rootLocation.resolve(UPLOADS_DIR);
+            Files.createDirectories(uploadsDir);
+            Files.createFile(uploadsDir.resolve(uploadId + ".part"));
+            try (OutputStream outputStream = Files.newOutputStream(uploadsDir.resolve(uploadId + ".properties")))
+            {
+                metadata.store(outputStream, "resumable upload");
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.error("Failed to create upload for: {}", filename, ex);
+            throw new StorageException("Failed to create upload. " + ex.getMessage(), ex);
+        }
+        uploadDigests.put(uploadId, newDigest());
+        logger.info("Created upload {} for {} ({} bytes)", uploadId, filename, size);
+        return new UploadSession(uploadId, filename, size, 0, null);
+    }
+
+    @Override
+    public UploadSession getUpload(String uploadId)
+    {
+        Properties metadata = readUpload(uploadId);
+        try
+        {
+            return new UploadSession(uploadId, metadata.getProperty("fileName"),
+                    Long.parseLong(metadata.getProperty("size")), Files.size(uploadPart(uploadId)), null);
+        }
+        catch (IOException ex)
+        {
+            throw new StorageFileNotFoundException("Upload not found: " + uploadId, ex);
+        }
+    }
+
+    @Override
+    public UploadSession appendUpload(String uploadId, long offset, InputStream content)
+    {
+        synchronized (uploadLocks.computeIfAbsent(uploadId, id -> new Object()))
+        {
+            UploadSession upload = getUpload(uploadId);
+            if (offset != upload.offset())
+            {
+                throw new UploadOffsetMismatchException("Upload " + uploadId + " is at offset " + upload.offset()
+                        + ", not " + offset, upload.offset());
+            }
+
+            Path part = uploadPart(uploadId);
+            MessageDigest messageDigest = uploadDigests.computeIfAbsent(uploadId, id -> rehash(part));
+            long written = offset;
+            try (InputStream chunk = new DigestInputStream(
+                         new PdfUploadStream(content, offset, upload.size(), false), messageDigest);
+                 OutputStream outputStream = Files.newOutputStream(part, StandardOpenOption.APPEND))
+            {
+                byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+                int read;
+                while ((read = chunk.read(buffer)) != -1)
+                {
+                    outputStream.write(buffer, 0, read);
+                    written += read;
+                }
+            }
+            catch (InvalidUploadException ex)
+            {
+                // Not a PDF, no point in resuming
+                abortUpload(uploadId);
+                throw ex;
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                // The digest may have seen bytes that never reached the file; rebuild it on the next chunk
+                uploadDigests.remove(uploadId);
+                if (ex instanceof RuntimeException runtimeException)
+                {
+                    throw runtimeException;
+                }
+                logger.warn("Upload {} interrupted at offset {}: {}", uploadId, written, ex.getMessage());
+                throw new StorageException("Failed to write upload chunk. " + ex.getMessage(), ex);
+            }
+
+            if (written < upload.size())
+            {
+                return new UploadSession(uploadId, upload.fileName(), upload.size(), written, null);
+            }
+            return completeUpload(upload, part, messageDigest);
+        }
+    }
+
+    @Override
+    public void abortUpload(String uploadId)
+    {
+        readUpload(uploadId);
+        deleteUpload(uploadId);
+        logger.info("Aborted upload {}", uploadId);
+    }
+
+    private UploadSession completeUpload(UploadSession upload, Path part, MessageDigest messageDigest)
+    {
+        String digest = HexFormat.of().formatHex(messageDigest.digest());
+        try
+        {
+            // The part file already sits on the storage volume, so this is a rename rather than a copy
+            commitObject(part, digest, resolveAlias(upload.fileName()));
+        }
+        catch (IOException ex)
+        {
+            logger.error("Failed to store completed upload {}", upload.id(), ex);
+            throw new StorageException("Failed to store upload. " + ex.getMessage(), ex);
+        }
+        deleteUpload(upload.id());
+        logger.info("Completed upload {} as {} (sha256 {})", upload.id(), upload.fileName(), digest);
+        return new UploadSession(upload.id(), upload.fileName(), upload.size(), upload.size(), digest);
+    }
+
+    private Properties readUpload(String uploadId)
+    {
+        if (uploadId == null || !uploadId.matches("[0-9a-f-]{36}"))
+        {
+            throw new StorageFileNotFoundException("Upload not found: " + uploadId);
+        }
+        Properties metadata = new Properties();
+        try (InputStream inputStream = Files.newInputStream(
+                rootLocation.resolve(UPLOADS_DIR).resolve(uploadId + ".properties")))
+        {
+            metadata.load(inputStream);
+            return metadata;
+        }
+        catch (IOException ex)
+        {
+            throw new StorageFileNotFoundException("Upload not found: " + uploadId, ex);
+        }
+    }
+
+    private Path uploadPart(String uploadId)
+    {
+        return rootLocation.resolve(UPLOADS_DIR).resolve(uploadId + ".part");
+    }
+
+    private void deleteUpload(String uploadId)
+    {
+        uploadDigests.remove(uploadId);
+        uploadLocks.remove(uploadId);
+        try
+        {
+            Files.deleteIfExists(uploadPart(uploadId));
+            Files.deleteIfExists(rootLocation.resolve(UPLOADS_DIR).resolve(uploadId + ".properties"));
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Failed to delete upload {}", uploadId, ex);
+        }
+    }
+
+    // Uploads resumed after a restart have no running digest yet; hash what has arrived so far once
+    private static MessageDigest rehash(Path part)
+    {
+        MessageDigest messageDigest = newDigest();
+        try (InputStream inputStream = Files.newInputStream(part))
+        {
+            byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1)
+            {
+                messageDigest.update(buffer, 0, read);
+            }
+            return messageDigest;
+        }
+        catch (IOException ex)
+        {
+            throw new StorageException("Failed to read upload part " + part, ex);
+        }
+    }
+
+    private void expireUploads()
+    {
+        Path uploadsDir = rootLocation.resolve(UPLOADS_DIR);
+        if (!Files.isDirectory(uploadsDir))
+        {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(uploadExpiry);
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(uploadsDir, "*.part"))
+        {
+            for (Path part : parts)
+            {
+                if (Files.getLastModifiedTime(part).toInstant().isBefore(cutoff))
+                {
+                    String uploadId = part.getFileName().toString().replace(".part", "");
+                    logger.info("Discarding upload {} idle for more than {}", uploadId, uploadExpiry);
+                    deleteUpload(uploadId);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Failed to expire stale uploads", ex);
+        }
+    }
+
+    @Override
+    public Optional<String> getDigest(String filename)
+    {
+        String digest = aliases.get(filename);
+        if (digest != null)
+        {
+            return Optional.of(digest);
+        }
+
+        // Files stored before content addressing have no alias entry yet, hash them once
+        Path file = load(filename);
+        if (!Files.isRegularFile(file))
+        {
+            return Optional.empty();
+        }
+        try (InputStream inputStream = Files.newInputStream(file))
+        {
+            MessageDigest messageDigest = newDigest();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1)
+            {
+                messageDigest.update(buffer, 0, read);
+            }
+            digest = HexFormat.of().formatHex(messageDigest.digest());
+            recordAlias(filename, digest);
+            return Optional.of(digest);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not hash stored file: {}", filename, ex);
+            return Optional.empty();
+        }
+    }
+
+    private Path resolveAlias(String originalFilename)
+    {
+        Path destinationFile = this.rootLocation.resolve(
+                Paths.get(originalFilename)
+        ).normalize().toAbsolutePath();
+
+        if(!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath()))
+        {
+            logger.error("Attempted path traversal attack with file: {}", originalFilename);
+            throw new InvalidUploadException("Cannot store file outside current directory.");
+        }
+        if (destinationFile.getFileName().toString().startsWith("."))
+        {
+            throw new InvalidUploadException("Filename cannot start with a dot.");
+        }
+        return destinationFile;
+    }
+
+    /**
+     * Writes the stream to a temp file while hashing it, moves it to its content-addressed object
+     * (or drops it if that content is already stored) and points the alias at the object.
+     */
+    private String storeContent(InputStream inputStream, Path aliasFile) throws IOException
+    {
+        Path objectsDir = rootLocation.resolve(OBJECTS_DIR);
+        Files.createDirectories(objectsDir);
+        Path tempFile = Files.createTempFile(objectsDir, "upload-", ".tmp");
+        try
+        {
+            MessageDigest messageDigest = newDigest();
+            try (DigestInputStream digestStream = new DigestInputStream(inputStream, messageDigest))
+            {
+                Files.copy(digestStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String digest = HexFormat.of().formatHex(messageDigest.digest());
+            commitObject(tempFile, digest, aliasFile);
+            return digest;
+        }
+        finally
+        {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Moves a fully written file to its content-addressed object (or drops it if that content is
+     * already stored) and points the alias at the object.
+     */
+    private void commitObject(Path writtenFile, String digest, Path aliasFile) throws IOException
+    {
+        Path objectFile = objectFile(digest);
+        // Under the lock that releases objects, so an object found here is not deleted before it is linked
+        synchronized (this)
+        {
+            if (Files.exists(objectFile))
+            {
+                logger.info("Content {} already stored, reusing existing object", digest);
+                Files.deleteIfExists(writtenFile);
+            }
+            else
+            {
+                try
+                {
+                    Files.move(writtenFile, objectFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (FileAlreadyExistsException ex)
+                {
+                    // A concurrent upload of the same content got there first; the bytes are identical
+                    logger.info("Content {} stored concurrently, reusing existing object", digest);
+                    Files.deleteIfExists(writtenFile);
+                }
+            }
+
+            linkAlias(aliasFile, objectFile);
+            recordAlias(aliasFile.getFileName().toString(), digest);
+        }
+        for (StorageListener listener : listeners)
+        {
+            listener.onStored(aliasFile.getFileName().toString(), digest);
+        }
+    }
+
+    private Path objectFile(String digest)
+    {
+        return rootLocation.resolve(OBJECTS_DIR).resolve(digest + ".pdf");
+    }
+
+    private static void linkAlias(Path aliasFile, Path objectFile) throws IOException
+    {
+        Files.deleteIfExists(aliasFile);
+        try
+        {
+            Files.createLink(aliasFile, objectFile);
+        }
+        catch (UnsupportedOperationException | IOException ex)
+        {
+            // Hard links are not available on every file system, fall back to a full copy
+            logger.debug("Could not hard link {}, copying instead: {}", aliasFile, ex.getMessage());
+            Files.copy(objectFile, aliasFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public boolean delete(String filename)
+    {
+        Path aliasFile = resolveAlias(filename);
+        boolean deleted;
+        synchronized (this)
+        {
+            try
+            {
+                deleted = Files.deleteIfExists(aliasFile);
+            }
+            catch (IOException ex)
+            {
+                logger.error("Failed to delete file: {}", filename, ex);
+                throw new StorageException("Failed to delete file. " + ex.getMessage(), ex);
+            }
+            String digest = aliases.remove(filename);
+            if (digest != null)
+            {
+                appendAlias(filename, DELETED_ALIAS);
+                release(digest);
+                deleted = true;
+            }
+        }
+        if (deleted)
+        {
+            logger.info("Deleted file: {}", filename);
+            listeners.forEach(listener -> listener.onDeleted(filename));
+        }
+        return deleted;
+    }
+
+    /**
+     * Points the alias at the digest and appends it to the alias journal, so storing a file costs one
+     * line however many files there are. Later lines for the same name win on replay. The object the
+     * alias pointed at before is deleted if no other alias shares it.
+     */
+    private synchronized void recordAlias(String filename, String digest)
+    {
+        String previous = aliases.put(filename, digest);
+        if (digest.equals(previous))
+        {
+            return;
+        }
+        references.merge(digest, 1, Integer::sum);
+        appendAlias(filename, digest);
+        release(previous);
+    }
+
+    private void appendAlias(String filename, String digest)
+    {
+        try
+        {
+            Files.writeString(rootLocation.resolve(ALIAS_JOURNAL), aliasLine(filename, digest),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        catch (IOException ex)
+        {
+            // Only costs re-hashing the file after a restart
+            logger.warn("Failed to persist alias of {}", filename, ex);
+        }
+    }
+
+    /**
+     * Drops one reference to the digest's object, deleting the object with the last one. Aliases are
+     * hard links or copies, so the files still named by other aliases keep their bytes either way.
+     */
+    private void release(String digest)
+    {
+        if (digest == null || references.merge(digest, -1, Integer::sum) > 0)
+        {
+            return;
+        }
+        references.remove(digest);
+        try
+        {
+            if (Files.deleteIfExists(objectFile(digest)))
+            {
+                logger.info("Deleted object {}, no file refers to it any more", digest);
+            }
+        }
+        catch (IOException ex)
+        {
+            // Deleted on the next startup
+            logger.warn("Failed to delete unreferenced object {}", digest, ex);
+        }
+    }
+
+    private static String aliasLine(String filename, String digest)
+    {
+        return digest + "\t" + URLEncoder.encode(filename, StandardCharsets.UTF_8) + "\n";
+    }
+
+    /**
+     * Replays the alias journal (after the index of earlier versions, if one is left) and rewrites it
+     * with one line per alias.
+     */
+    private void loadAliases()
+    {
+        Path legacyIndex = rootLocation.resolve(LEGACY_ALIAS_INDEX);
+        Path journal = rootLocation.resolve(ALIAS_JOURNAL);
+        boolean rewrite = false;
+        try
+        {
+            if (Files.exists(legacyIndex))
+            {
+                Properties properties = new Properties();
+                try (InputStream inputStream = Files.newInputStream(legacyIndex))
+                {
+                    properties.load(inputStream);
+                }
+                properties.forEach((filename, digest) -> aliases.put((String) filename, (String) digest));
+                rewrite = true;
+            }
+            if (Files.exists(journal))
+            {
+                int lines = 0;
+                try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8))
+                {
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        lines++;
+                        int tab = line.indexOf('\t');
+                        if (tab <= 0 || tab == line.length() - 1)
+                        {
+                            // A torn write from a crash leaves at most one partial line at the end
+                            logger.warn("Skipping malformed alias journal line");
+                            continue;
+                        }
+                        String filename = URLDecoder.decode(line.substring(tab + 1), StandardCharsets.UTF_8);
+                        String digest = line.substring(0, tab);
+                        if (digest.equals(DELETED_ALIAS))
+                        {
+                            aliases.remove(filename);
+                        }
+                        else
+                        {
+                            aliases.put(filename, digest);
+                        }
+                    }
+                }
+                rewrite |= lines > aliases.size();
+            }
+            if (rewrite)
+            {
+                compactAliases(journal);
+                Files.deleteIfExists(legacyIndex);
+            }
+            synchronized (this)
+            {
+                aliases.values().forEach(digest -> references.merge(digest, 1, Integer::sum));
+            }
+            deleteUnreferencedObjects();
+            logger.info("Loaded {} file aliases", aliases.size());
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            logger.warn("Failed to load alias index, digests will be recomputed", ex);
+        }
+    }
+
+    /**
+     * Deletes objects no alias refers to, left by a crash between a journal line and the delete or by
+     * versions that never deleted objects. Only called once the journal was read in full.
+     */
+    private void deleteUnreferencedObjects() throws IOException
+    {
+        try (DirectoryStream<Path> objects = Files.newDirectoryStream(rootLocation.resolve(OBJECTS_DIR), "*.pdf"))
+        {
+            for (Path object : objects)
+            {
+                String digest = object.getFileName().toString().replace(".pdf", "");
+                if (!references.containsKey(digest))
+                {
+                    logger.info("Deleting unreferenced object {}", digest);
+                    Files.delete(object);
+                }
+            }
+        }
+    }
+
+    private void compactAliases(Path journal) throws IOException
+    {
+        Path tempJournal = rootLocation.resolve(ALIAS_JOURNAL + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempJournal, StandardCharsets.UTF_8))
+        {
+            for (Map.Entry<String, String> alias : aliases.entrySet())
+            {
+                writer.write(aliasLine(alias.getKey(), alias.getValue()));
+            }
+        }
+        Files.move(tempJournal, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private void validateFileStorage(MultipartFile file) {
         if(file == null || file.isEmpty()) {
             throw new StorageException("File cannot be null or empty");
         }
 
-        if(file.getSize() > MAX_FILE_SIZE) {
-            throw new StorageException("File size exceeds maximum allowed size of " +
-                    (MAX_FILE_SIZE / 1024 / 1024) + "MB");
+        validateSize(file.getSize());
+        validateFilename(file.getOriginalFilename());
+    }
+
+    private void validateSize(long size) {
+        if(size > maxFileSize) {
+            throw new UploadTooLargeException("File size exceeds maximum allowed size of " +
+                    (maxFileSize / 1024 / 1024) + "MB", maxFileSize);
         }
+    }
 
-        String originalFilename = file.getOriginalFilename();
+    private static void validateFilename(String originalFilename) {
         if(originalFilename == null || originalFilename.trim().isEmpty())
         {
-            throw new StorageException("Original filename cannot be null or empty");
+            throw new InvalidUploadException("Original filename cannot be null or empty");
         }
 
         boolean validExtension = false;
@@ -148,16 +777,90 @@ public class StorageService implements IStorageService {
             }
         }
         if(!validExtension) {
-            throw new StorageException("Invalid file type. Only PDF files are allowed.");
+            throw new InvalidUploadException("Invalid file type. Only PDF files are allowed.");
         }
     }
 
 
+    /**
+     * Passes an upload through while checking it on the fly: the bytes at positions 0-4 must be the
+     * PDF magic number and no more than {@code limit} bytes may arrive in total. {@code position} is
+     * where the stream starts within the file, so chunks of resumable uploads are checked too;
+     * {@code wholeFile} says whether the end of the stream is the end of the file.
+     */
+    private static final class PdfUploadStream extends FilterInputStream
+    {
+        private final long limit;
+        private final boolean wholeFile;
+        private long position;
+
+        private PdfUploadStream(InputStream in, long position, long limit, boolean wholeFile)
+        {
+            super(in);
+            this.position = position;
+            this.limit = limit;
+            this.wholeFile = wholeFile;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int read = super.read(buffer, offset, length);
+            if (read == -1)
+            {
+                if (wholeFile && position < PDF_MAGIC.length)
+                {
+                    throw new InvalidUploadException("File is too short to be a PDF");
+                }
+                return -1;
+            }
+            for (int i = 0; i < read && position + i < PDF_MAGIC.length; i++)
+            {
+                if (buffer[offset + i] != PDF_MAGIC[(int) position + i])
+                {
+                    throw new InvalidUploadException("File is not a PDF");
+                }
+            }
+            position += read;
+            if (position > limit)
+            {
+                throw new UploadTooLargeException("Upload exceeds " + limit + " bytes", limit);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            // Every byte has to be checked
+            return 0;
+        }
+    }
+
     @Override
     public void deleteAll()
     {
         logger.warn("Deleting all files from storage location: {}", rootLocation);
         FileSystemUtils.deleteRecursively(rootLocation.toFile());
+        synchronized (this)
+        {
+            aliases.clear();
+            references.clear();
+        }
+        listeners.forEach(StorageListener::onCleared);
+    }
+
+    @Override
+    public void addListener(StorageListener listener)
+    {
+        listeners.add(listener);
     }
 
     @Override
@@ -165,7 +868,10 @@ public class StorageService implements IStorageService {
     {
         try
         {
-            Files.createDirectories(rootLocation);
+            Files.createDirectories(rootLocation.resolve(OBJECTS_DIR));
+            Files.createDirectories(rootLocation.resolve(UPLOADS_DIR));
+            loadAliases();
+            expireUploads();
             logger.info("Storage directories created successfully");
             logger.debug("Storage directories created successfully@{}", rootLocation);
         }
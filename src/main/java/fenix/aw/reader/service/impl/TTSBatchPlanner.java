@@ -0,0 +1,81 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.service.SynthesisCostModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Packs chunks, in order, into batches whose estimated synthesis cost approaches a target, so batch
+ * latencies are even and no batch of long chunks becomes the straggler. A chunk whose own cost
+ * exceeds the target still gets a batch to itself. Not thread safe; use one planner per job.
+ */
+public class TTSBatchPlanner
+{
+    private final SynthesisCostModel costModel;
+    private final double targetMillis;
+    private final int maxChunksPerBatch;
+
+    private List<String> current = new ArrayList<>();
+    private int currentCharacters;
+
+    public TTSBatchPlanner(SynthesisCostModel costModel, double targetMillis, int maxChunksPerBatch)
+    {
+        if (targetMillis <= 0 || maxChunksPerBatch <= 0)
+        {
+            throw new IllegalArgumentException("Batch target and max chunks must be positive");
+        }
+        this.costModel = costModel;
+        this.targetMillis = targetMillis;
+        this.maxChunksPerBatch = maxChunksPerBatch;
+    }
+
+    /**
+     * Adds the next chunk, handing every batch it closes to {@code onBatch}.
+     */
+    public void add(String chunk, Consumer<List<String>> onBatch)
+    {
+        if (!current.isEmpty()
+                && costModel.estimateMillis(currentCharacters + chunk.length()) > targetMillis)
+        {
+            onBatch.accept(takeCurrent());
+        }
+        current.add(chunk);
+        currentCharacters += chunk.length();
+        if (current.size() >= maxChunksPerBatch)
+        {
+            onBatch.accept(takeCurrent());
+        }
+    }
+
+    /**
+     * Hands the open batch, if any, to {@code onBatch}.
+     */
+    public void flush(Consumer<List<String>> onBatch)
+    {
+        if (!current.isEmpty())
+        {
+            onBatch.accept(takeCurrent());
+        }
+    }
+
+    public List<List<String>> plan(List<String> chunks)
+    {
+        List<List<String>> batches = new ArrayList<>();
+        for (String chunk : chunks)
+        {
+            add(chunk, batches::add);
+        }
+        flush(batches::add);
+        return batches;
+    }
+
+    private List<String> takeCurrent()
+    {
+        List<String> batch = current;
+        current = new ArrayList<>();
+        currentCharacters = 0;
+        return batch;
+    }
+}
@@ -0,0 +1,269 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.model.JobPriority;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Central queue for the TTS batches of all jobs. Each job feeds a {@link Flow}; batches are handed to
+ * the TTS executor only while fewer are running than the adaptive concurrency limit allows, and the
+ * next one is picked with deficit round-robin over the flows, weighted by batch size in characters.
+ * A job with a few batches therefore gets its turn right away instead of queueing behind every batch
+ * of a large document, while the backend stays exactly as busy as before. Priority classes are
+ * strict: a lower class only runs when no higher class has work waiting.
+ */
+@Service
+public class TTSBatchScheduler
+{
+    private static final Logger logger = LoggerFactory.getLogger(TTSBatchScheduler.class);
+
+    private final ExecutorService ttsExecutor;
+
+    private final TTSConcurrencyLimiter concurrencyLimiter;
+
+    private final Timer queueWaitTimer;
+
+    // Characters a flow may dispatch per round; about a few chunks
+    @Value("${tts.scheduler.quantum.chars:4000}")
+    private int quantumChars;
+
+    private final Map<JobPriority, ArrayDeque<Flow>> activeFlows = new EnumMap<>(JobPriority.class);
+    private int running;
+    private int queued;
+
+    public TTSBatchScheduler(ExecutorService ttsExecutor, TTSConcurrencyLimiter concurrencyLimiter,
+                             MeterRegistry meterRegistry)
+    {
+        this.ttsExecutor = ttsExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        for (JobPriority priority : JobPriority.values())
+        {
+            activeFlows.put(priority, new ArrayDeque<>());
+        }
+        this.queueWaitTimer = Timer.builder("tts.scheduler.wait")
+                .description("Time a TTS batch spent queued before it was dispatched")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("tts.scheduler.queued", this, TTSBatchScheduler::getQueuedBatches)
+                .description("TTS batches waiting for a slot")
+                .register(meterRegistry);
+        Gauge.builder("tts.scheduler.running", this, TTSBatchScheduler::getRunningBatches)
+                .description("TTS batches handed to the executor")
+                .register(meterRegistry);
+    }
+
+    public Flow openFlow(String name, JobPriority priority)
+    {
+        return new Flow(name, priority == null ? JobPriority.NORMAL : priority);
+    }
+
+    public synchronized int getQueuedBatches()
+    {
+        return queued;
+    }
+
+    public synchronized int getRunningBatches()
+    {
+        return running;
+    }
+
+    private void dispatch()
+    {
+        List<Batch<?>> ready = new ArrayList<>();
+        synchronized (this)
+        {
+            int limit = Math.max(1, concurrencyLimiter.getLimit());
+            while (running < limit)
+            {
+                Batch<?> next = poll();
+                if (next == null)
+                {
+                    break;
+                }
+                running++;
+                queueWaitTimer.record(System.nanoTime() - next.queuedAt, TimeUnit.NANOSECONDS);
+                ready.add(next);
+            }
+        }
+        for (Batch<?> batch : ready)
+        {
+            try
+            {
+                ttsExecutor.execute(() -> {
+                    try
+                    {
+                        batch.run();
+                    }
+                    finally
+                    {
+                        onFinished();
+                    }
+                });
+            }
+            catch (RejectedExecutionException ex)
+            {
+                batch.cancel(false);
+                onFinished();
+            }
+        }
+    }
+
+    private void onFinished()
+    {
+        synchronized (this)
+        {
+            running--;
+        }
+        dispatch();
+    }
+
+    /**
+     * Picks the next batch: highest priority class first, deficit round-robin within the class.
+     */
+    private Batch<?> poll()
+    {
+        for (ArrayDeque<Flow> flows : activeFlows.values())
+        {
+            while (!flows.isEmpty())
+            {
+                Flow flow = flows.peekFirst();
+                Batch<?> head = flow.batches.peekFirst();
+                if (head != null && head.isCancelled())
+                {
+                    // Dropped by its job; costs the flow nothing
+                    flow.batches.removeFirst();
+                    queued--;
+                }
+                else if (head != null && head.cost <= flow.deficit)
+                {
+                    flow.batches.removeFirst();
+                    queued--;
+                    flow.deficit -= head.cost;
+                    if (flow.batches.isEmpty())
+                    {
+                        deactivate(flows);
+                    }
+                    return head;
+                }
+                else if (head == null)
+                {
+                    deactivate(flows);
+                }
+                else
+                {
+                    // Turn is over: the flow goes to the back with its next quantum
+                    flows.removeFirst();
+                    flow.deficit += Math.max(1, quantumChars);
+                    flows.addLast(flow);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void deactivate(ArrayDeque<Flow> flows)
+    {
+        Flow flow = flows.removeFirst();
+        flow.active = false;
+        flow.deficit = 0;
+    }
+
+    /**
+     * The batches of one job. Closing it drops whatever has not started yet.
+     */
+    public final class Flow implements AutoCloseable
+    {
+        private final String name;
+        private final JobPriority priority;
+        private final ArrayDeque<Batch<?>> batches = new ArrayDeque<>();
+        private long deficit;
+        private boolean active;
+        private boolean closed;
+
+        private Flow(String name, JobPriority priority)
+        {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        /**
+         * @param cost relative size of the batch, e.g. its characters
+         */
+        public <T> Future<T> submit(int cost, Callable<T> work)
+        {
+            Batch<T> batch = new Batch<>(work, Math.max(1, cost));
+            synchronized (TTSBatchScheduler.this)
+            {
+                if (closed)
+                {
+                    throw new RejectedExecutionException("Flow " + name + " is closed");
+                }
+                batches.addLast(batch);
+                queued++;
+                if (!active)
+                {
+                    active = true;
+                    deficit = Math.max(1, quantumChars);
+                    activeFlows.get(priority).addLast(this);
+                }
+            }
+            dispatch();
+            return batch;
+        }
+
+        @Override
+        public void close()
+        {
+            int dropped;
+            synchronized (TTSBatchScheduler.this)
+            {
+                closed = true;
+                dropped = batches.size();
+                for (Batch<?> batch : batches)
+                {
+                    batch.cancel(false);
+                }
+                queued -= dropped;
+                batches.clear();
+                if (active)
+                {
+                    activeFlows.get(priority).remove(this);
+                    active = false;
+                }
+            }
+            if (dropped > 0)
+            {
+                logger.debug("Dropped {} queued TTS batches of {}", dropped, name);
+            }
+        }
+    }
+
+    private static final class Batch<T> extends FutureTask<T>
+    {
+        private final int cost;
+        private final long queuedAt = System.nanoTime();
+
+        private Batch(Callable<T> work, int cost)
+        {
+            super(work);
+            this.cost = cost;
+        }
+    }
+}
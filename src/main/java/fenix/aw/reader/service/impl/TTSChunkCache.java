@@ -0,0 +1,435 @@
+package fenix.aw.reader.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Content-addressed cache of synthesized chunks. Chunk text is normalized and hashed together with
+ * the synthesis parameters; the hash maps to a copy of the audio the TTS service produced for it.
+ * The index is an append-only journal under {@code tts.cache.dir} that is replayed and compacted on
+ * startup, and entries are evicted least-recently-used once their audio exceeds the size budget or
+ * when they are older than the configured age. The cache keeps its own hard link (or copy) of every
+ * segment under {@code tts.cache.dir/audio} and hands each hit out as a fresh link in
+ * {@code audio.temp.dir}, so the files jobs, checkpoints and streams read are never the cache's and
+ * eviction can delete its audio to keep the directory within budget.
+ */
+@Service
+public class TTSChunkCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(TTSChunkCache.class);
+    private static final String INDEX_FILE = "index.journal";
+    private static final String AUDIO_DIR = "audio";
+    private static final String PUT = "PUT";
+    private static final String DEL = "DEL";
+
+    @Value("${tts.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tts.cache.dir:../shared_data/tts_cache}")
+    private String cacheDir;
+
+    @Value("${tts.cache.max.size.mb:2048}")
+    private long maxSizeMb;
+
+    @Value("${tts.cache.max.age.days:30}")
+    private long maxAgeDays;
+
+    // Bump to invalidate every entry, e.g. after changing the TTS model or voice
+    @Value("${tts.cache.namespace:}")
+    private String namespace;
+
+    // Where hits are linked for the job that asked, next to the segments the TTS service writes
+    @Value("${audio.temp.dir:../shared_data/audio_files2}")
+    private String audioTempDir;
+
+    @Value("${python.tts.url}")
+    private String pythonTTSUrl;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private Path indexFile;
+    private Path audioDir;
+    private BufferedWriter journal;
+    private long totalBytes;
+    private long journalLines;
+
+    @PostConstruct
+    public synchronized void init()
+    {
+        if (!enabled)
+        {
+            logger.info("TTS chunk cache disabled");
+            return;
+        }
+        try
+        {
+            Path directory = Paths.get(cacheDir);
+            Files.createDirectories(directory);
+            indexFile = directory.resolve(INDEX_FILE);
+            audioDir = Files.createDirectories(directory.resolve(AUDIO_DIR));
+            replay();
+            evictExpired();
+            evictToSize();
+            compact();
+            deleteUnreferencedAudio();
+            logger.info("TTS chunk cache loaded {} entries ({} bytes) from {}", entries.size(), totalBytes, indexFile);
+        }
+        catch (IOException ex)
+        {
+            logger.error("Could not initialize TTS chunk cache at {}, caching disabled", cacheDir, ex);
+            enabled = false;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close()
+    {
+        if (journal == null)
+        {
+            return;
+        }
+        try
+        {
+            journal.close();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Failed to close TTS chunk cache journal", ex);
+        }
+        journal = null;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public String keyFor(String chunkText)
+    {
+        String normalized = Normalizer.normalize(chunkText, Normalizer.Form.NFC)
+                .replaceAll("\\s+", " ")
+                .trim();
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(pythonTTSUrl.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(namespace.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    public synchronized Optional<String> get(String key)
+    {
+        if (!enabled)
+        {
+            return Optional.empty();
+        }
+        Entry entry = entries.get(key);
+        if (entry == null)
+        {
+            return Optional.empty();
+        }
+        if (isExpired(entry) || !Files.exists(Paths.get(entry.path)))
+        {
+            remove(key, entry);
+            return Optional.empty();
+        }
+        try
+        {
+            Path target = Files.createDirectories(Paths.get(audioTempDir))
+                    .resolve("cached-" + key + "-" + UUID.randomUUID() + extension(entry.path));
+            linkOrCopy(Paths.get(entry.path), target);
+            return Optional.of(target.toString());
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Could not hand out cached audio {}, treating as a miss", entry.path, ex);
+            return Optional.empty();
+        }
+    }
+
+    public synchronized void put(String key, String audioPath)
+    {
+        if (!enabled || audioPath == null)
+        {
+            return;
+        }
+        Path owned = audioDir.resolve(key + extension(audioPath));
+        long size;
+        try
+        {
+            Entry previous = entries.remove(key);
+            if (previous != null)
+            {
+                totalBytes -= previous.size;
+                deleteAudio(previous);
+            }
+            linkOrCopy(Paths.get(audioPath), owned);
+            size = Files.size(owned);
+        }
+        catch (IOException ex)
+        {
+            logger.debug("Not caching {}: {}", audioPath, ex.getMessage());
+            return;
+        }
+
+        Entry entry = new Entry(owned.toString(), size, System.currentTimeMillis());
+        entries.put(key, entry);
+        totalBytes += size;
+        append(PUT, key, entry);
+        evictToSize();
+
+        if (journalLines > entries.size() * 4L + 1000)
+        {
+            try
+            {
+                compact();
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Failed to compact TTS chunk cache journal", ex);
+            }
+        }
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    private boolean isExpired(Entry entry)
+    {
+        return maxAgeDays > 0
+                && System.currentTimeMillis() - entry.createdAt > Duration.ofDays(maxAgeDays).toMillis();
+    }
+
+    private void evictExpired()
+    {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<String, Entry> next = iterator.next();
+            if (isExpired(next.getValue()))
+            {
+                iterator.remove();
+                totalBytes -= next.getValue().size;
+                deleteAudio(next.getValue());
+            }
+        }
+    }
+
+    private void evictToSize()
+    {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext())
+        {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue().size;
+            append(DEL, eldest.getKey(), null);
+            deleteAudio(eldest.getValue());
+        }
+    }
+
+    private void remove(String key, Entry entry)
+    {
+        entries.remove(key);
+        totalBytes -= entry.size;
+        append(DEL, key, null);
+        deleteAudio(entry);
+    }
+
+    /**
+     * Deletes the cache's own copy of an entry's audio. Entries journaled before the cache kept copies
+     * point at job files, which are left alone.
+     */
+    private void deleteAudio(Entry entry)
+    {
+        Path path = Paths.get(entry.path);
+        if (!path.startsWith(audioDir))
+        {
+            return;
+        }
+        try
+        {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Failed to delete evicted TTS cache audio {}", path, ex);
+        }
+    }
+
+    /**
+     * Removes audio left behind by a crash between linking a segment and journaling its entry.
+     */
+    private void deleteUnreferencedAudio() throws IOException
+    {
+        Set<String> referenced = new HashSet<>();
+        for (Entry entry : entries.values())
+        {
+            referenced.add(entry.path);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(audioDir))
+        {
+            for (Path file : files)
+            {
+                if (!referenced.contains(file.toString()))
+                {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException
+    {
+        Files.deleteIfExists(target);
+        try
+        {
+            Files.createLink(target, source);
+        }
+        catch (IOException | UnsupportedOperationException ex)
+        {
+            // Different file system, or no hard links: fall back to a copy
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String extension(String path)
+    {
+        String name = Paths.get(path).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+
+    private void replay() throws IOException
+    {
+        if (!Files.exists(indexFile))
+        {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t");
+                if (fields.length >= 2 && DEL.equals(fields[0]))
+                {
+                    Entry removed = entries.remove(fields[1]);
+                    if (removed != null)
+                    {
+                        totalBytes -= removed.size;
+                    }
+                }
+                else if (fields.length == 5 && PUT.equals(fields[0]))
+                {
+                    Entry entry = new Entry(fields[2], Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+                    Entry previous = entries.put(fields[1], entry);
+                    totalBytes += entry.size - (previous == null ? 0 : previous.size);
+                }
+                else
+                {
+                    // A torn write from a crash leaves at most one partial line at the end
+                    logger.warn("Skipping malformed TTS cache journal line");
+                }
+            }
+        }
+    }
+
+    private void compact() throws IOException
+    {
+        close();
+        Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            for (Map.Entry<String, Entry> entry : entries.entrySet())
+            {
+                writer.write(line(PUT, entry.getKey(), entry.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalLines = entries.size();
+        journal = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void append(String op, String key, Entry entry)
+    {
+        if (journal == null)
+        {
+            return;
+        }
+        try
+        {
+            journal.write(line(op, key, entry));
+            journal.newLine();
+            journal.flush();
+            journalLines++;
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Failed to append to TTS chunk cache journal", ex);
+        }
+    }
+
+    private static String line(String op, String key, Entry entry)
+    {
+        if (entry == null)
+        {
+            return op + "\t" + key;
+        }
+        return op + "\t" + key + "\t" + entry.path + "\t" + entry.size + "\t" + entry.createdAt;
+    }
+
+    private static final class Entry
+    {
+        private final String path;
+        private final long size;
+        private final long createdAt;
+
+        private Entry(String path, long size, long createdAt)
+        {
+            this.path = path;
+            this.size = size;
+            this.createdAt = createdAt;
+        }
+    }
+}
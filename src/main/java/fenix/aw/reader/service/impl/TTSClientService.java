@@ -1,28 +1,82 @@
 package fenix.aw.reader.service.impl;
 
-import io.github.resilience4j.ratelimiter.RateLimiter;
-import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import fenix.aw.reader.Exception.AudioCombineException;
+import fenix.aw.reader.model.CombineRequest;
+import fenix.aw.reader.model.CombineResponse;
+import fenix.aw.reader.model.JobPriority;
+import fenix.aw.reader.model.TTSBatchRequest;
+import fenix.aw.reader.model.TTSBatchResponse;
+import fenix.aw.reader.service.SynthesisCostModel;
+import fenix.aw.reader.service.TTSCheckpointStore;
+import fenix.aw.reader.service.TTSProgressListener;
+import fenix.aw.reader.util.ExtractedTextStore;
+import fenix.aw.reader.util.PDFChunk;
+import fenix.aw.reader.util.PDFChunkSource;
+import fenix.aw.reader.util.PDFMemoryBudget;
 import fenix.aw.reader.util.PDFProcessor;
+import fenix.aw.reader.util.WavAudioCombiner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.File;
-import java.time.Duration;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 @Service
 public class TTSClientService
 {
     private static final Logger logger = LoggerFactory.getLogger(TTSClientService.class);
+    private static final int LATENCY_WINDOW = 512;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+
+    private final TTSChunkCache chunkCache;
+
+    private final TTSBatchScheduler batchScheduler;
+
+    private final ExecutorService ttsHedgeExecutor;
+
+    private final ExecutorService pdfExtractionExecutor;
+
+    private final TTSConcurrencyLimiter concurrencyLimiter;
+
+    private final SynthesisCostModel costModel;
+
+    private final TTSLatencyTracker latencyTracker = new TTSLatencyTracker(LATENCY_WINDOW);
+
+    private final MeterRegistry meterRegistry;
+    private final Timer limiterWaitTimer;
+    private final DistributionSummary batchCharacters;
+    private final Counter chunksSynthesized;
+    private final Counter charactersSynthesized;
+    private final Counter audioBytesSynthesized;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter retries;
+    private final Counter hedges;
 
     @Value("${python.tts.url}")
     private String pythonTTSUrl;
@@ -30,35 +84,212 @@ public class TTSClientService
     @Value("${python.combine.url}")
     private String pythonCombineUrl;
 
-    @Value("${tts.thread.pool.size:10}")
-    private int threadPoolSize;
+    @Value("${audio.output.dir:../shared_data/combined_audio}")
+    private String audioOutputDir;
 
-    @Value("${tts.batch.size:5}")
+    @Value("${audio.combine.native:true}")
+    private boolean nativeCombineEnabled;
+
+    private final WavAudioCombiner wavAudioCombiner = new WavAudioCombiner();
+
+    // Upper bound on chunks per batch; batches are otherwise packed by estimated cost
+    @Value("${tts.batch.size:20}")
     private int batchSize;
 
-    @Value("${tts.rate.limit:5.0}")
-    private double rateLimit;
+    @Value("${tts.batch.target.ms:20000}")
+    private double batchTargetMillis;
+
+    // Batches a job may have submitted but not collected; extraction waits for the oldest beyond this
+    @Value("${tts.batch.max.in.flight:8}")
+    private int maxInFlightBatches;
 
     @Value("${pdf.chunk.size:1000}")
     private int pdfChunkSize;
 
+    @Value("${pdf.window.pages:10}")
+    private int pdfWindowPages;
+
+    @Value("${pdf.extraction.partitions:1}")
+    private int pdfExtractionPartitions;
+
+    // Extracted text is kept per PDF digest, so re-runs and retries chunk it without parsing the PDF again
+    @Value("${pdf.text.store.enabled:true}")
+    private boolean textStoreEnabled;
+
+    @Value("${pdf.text.store.dir:../shared_data/extracted_text}")
+    private String textStoreDir;
+
+    private ExtractedTextStore textStore;
 
-    // Create a rate limiter that allows 5 requests per second
-    private RateLimiter rateLimiter;
+    // PDF stream data each document keeps on the heap before spilling to a scratch file; 0 spills
+    // everything, -1 keeps everything on the heap
+    @Value("${pdf.memory.max.main.mb:64}")
+    private long pdfMaxMainMemoryMb;
+
+    @Value("${pdf.memory.scratch.dir:}")
+    private String pdfScratchDir;
+
+    // Share of the maximum heap that all open PDF documents may take together
+    @Value("${pdf.memory.heap.fraction:0.5}")
+    private double pdfHeapFraction;
+
+    // Heap per document besides stream data (object graph, fonts), relative to the file size
+    @Value("${pdf.memory.overhead.ratio:0.25}")
+    private double pdfOverheadRatio;
+
+    private PDFMemoryBudget memoryBudget = PDFMemoryBudget.defaults();
+
+    // Attempts per batch including the first; only timeouts, 429 and 5xx are retried
+    @Value("${tts.retry.max.attempts:3}")
+    private int retryMaxAttempts;
+
+    @Value("${tts.retry.backoff.initial.ms:500}")
+    private long retryInitialBackoffMillis;
+
+    @Value("${tts.retry.backoff.max.ms:10000}")
+    private long retryMaxBackoffMillis;
+
+    @Value("${tts.hedge.enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${tts.hedge.quantile:0.95}")
+    private double hedgeQuantile;
+
+    // Hedging waits for enough samples to know what "slow" means
+    @Value("${tts.hedge.min.samples:20}")
+    private int hedgeMinSamples;
+
+    @Value("${tts.hedge.delay.min.ms:100}")
+    private long hedgeMinDelayMillis;
+
+
+    public TTSClientService(RestTemplate ttsRestTemplate,
+                            TTSChunkCache chunkCache,
+                            TTSBatchScheduler batchScheduler,
+                            ExecutorService ttsHedgeExecutor,
+                            ExecutorService pdfExtractionExecutor,
+                            TTSConcurrencyLimiter concurrencyLimiter,
+                            SynthesisCostModel costModel,
+                            MeterRegistry meterRegistry)
+    {
+        this.restTemplate = ttsRestTemplate;
+        this.chunkCache = chunkCache;
+        this.batchScheduler = batchScheduler;
+        this.ttsHedgeExecutor = ttsHedgeExecutor;
+        this.pdfExtractionExecutor = pdfExtractionExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.costModel = costModel;
+        this.meterRegistry = meterRegistry;
+        this.limiterWaitTimer = Timer.builder("tts.limiter.wait")
+                .description("Time a TTS request waited for a concurrency slot and a rate permit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchCharacters = DistributionSummary.builder("tts.batch.characters")
+                .description("Characters per TTS request")
+                .baseUnit("characters")
+                .register(meterRegistry);
+        this.chunksSynthesized = Counter.builder("tts.chunks.synthesized")
+                .description("Chunks synthesized by the TTS service")
+                .register(meterRegistry);
+        this.charactersSynthesized = Counter.builder("tts.characters.synthesized")
+                .description("Characters synthesized by the TTS service")
+                .baseUnit("characters")
+                .register(meterRegistry);
+        this.audioBytesSynthesized = Counter.builder("tts.audio.synthesized")
+                .description("Size of the audio segments returned by the TTS service")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.cacheHits = Counter.builder("tts.cache.lookups").tag("result", "hit")
+                .description("Chunk cache lookups")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("tts.cache.lookups").tag("result", "miss")
+                .description("Chunk cache lookups")
+                .register(meterRegistry);
+        this.retries = Counter.builder("tts.batch.retries")
+                .description("TTS requests retried after a transient failure")
+                .register(meterRegistry);
+        this.hedges = Counter.builder("tts.batch.hedges")
+                .description("Duplicate TTS requests sent for slow batches")
+                .register(meterRegistry);
+    }
 
     @PostConstruct
-    public void init() {
-        RateLimiterConfig config = RateLimiterConfig.custom()
-                .limitForPeriod((int) rateLimit)
-                .limitRefreshPeriod(Duration.ofSeconds(1))
-                .timeoutDuration(Duration.ofSeconds(5))
-                .build();
+    public void init()
+    {
+        initMemoryBudget();
+        initTextStore();
+    }
 
-        this.rateLimiter = RateLimiter.of("ttsRateLimiter", config);
-        logger.info("TTS Client Service initialized with rate limit: {} req/s", rateLimit);
+    private void initMemoryBudget()
+    {
+        File scratchDir = null;
+        if (pdfScratchDir != null && !pdfScratchDir.isBlank())
+        {
+            try
+            {
+                scratchDir = Files.createDirectories(Paths.get(pdfScratchDir)).toFile();
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Cannot create PDF scratch directory {}, using the default temp directory", pdfScratchDir, ex);
+            }
+        }
+        long maxMainMemoryBytes = pdfMaxMainMemoryMb < 0 ? -1 : pdfMaxMainMemoryMb * 1024 * 1024;
+        memoryBudget = PDFMemoryBudget.ofHeap(maxMainMemoryBytes, scratchDir, pdfHeapFraction, pdfOverheadRatio);
+        Gauge.builder("pdf.memory.reserved", memoryBudget, PDFMemoryBudget::getInUse)
+                .description("Heap reserved by open PDF documents")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("pdf.memory.capacity", memoryBudget, PDFMemoryBudget::getCapacity)
+                .description("Heap open PDF documents may use together")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("pdf.admission.waiting", memoryBudget, PDFMemoryBudget::getWaiting)
+                .description("PDFs waiting for parsing memory")
+                .register(meterRegistry);
+        logger.info("PDF parsing limited to {} MB of heap, {} MB of stream data per document",
+                memoryBudget.getCapacity() / (1024 * 1024), pdfMaxMainMemoryMb);
+    }
+
+    private void initTextStore()
+    {
+        if (!textStoreEnabled)
+        {
+            logger.info("Extracted text store disabled");
+            return;
+        }
+        try
+        {
+            textStore = new ExtractedTextStore(Paths.get(textStoreDir));
+            logger.info("Extracted text store at {}", textStoreDir);
+        }
+        catch (IOException ex)
+        {
+            // Only costs re-parsing; not worth failing startup for
+            logger.warn("Could not open extracted text store at {}, PDFs will be parsed every time", textStoreDir, ex);
+        }
     }
 
     public List<String> processFileForTTS(String pdfPath)
+    {
+        return processFileForTTS(pdfPath, TTSProgressListener.NONE);
+    }
+
+    public List<String> processFileForTTS(String pdfPath, TTSProgressListener progressListener)
+    {
+        return processFileForTTS(pdfPath, progressListener, TTSCheckpointStore.NONE, JobPriority.NORMAL);
+    }
+
+    /**
+     * Converts a PDF into audio segments, one per chunk and in chunk order. Chunks the checkpoint store
+     * already holds a segment for are reused instead of synthesized again, and every synthesized batch
+     * is recorded there as soon as it finishes, so an interrupted job loses at most its in-flight batches.
+     * Batches are queued on the shared {@link TTSBatchScheduler} as one flow of the given priority. Once
+     * {@code tts.batch.max.in.flight} batches are outstanding, extraction waits for the oldest one, so
+     * the text held for a job stays bounded however long the book is.
+     */
+    public List<String> processFileForTTS(String pdfPath, TTSProgressListener progressListener,
+                                          TTSCheckpointStore checkpointStore, JobPriority priority)
     {
         if (pdfPath == null || pdfPath.trim().isEmpty())
         {
@@ -72,67 +303,361 @@ public class TTSClientService
         }
         logger.info("Processing PDF file for TTS: {}", pdfPath);
 
-        List<String> textChunks = extractTextChunksFromPDF(pdfPath);
-        if (textChunks.isEmpty())
-        {
-            logger.warn("No text extracted from PDF: {}", pdfPath);
-            return Collections.emptyList();
-        }
-        logger.info("Extracted {} text chunks from PDF", textChunks.size());
-
+        Timer.Sample documentSample = Timer.start(meterRegistry);
         List<String> audioPaths = new ArrayList<>();
+        List<Future<List<String>>> futures = new ArrayList<>();
+        boolean completed = false;
 
-        ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize);
-        try
+        try (TTSBatchScheduler.Flow flow = batchScheduler.openFlow(pdfFile.getName(), priority);
+             PDFChunkSource chunkSource = openChunkSource(pdfFile))
         {
-            List<Future<List<String>>> futures = new ArrayList<>();
-            for (int i = 0; i < textChunks.size(); i += batchSize)
-            {
-                List<String> batch = textChunks.subList(i, Math.min(i + batchSize, textChunks.size()));
-                futures.add(executor.submit(() -> sendTTSRequest(batch)));
-            }
-            for (Future<List<String>> future : futures)
+            // Batches are submitted as soon as they are planned, so synthesis overlaps with extraction
+            TTSBatchPlanner planner = new TTSBatchPlanner(costModel, batchTargetMillis, batchSize);
+            // Index and key of every chunk handed to the planner, in order, until its batch is submitted
+            Deque<Integer> plannedIndexes = new ArrayDeque<>();
+            Deque<String> plannedKeys = new ArrayDeque<>();
+            Consumer<List<String>> submit = batch -> {
+                List<Integer> chunkIndexes = new ArrayList<>(batch.size());
+                List<String> chunkKeys = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++)
+                {
+                    chunkIndexes.add(plannedIndexes.removeFirst());
+                    chunkKeys.add(plannedKeys.removeFirst());
+                }
+                futures.add(flow.submit(characters(batch), () -> {
+                    List<String> batchResults = synthesizeBatch(batch);
+                    if (batchResults.size() == batch.size())
+                    {
+                        checkpointStore.record(chunkIndexes, chunkKeys, batchResults);
+                    }
+                    return batchResults;
+                }));
+            };
+            int extractedChunks = 0;
+            int resumedChunks = 0;
+            int collected = 0;
+            int maxInFlight = Math.max(1, maxInFlightBatches);
+
+            while (chunkSource.hasNext())
             {
-                try
+                int submitted = futures.size();
+                PDFChunk chunk = chunkSource.next();
+                String text = chunk.getText();
+                int chunkIndex = extractedChunks++;
+                progressListener.onChunkExtracted(chunk);
+                String chunkKey = chunkCache.keyFor(text);
+                Optional<String> checkpoint = checkpointStore.completedSegment(chunkIndex, chunkKey);
+                if (checkpoint.isPresent())
                 {
-                    List<String> batchResults = future.get();
-                    audioPaths.addAll(batchResults);
-                    logger.debug("Processed batch, got {} audio files", batchResults.size());
+                    // Close the open batch first so segments stay in chunk order
+                    planner.flush(submit);
+                    futures.add(CompletableFuture.completedFuture(List.of(checkpoint.get())));
+                    resumedChunks++;
                 }
-                catch (InterruptedException ex)
+                else
                 {
-                    Thread.currentThread().interrupt();
-                    logger.error("TTS processing interrupted", ex);
-                    throw new RuntimeException("TTS processing was interrupted", ex);
+                    plannedIndexes.addLast(chunkIndex);
+                    plannedKeys.addLast(chunkKey);
+                    planner.add(text, submit);
+                }
+                if (futures.size() > submitted)
+                {
+                    progressListener.onChunksExtracted(extractedChunks);
                 }
-                catch (ExecutionException ex)
+                // Collect whatever finished in order, without blocking extraction
+                while (collected < futures.size() && futures.get(collected).isDone())
                 {
-                    logger.error("Failed to process TTS batch", ex);
-                    throw new RuntimeException("TTS batch processing failed", ex.getCause());
+                    collectBatch(futures.get(collected++), audioPaths, progressListener);
+                }
+                // Stop pulling pages while too many batches are outstanding
+                while (futures.size() - collected >= maxInFlight)
+                {
+                    collectBatch(futures.get(collected++), audioPaths, progressListener);
                 }
             }
+            planner.flush(submit);
+
+            if (extractedChunks == 0)
+            {
+                logger.warn("No text extracted from PDF: {}", pdfPath);
+                return Collections.emptyList();
+            }
+            logger.info("Extracted {} text chunks from PDF with chunk size {}", extractedChunks, pdfChunkSize);
+            if (resumedChunks > 0)
+            {
+                logger.info("Resumed {} of {} chunks from checkpoints", resumedChunks, extractedChunks);
+            }
+            progressListener.onExtractionComplete(extractedChunks);
+
+            while (collected < futures.size())
+            {
+                collectBatch(futures.get(collected++), audioPaths, progressListener);
+            }
 
             logger.info("Successfully generated {} audio files", audioPaths.size());
+            completed = true;
             return audioPaths;
         }
+        catch (IOException | UncheckedIOException ex)
+        {
+            logger.error("Failed to extract text from PDF: {}", pdfPath, ex);
+            throw new RuntimeException("PDF text extraction failed", ex);
+        }
         finally
         {
-            executor.shutdown();
+            if (!completed)
+            {
+                // Closing the flow dropped queued batches; interrupt the ones already running
+                futures.forEach(future -> future.cancel(true));
+            }
+            documentSample.stop(Timer.builder("tts.document")
+                    .description("Time to extract and synthesize a whole document")
+                    .tag("outcome", completed ? "success" : "failure")
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Length of the stored text of the PDF with the given content digest, if it has been extracted before.
+     */
+    public OptionalLong extractedLength(String digest)
+    {
+        if (textStore == null || digest == null)
+        {
+            return OptionalLong.empty();
+        }
+        return textStore.open(digest).map(text -> OptionalLong.of(text.length())).orElse(OptionalLong.empty());
+    }
+
+    /**
+     * Opens the chunks of a PDF exactly as {@link #processFileForTTS} splits it, so chunk indexes line
+     * up with its segments and checkpoints. The caller must close the source.
+     */
+    public PDFChunkSource openChunkSource(File pdfFile) throws IOException
+    {
+        return new PDFProcessor(pdfExtractionPartitions, pdfExtractionExecutor, textStore, memoryBudget)
+                .openChunkSource(pdfFile, pdfChunkSize, pdfWindowPages);
+    }
+
+    private void collectBatch(Future<List<String>> future, List<String> audioPaths, TTSProgressListener progressListener)
+    {
+        try
+        {
+            List<String> batchResults = future.get();
+            audioPaths.addAll(batchResults);
+            progressListener.onSegmentsReady(batchResults);
+            progressListener.onChunksSynthesized(audioPaths.size());
+            logger.debug("Processed batch, got {} audio files", batchResults.size());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            logger.error("TTS processing interrupted", ex);
+            throw new RuntimeException("TTS processing was interrupted", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            logger.error("Failed to process TTS batch", ex);
+            throw new RuntimeException("TTS batch processing failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Resolves a batch against the chunk cache and only sends the misses to the TTS service.
+     * The returned paths are in the same order as {@code textChunks}.
+     */
+    List<String> synthesizeBatch(List<String> textChunks)
+    {
+        if (!chunkCache.isEnabled())
+        {
+            return requestBatch(textChunks);
+        }
+
+        String[] audioPaths = new String[textChunks.size()];
+        List<String> keys = new ArrayList<>(textChunks.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < textChunks.size(); i++)
+        {
+            String key = chunkCache.keyFor(textChunks.get(i));
+            keys.add(key);
+            Optional<String> cached = chunkCache.get(key);
+            if (cached.isPresent())
+            {
+                cacheHits.increment();
+                audioPaths[i] = cached.get();
+            }
+            else
+            {
+                cacheMisses.increment();
+                missIndexes.add(i);
+                misses.add(textChunks.get(i));
+            }
+        }
+        if (misses.isEmpty())
+        {
+            logger.debug("All {} chunks of batch served from cache", textChunks.size());
+            return Arrays.asList(audioPaths);
+        }
+
+        List<String> synthesized = requestBatch(misses);
+        if (synthesized.size() != misses.size())
+        {
+            // Without a one-to-one mapping the results cannot be cached or merged safely
+            logger.warn("TTS service returned {} files for {} chunks, skipping cache", synthesized.size(), misses.size());
+            return misses.size() == textChunks.size() ? synthesized : requestBatch(textChunks);
+        }
+        for (int i = 0; i < missIndexes.size(); i++)
+        {
+            int index = missIndexes.get(i);
+            audioPaths[index] = synthesized.get(i);
+            chunkCache.put(keys.get(index), synthesized.get(i));
+        }
+        logger.debug("Batch of {} chunks: {} cached, {} synthesized",
+                textChunks.size(), textChunks.size() - misses.size(), misses.size());
+        return Arrays.asList(audioPaths);
+    }
+
+    /**
+     * Sends a batch with retries, hedged when enabled: if it is still running past the p95 of recent
+     * latencies (scaled to its estimated cost), a duplicate request is sent, the first successful
+     * response wins and the other attempt is cancelled. Batches are idempotent, so duplicates only
+     * cost backend time.
+     */
+    List<String> requestBatch(List<String> textChunks)
+    {
+        long hedgeDelay = hedgeDelayMillis(textChunks);
+        if (hedgeDelay < 0)
+        {
+            return sendWithRetry(textChunks, () -> false);
+        }
+
+        ExecutorCompletionService<List<String>> race = new ExecutorCompletionService<>(ttsHedgeExecutor);
+        // Blocking socket reads ignore interrupts, so the losing attempt also checks this before retrying
+        AtomicBoolean decided = new AtomicBoolean();
+        Future<List<String>> primary = race.submit(() -> sendWithRetry(textChunks, decided::get));
+        Future<List<String>> hedge = null;
+        try
+        {
+            Future<List<String>> first = race.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (first == null)
+            {
+                logger.debug("TTS batch of {} chunks exceeded {}ms, sending hedge request", textChunks.size(), hedgeDelay);
+                hedges.increment();
+                hedge = race.submit(() -> sendTTSRequest(textChunks));
+                first = race.take();
+            }
             try
             {
-                if (!executor.awaitTermination(60, TimeUnit.SECONDS))
+                return first.get();
+            }
+            catch (ExecutionException ex)
+            {
+                if (hedge == null)
                 {
-                    logger.warn("Executor did not terminate in time, forcing shutdown");
-                    executor.shutdownNow();
+                    throw ex;
                 }
+                // One attempt failed, the other may still succeed
+                return race.take().get();
             }
-            catch (InterruptedException ex)
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("TTS processing was interrupted", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw ex.getCause() instanceof RuntimeException
+                    ? (RuntimeException) ex.getCause()
+                    : new RuntimeException("TTS service communication failed", ex.getCause());
+        }
+        finally
+        {
+            decided.set(true);
+            primary.cancel(true);
+            if (hedge != null)
+            {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return how long to wait before hedging this batch, or -1 to not hedge it
+     */
+    private long hedgeDelayMillis(List<String> textChunks)
+    {
+        if (!hedgingEnabled || latencyTracker.size() < hedgeMinSamples)
+        {
+            return -1;
+        }
+        double ratio = latencyTracker.quantile(hedgeQuantile);
+        return Math.max(hedgeMinDelayMillis, (long) (costModel.estimateMillis(characters(textChunks)) * ratio));
+    }
+
+    private List<String> sendWithRetry(List<String> textChunks, BooleanSupplier abandoned)
+    {
+        for (int attempt = 1; ; attempt++)
+        {
+            try
+            {
+                return sendTTSRequest(textChunks);
+            }
+            catch (RuntimeException ex)
+            {
+                if (attempt >= retryMaxAttempts || !isRetryable(ex) || abandoned.getAsBoolean())
+                {
+                    throw ex;
+                }
+                long delay = backoffMillis(attempt, ex);
+                retries.increment();
+                logger.warn("TTS batch attempt {}/{} failed, retrying in {}ms: {}",
+                        attempt, retryMaxAttempts, delay, ex.getMessage());
+                try
+                {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("TTS processing was interrupted", interrupted);
+                }
+            }
+        }
+    }
+
+    private static boolean isRetryable(RuntimeException ex)
+    {
+        return ex.getCause() instanceof RestClientException
+                && classify((RestClientException) ex.getCause()) == TTSConcurrencyLimiter.Outcome.OVERLOAD;
+    }
+
+    /**
+     * Exponential backoff with full jitter, so batches that failed together do not retry together.
+     * A Retry-After from the backend raises the delay, within the configured maximum.
+     */
+    private long backoffMillis(int attempt, RuntimeException ex)
+    {
+        long ceiling = Math.min(retryMaxBackoffMillis, retryInitialBackoffMillis << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (ex.getCause() instanceof RestClientResponseException)
+        {
+            HttpHeaders headers = ((RestClientResponseException) ex.getCause()).getResponseHeaders();
+            String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+            if (retryAfter != null)
             {
-                logger.error("Interrupted while waiting for executor termination", ex);
-                executor.shutdownNow();
-                Thread.currentThread().interrupt();
+                try
+                {
+                    delay = Math.max(delay, Math.min(retryMaxBackoffMillis, Long.parseLong(retryAfter.trim()) * 1000));
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // HTTP-date form, keep the computed backoff
+                }
             }
         }
+        return delay;
     }
 
     private List<String> sendTTSRequest(List<String> textChunks)
@@ -143,17 +668,34 @@ public class TTSClientService
             return Collections.emptyList();
         }
 
-        rateLimiter.acquirePermission();
-        Map<String, Object> request = new HashMap<>();
-        request.put("text", textChunks);
+        TTSBatchRequest request = new TTSBatchRequest(textChunks);
 
+        long startNanos;
+        long waitStart = System.nanoTime();
+        try
+        {
+            startNanos = concurrencyLimiter.acquire();
+            limiterWaitTimer.record(startNanos - waitStart, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a TTS slot", ex);
+        }
+        TTSConcurrencyLimiter.Outcome outcome = TTSConcurrencyLimiter.Outcome.IGNORED;
+        int characters = characters(textChunks);
+        double estimatedMillis = costModel.estimateMillis(characters);
         try
         {
-            ResponseEntity<Map> response = restTemplate.postForEntity(pythonTTSUrl, request, Map.class);
+            ResponseEntity<TTSBatchResponse> response =
+                    restTemplate.postForEntity(pythonTTSUrl, request, TTSBatchResponse.class);
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null)
             {
-                @SuppressWarnings("unchecked")
-                List<String> filePaths = (List<String>) response.getBody().get("file_paths");
+                outcome = TTSConcurrencyLimiter.Outcome.SUCCESS;
+                long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                latencyTracker.record(latencyMillis, estimatedMillis);
+                costModel.observe(characters, latencyMillis);
+                List<String> filePaths = response.getBody().filePaths();
 
                 if (filePaths == null)
                 {
@@ -161,6 +703,7 @@ public class TTSClientService
                     return Collections.emptyList();
                 }
 
+                recordSynthesized(textChunks.size(), characters, filePaths);
                 return filePaths;
 
             }
@@ -172,51 +715,143 @@ public class TTSClientService
         }
         catch (RestClientException ex)
         {
+            outcome = classify(ex);
             logger.error("Error communicating with TTS service", ex);
             throw new RuntimeException("TTS service communication failed", ex);
         }
+        finally
+        {
+            concurrencyLimiter.release(startNanos, estimatedMillis, outcome);
+            batchCharacters.record(characters);
+            Timer.builder("tts.batch")
+                    .description("Round trip of one TTS request")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
     }
 
-    private List<String> extractTextChunksFromPDF(String pdfPath)
+    private void recordSynthesized(int chunks, int characters, List<String> filePaths)
     {
-        try
+        chunksSynthesized.increment(chunks);
+        charactersSynthesized.increment(characters);
+        for (String filePath : filePaths)
         {
-            File pdfFile = new File(pdfPath);
-            PDFProcessor pdfProcessor = new PDFProcessor();
+            try
+            {
+                audioBytesSynthesized.increment(Files.size(Paths.get(filePath)));
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                // The segment may live on a volume this instance cannot see; only the byte count suffers
+                logger.trace("Cannot size audio segment {}: {}", filePath, ex.getMessage());
+            }
+        }
+    }
 
-            List<String> chunks = pdfProcessor.splitPdfIntoChunks(pdfFile, pdfChunkSize);
-            logger.info("Extracted {} chunks from PDF with chunk size {}", chunks.size(), pdfChunkSize);
-            return chunks;
+    private static int characters(List<String> textChunks)
+    {
+        int characters = 0;
+        for (String chunk : textChunks)
+        {
+            characters += chunk.length();
         }
-        catch (Exception ex)
+        return characters;
+    }
+
+    private static TTSConcurrencyLimiter.Outcome classify(RestClientException ex)
+    {
+        if (ex instanceof ResourceAccessException)
         {
-            logger.error("Failed to extract text from PDF: {}", pdfPath, ex);
-            throw new RuntimeException("PDF text extraction failed", ex);
+            // Connect/read timeouts and refused connections
+            return TTSConcurrencyLimiter.Outcome.OVERLOAD;
+        }
+        if (ex instanceof RestClientResponseException)
+        {
+            HttpStatusCode status = ((RestClientResponseException) ex).getStatusCode();
+            if (status.value() == 429 || status.is5xxServerError())
+            {
+                return TTSConcurrencyLimiter.Outcome.OVERLOAD;
+            }
         }
+        return TTSConcurrencyLimiter.Outcome.IGNORED;
     }
 
-    public String combineAudioFiles(List<String> filePaths, String fileName)
+    /**
+     * Combines the segments into {@code <output dir>/<outputName>.wav}. Callers pass a name that is unique
+     * to the content or job, never the upload name, so two uploads called the same never share an audiobook.
+     */
+    public String combineAudioFiles(List<String> filePaths, String outputName)
     {
         if (filePaths == null || filePaths.isEmpty())
         {
             throw new IllegalArgumentException("File paths list cannot be null or empty");
         }
-        if (fileName == null || fileName.trim().isEmpty())
+        if (outputName == null || outputName.trim().isEmpty())
+        {
+            throw new IllegalArgumentException("Output name cannot be null or empty");
+        }
+        logger.info("Combining {} audio files into: {}", filePaths.size(), outputName);
+
+        if (nativeCombineEnabled)
         {
-            throw new IllegalArgumentException("File name cannot be null or empty");
+            long start = System.nanoTime();
+            try
+            {
+                Path output = combinedAudioPath(outputName);
+                List<Path> segments = new ArrayList<>(filePaths.size());
+                for (String filePath : filePaths)
+                {
+                    segments.add(Paths.get(filePath));
+                }
+                String combined = wavAudioCombiner.combine(segments, output).toAbsolutePath().toString();
+                combineTimer("native").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return combined;
+            }
+            catch (AudioCombineException ex)
+            {
+                logger.info("Native combine not possible ({}), using combine service", ex.getMessage());
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Native combine failed for: {}, using combine service", outputName, ex);
+            }
         }
-        logger.info("Combining {} audio files for: {}", filePaths.size(), fileName);
+        long start = System.nanoTime();
+        String combined = combineRemotely(filePaths, outputName);
+        combineTimer("remote").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return combined;
+    }
 
-        Map<String, Object> request = new HashMap<>();
-        request.put("file_paths", filePaths);
-        request.put("file_name", fileName);
+    private Timer combineTimer(String method)
+    {
+        return Timer.builder("audio.combine")
+                .description("Time to combine the segments of an audiobook")
+                .tag("method", method)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Location of a combined audiobook, e.g. {@code <digest> -> <output dir>/<digest>.wav}.
+     */
+    public Path combinedAudioPath(String outputName)
+    {
+        String baseName = Paths.get(outputName).getFileName().toString();
+        return Paths.get(audioOutputDir).resolve(baseName + ".wav");
+    }
+
+    private String combineRemotely(List<String> filePaths, String outputName)
+    {
+        CombineRequest request = new CombineRequest(filePaths, outputName);
 
         try
         {
-            ResponseEntity<Map> response = restTemplate.postForEntity(pythonCombineUrl, request, Map.class);
+            ResponseEntity<CombineResponse> response =
+                    restTemplate.postForEntity(pythonCombineUrl, request, CombineResponse.class);
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null)
             {
-                String filePath = (String) response.getBody().get("file_path");
+                String filePath = response.getBody().filePath();
                 if (filePath == null || filePath.isEmpty()) {
                     throw new RuntimeException("Combine service did not return a file path");
                 }
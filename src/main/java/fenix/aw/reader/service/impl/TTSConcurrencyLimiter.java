@@ -0,0 +1,273 @@
+package fenix.aw.reader.service.impl;
+
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global, adaptive cap on TTS requests, shared by all jobs. Both the number of requests in flight
+ * and the request rate follow AIMD: every successful batch grows them additively (about one step per
+ * round trip), while a 429/5xx/timeout or a slow batch shrinks them multiplicatively. Batches differ in
+ * size, so latency is judged relative to the cost model's estimate for each batch: a batch is slow when
+ * its latency/estimate ratio exceeds {@code tts.concurrency.latency.tolerance} times the baseline ratio.
+ * Configured values act as floor and ceiling.
+ */
+@Service
+public class TTSConcurrencyLimiter
+{
+    private static final Logger logger = LoggerFactory.getLogger(TTSConcurrencyLimiter.class);
+    // How quickly the baseline latency/estimate ratio drifts up towards slower samples
+    private static final double BASELINE_DRIFT = 0.01;
+
+    public enum Outcome
+    {
+        SUCCESS,
+        // The backend signalled it is saturated: 429, 5xx or a timeout
+        OVERLOAD,
+        // A failure that says nothing about backend load, e.g. a bad request
+        IGNORED
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tts.concurrency.min:1}")
+    private int minConcurrency;
+
+    @Value("${tts.concurrency.max:10}")
+    private int maxConcurrency;
+
+    @Value("${tts.concurrency.initial:4}")
+    private int initialConcurrency;
+
+    @Value("${tts.concurrency.backoff:0.5}")
+    private double backoffRatio;
+
+    @Value("${tts.concurrency.latency.tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${tts.rate.min:1.0}")
+    private double minRate;
+
+    @Value("${tts.rate.limit:5.0}")
+    private double maxRate;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+    private double rate;
+    private int inFlight;
+    private double baselineRatio = Double.POSITIVE_INFINITY;
+    private long lastDecreaseNanos = Long.MIN_VALUE;
+
+    private RateLimiter rateLimiter;
+
+    public TTSConcurrencyLimiter(MeterRegistry meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        if (minConcurrency <= 0 || maxConcurrency < minConcurrency)
+        {
+            throw new IllegalStateException("tts.concurrency.min/max must satisfy 0 < min <= max");
+        }
+        if (minRate <= 0 || maxRate < minRate)
+        {
+            throw new IllegalStateException("tts.rate.min/limit must satisfy 0 < min <= limit");
+        }
+        this.limit = clamp(initialConcurrency, minConcurrency, maxConcurrency);
+        this.rate = maxRate;
+
+        RateLimiterConfig config = RateLimiterConfig.custom()
+                .limitForPeriod(permitsPerPeriod(rate))
+                .limitRefreshPeriod(Duration.ofSeconds(1))
+                .timeoutDuration(Duration.ofSeconds(5))
+                .build();
+        this.rateLimiter = RateLimiter.of("ttsRateLimiter", config);
+
+        Gauge.builder("tts.concurrency.limit", this, TTSConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on in-flight TTS requests")
+                .register(meterRegistry);
+        Gauge.builder("tts.concurrency.in.flight", this, TTSConcurrencyLimiter::getInFlight)
+                .description("TTS requests currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("tts.rate.limit", this, TTSConcurrencyLimiter::getRate)
+                .description("Current adaptive TTS request rate in requests per second")
+                .register(meterRegistry);
+
+        logger.info("TTS concurrency adaptive in [{}, {}] starting at {}, rate in [{}, {}] req/s",
+                minConcurrency, maxConcurrency, (int) limit, minRate, maxRate);
+    }
+
+    /**
+     * Blocks until a concurrency slot and a rate permit are available.
+     *
+     * @return the start timestamp to hand back to {@link #release(long, double, Outcome)}
+     */
+    public long acquire() throws InterruptedException
+    {
+        lock.lockInterruptibly();
+        try
+        {
+            while (inFlight >= (int) limit)
+            {
+                permitReleased.await();
+            }
+            inFlight++;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        try
+        {
+            rateLimiter.acquirePermission();
+        }
+        catch (RuntimeException ex)
+        {
+            release(System.nanoTime(), 0, Outcome.IGNORED);
+            throw ex;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Frees the slot taken by {@link #acquire()}. {@code estimatedMillis} is the cost model's estimate for
+     * the batch; without a positive estimate a success still grows the limits but its latency is not judged.
+     */
+    public void release(long startNanos, double estimatedMillis, Outcome outcome)
+    {
+        long latency = System.nanoTime() - startNanos;
+        lock.lock();
+        try
+        {
+            inFlight--;
+            if (outcome == Outcome.SUCCESS)
+            {
+                onSuccess(startNanos, latency, estimatedMillis);
+            }
+            else if (outcome == Outcome.OVERLOAD)
+            {
+                decrease(startNanos, "backend overload");
+            }
+            permitReleased.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void onSuccess(long startNanos, long latency, double estimatedMillis)
+    {
+        if (estimatedMillis > 0)
+        {
+            double ratio = latency / (estimatedMillis * 1_000_000);
+            if (ratio < baselineRatio)
+            {
+                baselineRatio = ratio;
+            }
+            else
+            {
+                baselineRatio += (ratio - baselineRatio) * BASELINE_DRIFT;
+            }
+
+            if (ratio > baselineRatio * latencyTolerance)
+            {
+                decrease(startNanos, String.format("latency %dms for %.0fms estimated",
+                        TimeUnit.NANOSECONDS.toMillis(latency), estimatedMillis));
+                return;
+            }
+        }
+        limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+        updateRate(Math.min(maxRate, rate + 1.0 / rate));
+    }
+
+    private void decrease(long startNanos, String reason)
+    {
+        // Requests started before the last cut saw the old limit; let them drain without cutting again
+        if (startNanos < lastDecreaseNanos)
+        {
+            return;
+        }
+        lastDecreaseNanos = System.nanoTime();
+        limit = Math.max(minConcurrency, limit * backoffRatio);
+        updateRate(Math.max(minRate, rate * backoffRatio));
+        logger.info("TTS limits decreased on {}: concurrency {}, rate {} req/s",
+                reason, (int) limit, String.format("%.2f", rate));
+    }
+
+    private void updateRate(double newRate)
+    {
+        int before = permitsPerPeriod(rate);
+        rate = newRate;
+        int after = permitsPerPeriod(rate);
+        if (before != after)
+        {
+            rateLimiter.changeLimitForPeriod(after);
+        }
+    }
+
+    private static int permitsPerPeriod(double rate)
+    {
+        return Math.max(1, (int) Math.round(rate));
+    }
+
+    private static double clamp(double value, double min, double max)
+    {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public int getInFlight()
+    {
+        lock.lock();
+        try
+        {
+            return inFlight;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit()
+    {
+        lock.lock();
+        try
+        {
+            return (int) limit;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public double getRate()
+    {
+        lock.lock();
+        try
+        {
+            return rate;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
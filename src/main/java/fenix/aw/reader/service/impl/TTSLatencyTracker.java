@@ -0,0 +1,55 @@
+package fenix.aw.reader.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of recent TTS latencies, each divided by what the cost model expected for its
+ * batch. Normalizing makes one quantile meaningful for batches of any size: a batch is "slower than
+ * p95" when its elapsed time exceeds its own estimate times the 95th percentile ratio.
+ */
+public class TTSLatencyTracker
+{
+    private final double[] samples;
+    private int next;
+    private int size;
+
+    public TTSLatencyTracker(int windowSize)
+    {
+        if (windowSize <= 0)
+        {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.samples = new double[windowSize];
+    }
+
+    public synchronized void record(long latencyMillis, double estimatedMillis)
+    {
+        if (estimatedMillis <= 0 || latencyMillis < 0)
+        {
+            return;
+        }
+        samples[next] = latencyMillis / estimatedMillis;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the {@code q} quantile of the observed ratios, or {@code NaN} before the first sample
+     */
+    public synchronized double quantile(double q)
+    {
+        if (size == 0)
+        {
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(q * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+}
@@ -0,0 +1,134 @@
+package fenix.aw.reader.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The text of a PDF as persisted by {@link ExtractedTextStore}, memory-mapped read-only. The text is
+ * exposed as a {@link CharSequence} view over the mapping, so it can be chunked without being copied
+ * onto the heap, and page boundaries come from the stored offset index.
+ *
+ * <p>File layout, big-endian: a header of magic, format version, encoding, page count and length in
+ * characters; then the character offset at which each page starts; then the text, one byte per
+ * character when every character is Latin-1 and UTF-16 otherwise.
+ */
+public final class ExtractedText {
+
+    static final int MAGIC = 0x41575458; // "AWTX"
+    static final int VERSION = 1;
+    static final int LATIN1 = 1;
+    static final int UTF16 = 2;
+    static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    private final CharSequence text;
+    private final int[] pageStarts;
+
+    private ExtractedText(CharSequence text, int[] pageStarts) {
+        this.text = text;
+        this.pageStarts = pageStarts;
+    }
+
+    static ExtractedText map(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+            throw new IOException("Not a stored text file of version " + VERSION + ": " + file);
+        }
+        int encoding = mapped.getInt(8);
+        int pageCount = mapped.getInt(12);
+        int length = mapped.getInt(16);
+
+        int[] pageStarts = new int[pageCount];
+        mapped.position(HEADER_BYTES);
+        mapped.asIntBuffer().get(pageStarts);
+
+        int bodyOffset = HEADER_BYTES + pageCount * Integer.BYTES;
+        long expected = bodyOffset + (long) length * (encoding == UTF16 ? 2 : 1);
+        if (mapped.capacity() != expected) {
+            throw new IOException("Truncated stored text file: " + file);
+        }
+        ByteBuffer body = mapped.position(bodyOffset).slice();
+        CharSequence text = encoding == UTF16 ? body.asCharBuffer() : new Latin1Sequence(body, 0, length);
+        return new ExtractedText(text, pageStarts);
+    }
+
+    public CharSequence text() {
+        return text;
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    public int getPageCount() {
+        return pageStarts.length;
+    }
+
+    /**
+     * Returns the 1-based page that the character at {@code offset} belongs to. Empty pages share their
+     * start with the next page, which then wins.
+     */
+    public int pageAt(int offset) {
+        int index = Arrays.binarySearch(pageStarts, offset);
+        if (index < 0) {
+            return Math.max(1, -index - 1);
+        }
+        while (index + 1 < pageStarts.length && pageStarts[index + 1] == offset) {
+            index++;
+        }
+        return index + 1;
+    }
+
+    /**
+     * One byte per character, decoded on access.
+     */
+    private static final class Latin1Sequence implements CharSequence {
+
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        private Latin1Sequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) (bytes.get(offset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+            }
+            return new Latin1Sequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            bytes.get(offset, copy);
+            return new String(copy, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package fenix.aw.reader.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the extracted text of every PDF on disk, keyed by the SHA-256 of the PDF, so a document is
+ * parsed by PDFBox once no matter how often it is chunked again. Text is written page by page while it
+ * is extracted and only becomes visible once the whole document is through; it is read back as a
+ * memory-mapped {@link ExtractedText}.
+ */
+public class ExtractedTextStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractedTextStore.class);
+    private static final String SUFFIX = ".text";
+
+    private final Path directory;
+    // Digest of each PDF by path, valid while its size and modification time stay the same
+    private final Map<String, FileDigest> digests = new ConcurrentHashMap<>();
+
+    public ExtractedTextStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Returns the key the text of {@code pdfFile} is stored under, the SHA-256 of its content.
+     */
+    public String keyFor(File pdfFile) throws IOException {
+        long size = pdfFile.length();
+        long modified = pdfFile.lastModified();
+        FileDigest known = digests.get(pdfFile.getAbsolutePath());
+        if (known != null && known.size == size && known.modified == modified) {
+            return known.digest;
+        }
+        MessageDigest messageDigest = newDigest();
+        try (InputStream in = new DigestInputStream(new BufferedInputStream(Files.newInputStream(pdfFile.toPath())),
+                messageDigest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String digest = HexFormat.of().formatHex(messageDigest.digest());
+        digests.put(pdfFile.getAbsolutePath(), new FileDigest(size, modified, digest));
+        return digest;
+    }
+
+    public Optional<ExtractedText> open(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(ExtractedText.map(file));
+        } catch (IOException ex) {
+            logger.warn("Discarding unreadable stored text {}: {}", file, ex.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException deleteFailure) {
+                logger.debug("Could not delete {}", file, deleteFailure);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Starts storing the text of the PDF with the given key. Nothing is visible until
+     * {@link TextWriter#commit()}; closing the writer without committing discards it.
+     */
+    public TextWriter create(String key) throws IOException {
+        return new TextWriter(key);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private static final class FileDigest {
+        private final long size;
+        private final long modified;
+        private final String digest;
+
+        private FileDigest(long size, long modified, String digest) {
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Collects the pages of one document in a UTF-16 spill file, then writes the final file with its
+     * page index, narrowing the text to Latin-1 when every character fits.
+     */
+    public final class TextWriter implements Closeable {
+
+        private final String key;
+        private final Path spill;
+        private final Writer out;
+        private int[] pageStarts = new int[64];
+        private int pageCount;
+        private long length;
+        private boolean wide;
+        private boolean done;
+
+        private TextWriter(String key) throws IOException {
+            this.key = key;
+            this.spill = Files.createTempFile(directory, key, ".spill");
+            this.out = new OutputStreamWriter(new BufferedOutputStream(Files.newOutputStream(spill)),
+                    StandardCharsets.UTF_16BE);
+        }
+
+        public void addPage(CharSequence page) throws IOException {
+            if (length + page.length() > (Integer.MAX_VALUE - 64) / 2) {
+                throw new IOException("Text of " + key + " is too large to store");
+            }
+            if (pageCount == pageStarts.length) {
+                pageStarts = Arrays.copyOf(pageStarts, pageCount * 2);
+            }
+            pageStarts[pageCount++] = (int) length;
+            for (int i = 0; i < page.length() && !wide; i++) {
+                wide = page.charAt(i) > 0xff;
+            }
+            out.append(page);
+            length += page.length();
+        }
+
+        public ExtractedText commit() throws IOException {
+            out.close();
+            Path target = directory.resolve(key + SUFFIX);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (DataOutputStream file = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    file.writeInt(ExtractedText.MAGIC);
+                    file.writeInt(ExtractedText.VERSION);
+                    file.writeInt(wide ? ExtractedText.UTF16 : ExtractedText.LATIN1);
+                    file.writeInt(pageCount);
+                    file.writeInt((int) length);
+                    for (int i = 0; i < pageCount; i++) {
+                        file.writeInt(pageStarts[i]);
+                    }
+                    if (wide) {
+                        Files.copy(spill, file);
+                    } else {
+                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                Files.newInputStream(spill), StandardCharsets.UTF_16BE))) {
+                            int c;
+                            while ((c = reader.read()) != -1) {
+                                file.write(c);
+                            }
+                        }
+                    }
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+                close();
+            }
+            logger.debug("Stored {} characters of text in {} pages for {}", length, pageCount, key);
+            return ExtractedText.map(target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (done) {
+                return;
+            }
+            done = true;
+            out.close();
+            Files.deleteIfExists(spill);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package fenix.aw.reader.util;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Serves a file with strong validators, conditional requests (304/412) and byte ranges (206, single
+ * and multipart/byteranges, 416 when unsatisfiable). Whole files and single ranges are handed to the
+ * container's sendfile support when available, so the bytes go from page cache to socket without
+ * passing through the heap; otherwise they are copied with {@link FileChannel#transferTo}.
+ */
+public class HttpFileSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpFileSender.class);
+
+    // Tomcat's sendfile contract, see org.apache.catalina.servlets.DefaultServlet
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * @param etag strong entity tag without quotes, or {@code null} to derive one from size and modification time
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path file,
+                     String contentType, String etag) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        // HTTP dates have second precision
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        String entityTag = "\"" + (etag != null ? etag
+                : Long.toHexString(length) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis())) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, entityTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + file.getFileName() + "\"");
+
+        if (!checkPreconditions(request, response, entityTag, lastModified)) {
+            return;
+        }
+
+        List<HttpRange> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && "GET".equals(request.getMethod())
+                && ifRangeMatches(request, entityTag, lastModified)) {
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+                for (HttpRange range : ranges) {
+                    if (range.getRangeStart(length) >= length) {
+                        throw new IllegalArgumentException("Range starts beyond the end of the file");
+                    }
+                }
+            } catch (IllegalArgumentException ex) {
+                logger.debug("Unsatisfiable range '{}' for {}: {}", rangeHeader, file.getFileName(), ex.getMessage());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (ranges.size() > MAX_RANGES) {
+                // Many tiny ranges cost more than the whole file; serve it instead
+                ranges = null;
+            }
+        }
+
+        boolean head = "HEAD".equals(request.getMethod());
+        if (ranges == null || ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!head) {
+                sendRegion(request, response, file, 0, length);
+            }
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            if (!head) {
+                sendRegion(request, response, file, start, end - start + 1);
+            }
+        } else {
+            sendMultipart(response, file, contentType, ranges, length, head);
+        }
+    }
+
+    /**
+     * Evaluates If-Match, If-Unmodified-Since, If-None-Match and If-Modified-Since (RFC 9110 section 13.2.2).
+     *
+     * @return false if a 304 or 412 response has been sent
+     */
+    private static boolean checkPreconditions(HttpServletRequest request, HttpServletResponse response,
+                                              String entityTag, long lastModified) throws IOException {
+        String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch != null) {
+            if (!matches(ifMatch, entityTag, false)) {
+                response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+                return false;
+            }
+        } else {
+            long ifUnmodifiedSince = dateHeader(request, HttpHeaders.IF_UNMODIFIED_SINCE);
+            if (ifUnmodifiedSince != -1 && lastModified > ifUnmodifiedSince) {
+                response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+                return false;
+            }
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        boolean safe = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        if (ifNoneMatch != null) {
+            if (matches(ifNoneMatch, entityTag, true)) {
+                if (safe) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                } else {
+                    response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+                }
+                return false;
+            }
+        } else if (safe) {
+            long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+            if (ifModifiedSince != -1 && lastModified <= ifModifiedSince) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String entityTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison
+            return ifRange.trim().equals(entityTag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date != -1 && date == lastModified;
+    }
+
+    private static boolean matches(String header, String entityTag, boolean weak) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (weak && tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+    }
+
+    private static void sendRegion(HttpServletRequest request, HttpServletResponse response, Path file,
+                                   long start, long count) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The connector streams the file itself once the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        transfer(file, start, count, Channels.newChannel(response.getOutputStream()));
+    }
+
+    private static void sendMultipart(HttpServletResponse response, Path file, String contentType,
+                                      List<HttpRange> ranges, long length, boolean head) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long contentLength = closing.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            long start = ranges.get(i).getRangeStart(length);
+            long end = ranges.get(i).getRangeEnd(length);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + start + "-" + end + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders[i].length + (end - start + 1);
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (int i = 0; i < ranges.size(); i++) {
+            long start = ranges.get(i).getRangeStart(length);
+            long end = ranges.get(i).getRangeEnd(length);
+            out.write(partHeaders[i]);
+            transfer(file, start, end - start + 1, channel);
+        }
+        out.write(closing);
+    }
+
+    private static void transfer(Path file, long start, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = source.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("File ended early: " + file);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package fenix.aw.reader.util;
+
+/**
+ * A chunk of extracted text together with the (1-based, inclusive) page range it was taken from.
+ */
+public class PDFChunk {
+
+    private final String text;
+    private final int startPage;
+    private final int endPage;
+
+    public PDFChunk(String text, int startPage, int endPage) {
+        this.text = text;
+        this.startPage = startPage;
+        this.endPage = endPage;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getStartPage() {
+        return startPage;
+    }
+
+    public int getEndPage() {
+        return endPage;
+    }
+}
@@ -0,0 +1,209 @@
+package fenix.aw.reader.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams chunks out of a PDF by extracting a sliding window of pages at a time.
+ * Only the current window plus the unfinished tail of the previous one is kept on the heap,
+ * so callers can start consuming the first chunks while later pages are still unparsed.
+ * Chunk boundaries follow the same rules as {@link PDFProcessor#splitPdfIntoChunks}.
+ * Extracted pages can be handed to an {@link ExtractedTextStore} as they go by; a source over
+ * already stored text chunks the mapped text directly and never touches PDFBox.
+ */
+public class PDFChunkSource implements Iterator<PDFChunk>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PDFChunkSource.class);
+
+    private final PageTextExtractor extractor;
+    private final ExtractedTextStore.TextWriter textWriter;
+    private final ExtractedText storedText;
+    private final int maxCharactersPerChunk;
+    private final int pagesPerWindow;
+    private final int pageCount;
+
+    private final StringBuilder buffer = new StringBuilder();
+    // Buffer offset at which each buffered page starts, paired with its page number
+    private final Deque<int[]> pageOffsets = new ArrayDeque<>();
+    private final Deque<PDFChunk> ready = new ArrayDeque<>();
+
+    private int nextPage = 1;
+    private int storedPosition;
+    private boolean storing;
+
+    /**
+     * @param textWriter receives every extracted page and is committed once the last page is through,
+     *                   or null to not store the text
+     */
+    PDFChunkSource(PageTextExtractor extractor, int maxCharactersPerChunk, int pagesPerWindow,
+                   ExtractedTextStore.TextWriter textWriter) {
+        this.extractor = extractor;
+        this.textWriter = textWriter;
+        this.storedText = null;
+        this.storing = textWriter != null;
+        this.maxCharactersPerChunk = maxCharactersPerChunk;
+        // A window narrower than the partition count would leave extraction workers idle
+        this.pagesPerWindow = Math.max(pagesPerWindow, extractor.getPartitions());
+        this.pageCount = extractor.getPageCount();
+    }
+
+    PDFChunkSource(ExtractedText storedText, int maxCharactersPerChunk) {
+        this.extractor = null;
+        this.textWriter = null;
+        this.storedText = storedText;
+        this.maxCharactersPerChunk = maxCharactersPerChunk;
+        this.pagesPerWindow = 0;
+        this.pageCount = storedText.getPageCount();
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (storedText != null) {
+            if (ready.isEmpty()) {
+                cutStored();
+            }
+            return !ready.isEmpty();
+        }
+        while (ready.isEmpty() && nextPage <= pageCount) {
+            readWindow();
+            drain(false);
+        }
+        if (ready.isEmpty() && buffer.length() > 0) {
+            drain(true);
+        }
+        return !ready.isEmpty();
+    }
+
+    @Override
+    public PDFChunk next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return ready.poll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (textWriter != null) {
+            try {
+                if (storing && nextPage > pageCount) {
+                    textWriter.commit();
+                }
+            } catch (IOException ex) {
+                logger.warn("Could not store extracted text: {}", ex.getMessage());
+            } finally {
+                textWriter.close();
+            }
+        }
+        if (extractor != null) {
+            extractor.close();
+        }
+    }
+
+    private void readWindow() {
+        int lastPage = Math.min(nextPage + pagesPerWindow - 1, pageCount);
+        List<String> pages = extractor.extractPages(nextPage, lastPage);
+        for (int i = 0; i < pages.size(); i++) {
+            pageOffsets.addLast(new int[]{buffer.length(), nextPage + i});
+            buffer.append(pages.get(i));
+        }
+        store(pages);
+        logger.debug("Extracted pages {}-{} of {}", nextPage, lastPage, pageCount);
+        nextPage = lastPage + 1;
+    }
+
+    private void store(List<String> pages) {
+        if (!storing) {
+            return;
+        }
+        try {
+            for (String page : pages) {
+                textWriter.addPage(page);
+            }
+        } catch (IOException ex) {
+            // Storing is an optimization for the next run; this one carries on without it
+            logger.warn("Stopped storing extracted text: {}", ex.getMessage());
+            storing = false;
+        }
+    }
+
+    /**
+     * Cuts the next chunk out of the stored text, with the same boundaries as extraction would give.
+     */
+    private void cutStored() {
+        long cutStart = System.nanoTime();
+        CharSequence text = storedText.text();
+        while (ready.isEmpty() && storedPosition < text.length()) {
+            int end = TextChunker.findChunkEnd(text, storedPosition, maxCharactersPerChunk);
+            String chunk = TextChunker.slice(text, storedPosition, end);
+            if (chunk != null) {
+                ready.addLast(new PDFChunk(chunk, storedText.pageAt(storedPosition), storedText.pageAt(end - 1)));
+            }
+            storedPosition = end;
+        }
+        PipelineMetrics.record(PipelineMetrics.TEXT_CHUNK, cutStart);
+    }
+
+    /**
+     * Cuts every complete chunk out of the buffer. Unless this is the final flush, a chunk is only
+     * cut once the buffer extends past its window, so later pages cannot move its boundary.
+     */
+    private void drain(boolean flush) {
+        long drainStart = System.nanoTime();
+        int start = 0;
+        while (start < buffer.length()) {
+            if (!flush && buffer.length() - start <= maxCharactersPerChunk + 1) {
+                break;
+            }
+            int end = TextChunker.findChunkEnd(buffer, start, maxCharactersPerChunk);
+            String chunk = TextChunker.slice(buffer, start, end);
+            if (chunk != null) {
+                ready.addLast(new PDFChunk(chunk, pageAt(start), pageAt(end - 1)));
+            }
+            start = end;
+        }
+        compact(start);
+        PipelineMetrics.record(PipelineMetrics.TEXT_CHUNK, drainStart);
+    }
+
+    private int pageAt(int offset) {
+        int page = pageOffsets.isEmpty() ? nextPage - 1 : pageOffsets.peekFirst()[1];
+        for (int[] entry : pageOffsets) {
+            if (entry[0] > offset) {
+                break;
+            }
+            page = entry[1];
+        }
+        return page;
+    }
+
+    private void compact(int consumed) {
+        if (consumed == 0) {
+            return;
+        }
+        buffer.delete(0, consumed);
+        // Keep the page that the new buffer start falls into, drop the ones fully consumed
+        int[] current = null;
+        while (!pageOffsets.isEmpty() && pageOffsets.peekFirst()[0] <= consumed) {
+            current = pageOffsets.pollFirst();
+        }
+        for (int[] entry : pageOffsets) {
+            entry[0] -= consumed;
+        }
+        if (current != null) {
+            pageOffsets.addFirst(new int[]{0, current[1]});
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package fenix.aw.reader.util;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounds the heap PDF parsing can take. Every {@link org.apache.pdfbox.pdmodel.PDDocument} is loaded
+ * with a {@link MemoryUsageSetting} that keeps at most {@code maxMainMemoryBytes} of its stream data on
+ * the heap and spills the rest to a scratch file, and documents are only opened once their estimated
+ * heap use fits in a share of the maximum heap next to the documents already open. Waiting documents
+ * are admitted in arrival order, so a large one is not starved by a stream of small ones; a document
+ * larger than the whole budget is admitted alone.
+ */
+public class PDFMemoryBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(PDFMemoryBudget.class);
+    // Object graph, fonts and stripper state of a document, on top of its stream data
+    private static final long BASE_BYTES_PER_DOCUMENT = 4L * 1024 * 1024;
+
+    private static volatile PDFMemoryBudget defaults;
+
+    private final long maxMainMemoryBytes;
+    private final File scratchDir;
+    private final long capacity;
+    private final double overheadRatio;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long inUse;
+
+    /**
+     * @param maxMainMemoryBytes stream data per document kept on the heap; 0 keeps it all in the scratch
+     *                           file and a negative value keeps it all on the heap
+     * @param scratchDir         where scratch files go, or null for the default temporary directory
+     * @param capacity           heap all open documents may use together, in bytes
+     * @param overheadRatio      heap each document uses besides its stream data, relative to its file size
+     */
+    public PDFMemoryBudget(long maxMainMemoryBytes, File scratchDir, long capacity, double overheadRatio) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+        this.scratchDir = scratchDir;
+        this.capacity = capacity;
+        this.overheadRatio = overheadRatio;
+    }
+
+    /**
+     * Budget of {@code heapFraction} of the maximum heap.
+     */
+    public static PDFMemoryBudget ofHeap(long maxMainMemoryBytes, File scratchDir, double heapFraction,
+                                         double overheadRatio) {
+        return new PDFMemoryBudget(maxMainMemoryBytes, scratchDir,
+                Math.max(1, (long) (Runtime.getRuntime().maxMemory() * heapFraction)), overheadRatio);
+    }
+
+    /**
+     * Shared budget of processors created without one: 64 MB of stream data per document, half the heap.
+     */
+    public static PDFMemoryBudget defaults() {
+        if (defaults == null) {
+            synchronized (PDFMemoryBudget.class) {
+                if (defaults == null) {
+                    defaults = ofHeap(64L * 1024 * 1024, null, 0.5, 0.25);
+                }
+            }
+        }
+        return defaults;
+    }
+
+    public MemoryUsageSetting memoryUsage() {
+        MemoryUsageSetting setting;
+        if (maxMainMemoryBytes < 0) {
+            setting = MemoryUsageSetting.setupMainMemoryOnly();
+        } else if (maxMainMemoryBytes == 0) {
+            setting = MemoryUsageSetting.setupTempFileOnly();
+        } else {
+            setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        }
+        return scratchDir == null ? setting : setting.setTempDir(scratchDir);
+    }
+
+    /**
+     * Estimated heap use of {@code documents} open copies of the PDF.
+     */
+    public long estimate(File pdfFile, int documents) {
+        long size = pdfFile.length();
+        long streams = maxMainMemoryBytes < 0 ? size : Math.min(size, maxMainMemoryBytes);
+        long perDocument = BASE_BYTES_PER_DOCUMENT + streams + (long) (size * overheadRatio);
+        return perDocument * Math.max(1, documents);
+    }
+
+    /**
+     * Waits until {@code documents} copies of the PDF fit in the budget and reserves their share, which
+     * is returned when the permit is closed.
+     */
+    public Permit admit(File pdfFile, int documents) throws InterruptedIOException {
+        long bytes = Math.min(estimate(pdfFile, documents), capacity);
+        long start = System.nanoTime();
+        Object ticket = new Object();
+        synchronized (this) {
+            waiting.addLast(ticket);
+            try {
+                while (waiting.peekFirst() != ticket || inUse + bytes > capacity) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for memory to parse " + pdfFile.getName());
+            } finally {
+                waiting.remove(ticket);
+                notifyAll();
+            }
+            inUse += bytes;
+        }
+        long waitedNanos = System.nanoTime() - start;
+        PipelineMetrics.record(PipelineMetrics.PDF_ADMISSION, start);
+        if (waitedNanos > 1_000_000_000L) {
+            logger.info("Waited {} ms for {} MB of parsing memory for {}", waitedNanos / 1_000_000,
+                    bytes / (1024 * 1024), pdfFile.getName());
+        }
+        return new Permit(bytes);
+    }
+
+    private synchronized void release(long bytes) {
+        inUse -= bytes;
+        notifyAll();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getInUse() {
+        return inUse;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    /**
+     * Memory reserved for open documents; closing it more than once has no further effect.
+     */
+    public final class Permit implements Closeable {
+
+        private final long bytes;
+        private boolean closed;
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(bytes);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package fenix.aw.reader.util;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
@@ -9,12 +10,83 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PDFProcessor
 {
 
     private static final Logger logger = LoggerFactory.getLogger(PDFProcessor.class);
 
+    private static volatile ExecutorService defaultExecutor;
+
+    private final int extractionPartitions;
+    private final Executor extractionExecutor;
+    private final ExtractedTextStore textStore;
+    private final PDFMemoryBudget memoryBudget;
+
+    public PDFProcessor() {
+        this(1);
+    }
+
+    public PDFProcessor(int extractionPartitions) {
+        this(extractionPartitions, defaultExecutor());
+    }
+
+    /**
+     * Shared pool of processors created without an executor, one daemon thread per processor. Page
+     * parsing blocks, so it is kept off the common fork-join pool.
+     */
+    static Executor defaultExecutor() {
+        if (defaultExecutor == null) {
+            synchronized (PDFProcessor.class) {
+                if (defaultExecutor == null) {
+                    AtomicInteger threads = new AtomicInteger();
+                    defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "pdf-extract-" + threads.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * @param extractionPartitions number of page partitions stripped concurrently; 1 extracts serially
+     * @param extractionExecutor   pool the partitions run on
+     */
+    public PDFProcessor(int extractionPartitions, Executor extractionExecutor) {
+        this(extractionPartitions, extractionExecutor, null);
+    }
+
+    /**
+     * @param textStore where extracted text is kept and looked up, so each PDF is parsed once; null to
+     *                  always parse
+     */
+    public PDFProcessor(int extractionPartitions, Executor extractionExecutor, ExtractedTextStore textStore) {
+        this(extractionPartitions, extractionExecutor, textStore, PDFMemoryBudget.defaults());
+    }
+
+    /**
+     * @param memoryBudget how each document is loaded and how many may be open at once
+     */
+    public PDFProcessor(int extractionPartitions, Executor extractionExecutor, ExtractedTextStore textStore,
+                        PDFMemoryBudget memoryBudget) {
+        if (extractionPartitions <= 0) {
+            throw new IllegalArgumentException("Extraction partitions must be positive");
+        }
+        this.extractionPartitions = extractionPartitions;
+        this.extractionExecutor = extractionExecutor;
+        this.textStore = textStore;
+        this.memoryBudget = memoryBudget;
+    }
+
     public List<String> splitPdfIntoChunks(File pdfFile, int maxCharactersPerChunk) throws Exception {
         if (pdfFile == null) {
             throw new IllegalArgumentException("PDF file cannot be null");
@@ -28,52 +100,164 @@ public class PDFProcessor
 
         logger.info("Splitting PDF into chunks: {}", pdfFile.getName());
 
-        try (PDDocument document = PDDocument.load(pdfFile)) {
+        CharSequence fullText = loadText(pdfFile);
+
+        if (TextChunker.isBlank(fullText)) {
+            logger.warn("PDF contains no text: {}", pdfFile.getName());
+            return new ArrayList<>();
+        }
+
+        long chunkStart = System.nanoTime();
+        List<String> chunks = TextChunker.splitIntoChunks(fullText, maxCharactersPerChunk);
+        PipelineMetrics.record(PipelineMetrics.TEXT_CHUNK, chunkStart);
+
+        logger.info("Split PDF into {} chunks", chunks.size());
+        return chunks;
+    }
+
+    /**
+     * Opens a streaming chunk source over the PDF. Pages are extracted {@code pagesPerWindow} at a
+     * time as the caller iterates, so the first chunks are available before the whole book is parsed.
+     * The caller owns the returned source and must close it.
+     */
+    public PDFChunkSource openChunkSource(File pdfFile, int maxCharactersPerChunk, int pagesPerWindow) throws IOException {
+        if (pdfFile == null) {
+            throw new IllegalArgumentException("PDF file cannot be null");
+        }
+        if (!pdfFile.exists()) {
+            throw new IOException("PDF file does not exist: " + pdfFile.getAbsolutePath());
+        }
+        if (maxCharactersPerChunk <= 0) {
+            throw new IllegalArgumentException("Max characters per chunk must be positive");
+        }
+        if (pagesPerWindow <= 0) {
+            throw new IllegalArgumentException("Pages per window must be positive");
+        }
+
+        String key = null;
+        if (textStore != null) {
+            key = textStore.keyFor(pdfFile);
+            Optional<ExtractedText> stored = textStore.open(key);
+            if (stored.isPresent()) {
+                logger.info("Streaming PDF chunks from stored text of: {}", pdfFile.getName());
+                return new PDFChunkSource(stored.get(), maxCharactersPerChunk);
+            }
+        }
+
+        logger.info("Streaming PDF chunks from: {} ({} pages per window)", pdfFile.getName(), pagesPerWindow);
+
+        // Held until the source is closed, as long as its documents are open
+        PDFMemoryBudget.Permit permit = memoryBudget.admit(pdfFile, extractionPartitions);
+        PageTextExtractor extractor;
+        try {
+            PDDocument document = load(pdfFile, memoryBudget.memoryUsage());
             if (document.isEncrypted()) {
+                document.close();
                 logger.error("Cannot process encrypted PDF: {}", pdfFile.getName());
                 throw new IOException("Cannot process encrypted PDF files");
             }
+            extractor = new PageTextExtractor(document, pdfFile, extractionPartitions, extractionExecutor,
+                    memoryBudget.memoryUsage(), permit);
+        } catch (IOException | RuntimeException ex) {
+            permit.close();
+            throw ex;
+        }
+        return new PDFChunkSource(extractor, maxCharactersPerChunk, pagesPerWindow, createTextWriter(key));
+    }
 
-            PDFTextStripper pdfStripper = new PDFTextStripper();
-            String fullText = pdfStripper.getText(document);
+    static PDDocument load(File pdfFile, MemoryUsageSetting memoryUsage) throws IOException {
+        long start = System.nanoTime();
+        PDDocument document = PDDocument.load(pdfFile, memoryUsage);
+        PipelineMetrics.record(PipelineMetrics.PDF_LOAD, start);
+        return document;
+    }
 
-            if (fullText == null || fullText.trim().isEmpty()) {
-                logger.warn("PDF contains no text: {}", pdfFile.getName());
-                return new ArrayList<>();
+    /**
+     * Returns the whole text of the PDF, from the text store if it has been extracted before.
+     * Otherwise the PDF is parsed and, with a store configured, its text is stored page by page.
+     */
+    CharSequence loadText(File pdfFile) throws IOException {
+        String key = null;
+        if (textStore != null) {
+            key = textStore.keyFor(pdfFile);
+            Optional<ExtractedText> stored = textStore.open(key);
+            if (stored.isPresent()) {
+                logger.info("Using stored text of: {}", pdfFile.getName());
+                return stored.get().text();
             }
+        }
 
-            List<String> chunks = new ArrayList<>();
-            int start = 0;
-            // FIX: Improved chunking algorithm to break at sentence boundaries
-            while (start < fullText.length()) {
-                int end = Math.min(start + maxCharactersPerChunk, fullText.length());
-
-                // FIX: Try to break at sentence boundary (period followed by space)
-                if (end < fullText.length()) {
-                    // Look for sentence end within the last 20% of the chunk
-                    int searchStart = Math.max(start, end - maxCharactersPerChunk / 5);
-                    int lastPeriod = fullText.lastIndexOf(". ", end);
-
-                    if (lastPeriod > searchStart) {
-                        end = lastPeriod + 1; // Include the period
-                    } else {
-                        // If no period found, try to break at space
-                        int lastSpace = fullText.lastIndexOf(' ', end);
-                        if (lastSpace > searchStart) {
-                            end = lastSpace;
-                        }
-                    }
-                }
+        try (PDFMemoryBudget.Permit permit = memoryBudget.admit(pdfFile, extractionPartitions);
+             PDDocument document = load(pdfFile, memoryBudget.memoryUsage())) {
+            if (document.isEncrypted()) {
+                logger.error("Cannot process encrypted PDF: {}", pdfFile.getName());
+                throw new IOException("Cannot process encrypted PDF files");
+            }
+            if (textStore == null) {
+                return extractText(document, pdfFile);
+            }
+            return extractAndStoreText(document, pdfFile, key);
+        }
+    }
 
-                String chunk = fullText.substring(start, end).trim();
-                if (!chunk.isEmpty()) {
-                    chunks.add(chunk);
-                }
-                start = end;
+    private String extractAndStoreText(PDDocument document, File pdfFile, String key) throws IOException {
+        // Page by page, so the store gets its page index
+        List<String> pages;
+        try (PageTextExtractor extractor = new PageTextExtractor(document, pdfFile, extractionPartitions,
+                extractionExecutor, memoryBudget.memoryUsage(), null)) {
+            pages = extractor.extractPages(1, extractor.getPageCount());
+        }
+        StringBuilder text = new StringBuilder();
+        for (String page : pages) {
+            text.append(page);
+        }
+        try (ExtractedTextStore.TextWriter writer = textStore.create(key)) {
+            for (String page : pages) {
+                writer.addPage(page);
             }
+            writer.commit();
+        } catch (IOException ex) {
+            logger.warn("Could not store extracted text of {}: {}", pdfFile.getName(), ex.getMessage());
+        }
+        return text.toString();
+    }
 
-            logger.info("Split PDF into {} chunks", chunks.size());
-            return chunks;
+    private ExtractedTextStore.TextWriter createTextWriter(String key) {
+        if (textStore == null) {
+            return null;
+        }
+        try {
+            return textStore.create(key);
+        } catch (IOException ex) {
+            logger.warn("Extracted text will not be stored: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Extracts the whole document text. With more than one partition the page range is stripped
+     * concurrently and reassembled in page order before it is returned.
+     */
+    private String extractText(PDDocument document, File pdfFile) throws IOException {
+        if (extractionPartitions <= 1) {
+            long start = System.nanoTime();
+            String text = new PDFTextStripper().getText(document);
+            PipelineMetrics.record(PipelineMetrics.PDF_STRIP, start);
+            PipelineMetrics.PAGES_EXTRACTED.increment(document.getNumberOfPages());
+            return text;
+        }
+
+        PageTextExtractor extractor = new PageTextExtractor(document, pdfFile, extractionPartitions, extractionExecutor,
+                memoryBudget.memoryUsage(), null);
+        try {
+            List<String> pages = extractor.extractPages(1, extractor.getPageCount());
+            StringBuilder text = new StringBuilder();
+            for (String page : pages) {
+                text.append(page);
+            }
+            return text.toString();
+        } finally {
+            extractor.close();
         }
     }
 
@@ -90,49 +274,19 @@ public class PDFProcessor
 
         logger.info("Splitting PDF into sentence-based chunks: {}", pdfFile.getName());
 
-        try (PDDocument document = PDDocument.load(pdfFile)) {
-            if (document.isEncrypted()) {
-                throw new IOException("Cannot process encrypted PDF files");
-            }
-
-            PDFTextStripper pdfStripper = new PDFTextStripper();
-            String fullText = pdfStripper.getText(document);
-
-            if (fullText == null || fullText.trim().isEmpty()) {
-                logger.warn("PDF contains no text: {}", pdfFile.getName());
-                return new ArrayList<>();
-            }
-
-            // Split by sentence boundaries
-            String[] sentences = fullText.split("(?<=[.!?])\\s+");
+        CharSequence fullText = loadText(pdfFile);
 
-            List<String> chunks = new ArrayList<>();
-            StringBuilder currentChunk = new StringBuilder();
-            int sentenceCount = 0;
-
-            for (String sentence : sentences) {
-                sentence = sentence.trim();
-                if (sentence.isEmpty()) {
-                    continue;
-                }
-
-                if (sentenceCount >= maxSentencesPerChunk) {
-                    chunks.add(currentChunk.toString().trim());
-                    currentChunk = new StringBuilder();
-                    sentenceCount = 0;
-                }
-
-                currentChunk.append(sentence).append(" ");
-                sentenceCount++;
-            }
+        if (TextChunker.isBlank(fullText)) {
+            logger.warn("PDF contains no text: {}", pdfFile.getName());
+            return new ArrayList<>();
+        }
 
-            // Add the last chunk if it's not empty
-            if (currentChunk.length() > 0) {
-                chunks.add(currentChunk.toString().trim());
-            }
+        // Split by sentence boundaries
+        long chunkStart = System.nanoTime();
+        List<String> chunks = TextChunker.splitIntoSentenceChunks(fullText, maxSentencesPerChunk);
+        PipelineMetrics.record(PipelineMetrics.TEXT_CHUNK, chunkStart);
 
-            logger.info("Split PDF into {} sentence-based chunks", chunks.size());
-            return chunks;
-        }
+        logger.info("Split PDF into {} sentence-based chunks", chunks.size());
+        return chunks;
     }
 }
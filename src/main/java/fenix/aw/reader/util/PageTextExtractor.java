@@ -0,0 +1,148 @@
+package fenix.aw.reader.util;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Extracts page text with one or more partitions. PDFBox documents are not thread safe, so every
+ * partition gets its own {@link PDDocument} and {@link PDFTextStripper}; a page range is split into
+ * contiguous sub-ranges that are stripped concurrently and returned in page order.
+ */
+class PageTextExtractor implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageTextExtractor.class);
+
+    private final List<PDDocument> documents = new ArrayList<>();
+    private final List<PDFTextStripper> strippers = new ArrayList<>();
+    private final Executor executor;
+    private final int pageCount;
+    private final PDFMemoryBudget.Permit permit;
+
+    /**
+     * @param memoryUsage how additional partition documents are loaded from {@code pdfFile}; they are
+     *                    always closed by {@link #close()}
+     * @param permit      memory reserved for all of the documents; when given, the extractor owns
+     *                    {@code document} and {@link #close()} also closes it and returns the permit
+     */
+    PageTextExtractor(PDDocument document, File pdfFile, int partitions, Executor executor,
+                      MemoryUsageSetting memoryUsage, PDFMemoryBudget.Permit permit) throws IOException {
+        this.executor = executor;
+        this.permit = permit;
+        this.pageCount = document.getNumberOfPages();
+        int workers = Math.max(1, Math.min(partitions, pageCount));
+        documents.add(document);
+        strippers.add(new PDFTextStripper());
+        try {
+            for (int i = 1; i < workers; i++) {
+                documents.add(PDFProcessor.load(pdfFile, memoryUsage));
+                strippers.add(new PDFTextStripper());
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+        if (workers > 1) {
+            logger.debug("Extracting {} with {} partitions", pdfFile.getName(), workers);
+        }
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    int getPartitions() {
+        return documents.size();
+    }
+
+    /**
+     * Returns the text of every page in {@code [fromPage, toPage]} (1-based, inclusive), in page order.
+     */
+    List<String> extractPages(int fromPage, int toPage) {
+        long start = System.nanoTime();
+        List<String> texts = extractPagesConcurrently(fromPage, toPage);
+        PipelineMetrics.record(PipelineMetrics.PDF_STRIP, start);
+        PipelineMetrics.PAGES_EXTRACTED.increment(texts.size());
+        return texts;
+    }
+
+    private List<String> extractPagesConcurrently(int fromPage, int toPage) {
+        int pages = toPage - fromPage + 1;
+        int partitions = Math.min(documents.size(), pages);
+        if (partitions <= 1) {
+            return extractRange(0, fromPage, toPage);
+        }
+
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>(partitions);
+        int first = fromPage;
+        for (int i = 0; i < partitions; i++) {
+            // Spread the remainder over the leading partitions so sizes differ by at most one page
+            int size = pages / partitions + (i < pages % partitions ? 1 : 0);
+            int worker = i;
+            int start = first;
+            int end = first + size - 1;
+            futures.add(CompletableFuture.supplyAsync(() -> extractRange(worker, start, end), executor));
+            first = end + 1;
+        }
+
+        List<String> texts = new ArrayList<>(pages);
+        try {
+            for (CompletableFuture<List<String>> future : futures) {
+                texts.addAll(future.join());
+            }
+        } catch (CompletionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        return texts;
+    }
+
+    private List<String> extractRange(int worker, int fromPage, int toPage) {
+        PDDocument document = documents.get(worker);
+        PDFTextStripper stripper = strippers.get(worker);
+        List<String> texts = new ArrayList<>(toPage - fromPage + 1);
+        try {
+            for (int page = fromPage; page <= toPage; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                texts.add(stripper.getText(document));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to extract pages " + fromPage + "-" + toPage, ex);
+        }
+        return texts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (int i = permit != null ? 0 : 1; i < documents.size(); i++) {
+            try {
+                documents.get(i).close();
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+        if (permit != null) {
+            permit.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package fenix.aw.reader.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the PDF stages, which run outside of Spring. They are registered with Micrometer's
+ * global registry, which Spring Boot's registry joins, so they are exported like every other meter.
+ */
+public final class PipelineMetrics {
+
+    public static final Timer PDF_LOAD = stageTimer("pdf.load", "Time to parse a PDF document");
+    public static final Timer PDF_STRIP = stageTimer("pdf.strip", "Time to strip the text of a range of pages");
+    public static final Timer PDF_ADMISSION = stageTimer("pdf.admission.wait",
+            "Time a PDF waited for parsing memory");
+    public static final Timer TEXT_CHUNK = stageTimer("pdf.chunk", "Time to cut extracted text into chunks");
+
+    public static final Counter PAGES_EXTRACTED = Counter.builder("pdf.pages.extracted")
+            .description("Pages whose text has been extracted")
+            .register(Metrics.globalRegistry);
+
+    private PipelineMetrics() {
+    }
+
+    public static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer stageTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+}
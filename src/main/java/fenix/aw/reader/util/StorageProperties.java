@@ -1,12 +1,21 @@
 package fenix.aw.reader.util;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @ConfigurationProperties("storage")
 public class StorageProperties {
 
     private String location = "../shared_data/upload_dir";
 
+    // Largest PDF accepted by the streaming and resumable uploads; multipart is capped by spring.servlet.multipart
+    private DataSize maxFileSize = DataSize.ofGigabytes(1);
+
+    // Resumable uploads without a new chunk for this long are discarded
+    private Duration uploadExpiry = Duration.ofHours(24);
+
     public String getLocation() {
         return location;
     }
@@ -14,4 +23,20 @@ public class StorageProperties {
     public void setLocation(String location) {
         this.location = location;
     }
+
+    public DataSize getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(DataSize maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public Duration getUploadExpiry() {
+        return uploadExpiry;
+    }
+
+    public void setUploadExpiry(Duration uploadExpiry) {
+        this.uploadExpiry = uploadExpiry;
+    }
 }
@@ -0,0 +1,169 @@
+package fenix.aw.reader.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chunking rules shared by {@link PDFProcessor} and {@link PDFChunkSource}. Everything works on a
+ * {@link CharSequence}, so callers can pass a String, a reusable StringBuilder or a CharBuffer view,
+ * and every scan is bounded: backward searches never look past the last 20% of a chunk, and each
+ * character is otherwise visited once, so chunking is O(n) even for text without any periods or spaces.
+ */
+public final class TextChunker {
+
+    private TextChunker() {
+    }
+
+    /**
+     * Returns the exclusive end of the chunk starting at {@code start}, preferring to break at a
+     * sentence boundary (period followed by space) and then at a space within the last 20% of the chunk.
+     * A period directly at the limit is still taken, so a chunk can be one character longer than the maximum.
+     */
+    public static int findChunkEnd(CharSequence text, int start, int maxCharactersPerChunk) {
+        int length = text.length();
+        int end = Math.min(start + maxCharactersPerChunk, length);
+
+        if (end < length) {
+            // Look for sentence end within the last 20% of the chunk
+            int searchStart = Math.max(start, end - maxCharactersPerChunk / 5);
+            int lastPeriod = lastPeriodBefore(text, end, searchStart);
+
+            if (lastPeriod > searchStart) {
+                end = lastPeriod + 1; // Include the period
+            } else {
+                // If no period found, try to break at space
+                int lastSpace = lastSpaceBefore(text, end, searchStart);
+                if (lastSpace > searchStart) {
+                    end = lastSpace;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Splits text into chunks of at most {@code maxCharactersPerChunk} characters (see {@link #findChunkEnd}),
+     * trimmed, with blank chunks dropped.
+     */
+    public static List<String> splitIntoChunks(CharSequence text, int maxCharactersPerChunk) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = findChunkEnd(text, start, maxCharactersPerChunk);
+            String chunk = slice(text, start, end);
+            if (chunk != null) {
+                chunks.add(chunk);
+            }
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Groups sentences into chunks of at most {@code maxSentencesPerChunk}. A sentence ends at a run
+     * of whitespace that follows '.', '!' or '?', the same boundaries as splitting on
+     * {@code (?<=[.!?])\s+}, found in a single pass without a regex.
+     */
+    public static List<String> splitIntoSentenceChunks(CharSequence text, int maxSentencesPerChunk) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder currentChunk = new StringBuilder();
+        int sentenceCount = 0;
+        int length = text.length();
+        int sentenceStart = 0;
+        int i = 0;
+
+        while (i <= length) {
+            boolean boundary = i == length
+                    || (i > 0 && isWhitespace(text.charAt(i)) && isTerminator(text.charAt(i - 1)));
+            if (!boundary) {
+                i++;
+                continue;
+            }
+
+            int from = trimStart(text, sentenceStart, i);
+            int to = trimEnd(text, from, i);
+            if (from < to) {
+                if (sentenceCount >= maxSentencesPerChunk) {
+                    // Drop the separator after the last sentence
+                    chunks.add(currentChunk.substring(0, currentChunk.length() - 1));
+                    currentChunk.setLength(0);
+                    sentenceCount = 0;
+                }
+                currentChunk.append(text, from, to).append(' ');
+                sentenceCount++;
+            }
+
+            if (i == length) {
+                break;
+            }
+            while (i < length && isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            sentenceStart = i;
+        }
+
+        if (currentChunk.length() > 0) {
+            chunks.add(currentChunk.substring(0, currentChunk.length() - 1));
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns {@code text[start, end)} trimmed like {@link String#trim()}, or null if nothing is left,
+     * copying the characters only once.
+     */
+    public static String slice(CharSequence text, int start, int end) {
+        int from = trimStart(text, start, end);
+        int to = trimEnd(text, from, end);
+        if (from >= to) {
+            return null;
+        }
+        return text.subSequence(from, to).toString();
+    }
+
+    public static boolean isBlank(CharSequence text) {
+        return text == null || trimStart(text, 0, text.length()) == text.length();
+    }
+
+    // Last ". " starting at or before 'from' and after 'floor', as lastIndexOf(". ", from) but bounded
+    private static int lastPeriodBefore(CharSequence text, int from, int floor) {
+        for (int i = Math.min(from, text.length() - 2); i > floor; i--) {
+            if (text.charAt(i) == '.' && text.charAt(i + 1) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastSpaceBefore(CharSequence text, int from, int floor) {
+        for (int i = Math.min(from, text.length() - 1); i > floor; i--) {
+            if (text.charAt(i) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    // The characters matched by \s in a Java regex
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+}
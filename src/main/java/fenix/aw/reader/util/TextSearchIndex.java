@@ -0,0 +1,639 @@
+package fenix.aw.reader.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the chunks of converted books, answering which chunk (and so which
+ * page and which moment of the audiobook) a word or phrase occurs in.
+ *
+ * <p>Chunks get ascending global ids as they are added, so every term's postings are appended in
+ * order and stored as one byte array of varint-encoded deltas: the chunk id gap, the term frequency
+ * and the position gaps within the chunk. Per-chunk data (book, pages, word count, audio offset) sits
+ * in parallel primitive arrays. Queries match chunks containing every term, or the terms in order when
+ * the query is quoted, by leapfrogging the posting lists from the rarest term, and rank them by BM25.
+ *
+ * <p>Removing or reindexing a book only hides its chunks. Once hidden chunks make up more than half of
+ * all chunks, the index is compacted: live chunks are renumbered in order and the postings and arrays
+ * of hidden ones are dropped, so the work of a compaction is paid for by the removals that caused it.
+ */
+public class TextSearchIndex {
+
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double COMPACT_HIDDEN_SHARE = 0.5;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Long, Book> books = new HashMap<>();
+    private final List<Book> slots = new ArrayList<>();
+
+    private int chunkCount;
+    private int[] chunkSlot = new int[1024];
+    private int[] chunkStartPage = new int[1024];
+    private int[] chunkEndPage = new int[1024];
+    private int[] chunkWords = new int[1024];
+    private long[] chunkAudioStart = new long[1024];
+    private long[] chunkAudioLength = new long[1024];
+
+    private int liveChunks;
+    private long liveWords;
+
+    /**
+     * Starts (re)indexing a book, hiding whatever was indexed for it before.
+     */
+    public void startBook(long bookId, String title) {
+        lock.writeLock().lock();
+        try {
+            hide(books.remove(bookId));
+            Book book = new Book(bookId, title, slots.size());
+            slots.add(book);
+            books.put(bookId, book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the next chunk of a book, in chunk order.
+     *
+     * @return false if the book was not started or has been removed since
+     */
+    public boolean addChunk(long bookId, CharSequence text, int startPage, int endPage) {
+        // Tokenized outside the lock, only the appends need it
+        Map<String, IntList> terms = new LinkedHashMap<>();
+        int words = tokenize(text, (term, position) ->
+                terms.computeIfAbsent(term, t -> new IntList()).add(position));
+
+        lock.writeLock().lock();
+        try {
+            Book book = books.get(bookId);
+            if (book == null) {
+                return false;
+            }
+            int chunk = chunkCount++;
+            if (chunk == chunkSlot.length) {
+                int capacity = chunk * 2;
+                chunkSlot = Arrays.copyOf(chunkSlot, capacity);
+                chunkStartPage = Arrays.copyOf(chunkStartPage, capacity);
+                chunkEndPage = Arrays.copyOf(chunkEndPage, capacity);
+                chunkWords = Arrays.copyOf(chunkWords, capacity);
+                chunkAudioStart = Arrays.copyOf(chunkAudioStart, capacity);
+                chunkAudioLength = Arrays.copyOf(chunkAudioLength, capacity);
+            }
+            chunkSlot[chunk] = book.slot;
+            chunkStartPage[chunk] = startPage;
+            chunkEndPage[chunk] = endPage;
+            chunkWords[chunk] = words;
+            chunkAudioStart[chunk] = -1;
+            book.chunks.add(chunk);
+            liveChunks++;
+            liveWords += words;
+            for (Map.Entry<String, IntList> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), t -> new Postings()).add(chunk, term.getValue());
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records the audio length of the book's next chunk without audio; chunks are spoken in order, so
+     * each one starts where the previous ended. A negative length means it is unknown, which leaves this
+     * and every later chunk of the book without an audio offset.
+     *
+     * @return false if every indexed chunk of the book already has its audio
+     */
+    public boolean addAudio(long bookId, long durationMillis) {
+        lock.writeLock().lock();
+        try {
+            Book book = books.get(bookId);
+            if (book == null || book.audioChunks == book.chunks.size()) {
+                return false;
+            }
+            int chunk = book.chunks.get(book.audioChunks++);
+            if (durationMillis < 0 || book.audioMillis < 0) {
+                book.audioMillis = -1;
+                chunkAudioStart[chunk] = -1;
+                return true;
+            }
+            chunkAudioStart[chunk] = book.audioMillis;
+            chunkAudioLength[chunk] = durationMillis;
+            book.audioMillis += durationMillis;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeBook(long bookId) {
+        lock.writeLock().lock();
+        try {
+            hide(books.remove(bookId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean containsBook(long bookId) {
+        lock.readLock().lock();
+        try {
+            return books.containsKey(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getChunkCount() {
+        lock.readLock().lock();
+        try {
+            return liveChunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best {@code limit} chunks containing every word of the query, or the words in this
+     * order if the query is enclosed in double quotes.
+     *
+     * @param bookId only search this book, or null for all books
+     */
+    public List<Hit> search(String query, Long bookId, int limit) {
+        String trimmed = query.trim();
+        boolean phrase = trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"");
+        List<String> queryTerms = new ArrayList<>();
+        tokenize(trimmed, (term, position) -> queryTerms.add(term));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // One cursor per distinct term; the phrase refers to them by its own word order
+            Map<String, Cursor> byTerm = new LinkedHashMap<>();
+            for (String term : queryTerms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    return List.of();
+                }
+                byTerm.computeIfAbsent(term, t -> new Cursor(list));
+            }
+            Cursor[] cursors = byTerm.values().toArray(new Cursor[0]);
+            Cursor[] phraseCursors = new Cursor[queryTerms.size()];
+            for (int i = 0; i < phraseCursors.length; i++) {
+                phraseCursors[i] = byTerm.get(queryTerms.get(i));
+            }
+            Arrays.sort(cursors, Comparator.comparingInt(cursor -> cursor.postings.chunkCount));
+
+            int first = 0;
+            int last = Integer.MAX_VALUE;
+            int onlySlot = -1;
+            if (bookId != null) {
+                Book book = books.get(bookId);
+                if (book == null || book.chunks.size() == 0) {
+                    return List.of();
+                }
+                onlySlot = book.slot;
+                first = book.chunks.get(0);
+                last = book.chunks.get(book.chunks.size() - 1);
+            }
+
+            double averageWords = liveChunks == 0 ? 1 : Math.max(1, (double) liveWords / liveChunks);
+            double[] idf = new double[cursors.length];
+            for (int i = 0; i < cursors.length; i++) {
+                double df = cursors[i].postings.chunkCount;
+                idf[i] = Math.log(1 + (liveChunks - df + 0.5) / (df + 0.5));
+            }
+
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Hit::getScore));
+            int target = first;
+            while (target <= last) {
+                int chunk = match(cursors, target);
+                if (chunk < 0 || chunk > last) {
+                    break;
+                }
+                target = chunk + 1;
+                Book book = slots.get(chunkSlot[chunk]);
+                if (!book.live || onlySlot >= 0 && book.slot != onlySlot) {
+                    continue;
+                }
+                int position = phrase ? phrasePosition(phraseCursors) : firstPosition(cursors);
+                if (position < 0) {
+                    continue;
+                }
+                double score = 0;
+                double norm = K1 * (1 - B + B * chunkWords[chunk] / averageWords);
+                for (int i = 0; i < cursors.length; i++) {
+                    int tf = cursors[i].frequency;
+                    score += idf[i] * tf * (K1 + 1) / (tf + norm);
+                }
+                best.add(hit(book, chunk, position, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(best);
+            hits.sort(Comparator.comparingDouble(Hit::getScore).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves every cursor to the first chunk at or after {@code target} that contains all of their terms.
+     *
+     * @return that chunk, or -1 if there is none
+     */
+    private static int match(Cursor[] cursors, int target) {
+        int i = 0;
+        while (i < cursors.length) {
+            if (!cursors[i].advanceTo(target)) {
+                return -1;
+            }
+            if (cursors[i].chunk > target) {
+                // Every list must catch up with this one; start over from the rarest
+                target = cursors[i].chunk;
+                i = i == 0 ? 1 : 0;
+                continue;
+            }
+            i++;
+        }
+        return target;
+    }
+
+    private static int firstPosition(Cursor[] cursors) {
+        int first = Integer.MAX_VALUE;
+        for (Cursor cursor : cursors) {
+            first = Math.min(first, cursor.positions()[0]);
+        }
+        return first;
+    }
+
+    /**
+     * Returns where the query's words first occur one after another in the current chunk, or -1.
+     */
+    private static int phrasePosition(Cursor[] phraseCursors) {
+        int[] starts = phraseCursors[0].positions();
+        for (int start : starts) {
+            boolean found = true;
+            for (int i = 1; i < phraseCursors.length && found; i++) {
+                found = Arrays.binarySearch(phraseCursors[i].positions(), start + i) >= 0;
+            }
+            if (found) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private Hit hit(Book book, int chunk, int position, double score) {
+        long audioOffset = -1;
+        if (chunkAudioStart[chunk] >= 0) {
+            // Assume an even speaking rate within the chunk
+            audioOffset = chunkAudioStart[chunk]
+                    + chunkAudioLength[chunk] * position / Math.max(1, chunkWords[chunk]);
+        }
+        return new Hit(book.id, book.title, book.chunks.indexOf(chunk), chunkStartPage[chunk],
+                chunkEndPage[chunk], audioOffset, score);
+    }
+
+    private void hide(Book book) {
+        if (book != null && book.live) {
+            book.live = false;
+            for (int i = 0; i < book.chunks.size(); i++) {
+                liveChunks--;
+                liveWords -= chunkWords[book.chunks.get(i)];
+            }
+            if (chunkCount - liveChunks > chunkCount * COMPACT_HIDDEN_SHARE) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Drops hidden chunks and books. Live chunks keep their order, so renumbered postings stay ascending
+     * and chunks of books still being indexed carry on from the new {@code chunkCount}.
+     */
+    private void compact() {
+        int[] renumbered = new int[chunkCount];
+        int capacity = Math.max(1024, liveChunks);
+        int[] slot = new int[capacity];
+        int[] startPage = new int[capacity];
+        int[] endPage = new int[capacity];
+        int[] words = new int[capacity];
+        long[] audioStart = new long[capacity];
+        long[] audioLength = new long[capacity];
+        int live = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (!slots.get(chunkSlot[chunk]).live) {
+                renumbered[chunk] = -1;
+                continue;
+            }
+            renumbered[chunk] = live;
+            slot[live] = chunkSlot[chunk];
+            startPage[live] = chunkStartPage[chunk];
+            endPage[live] = chunkEndPage[chunk];
+            words[live] = chunkWords[chunk];
+            audioStart[live] = chunkAudioStart[chunk];
+            audioLength[live] = chunkAudioLength[chunk];
+            live++;
+        }
+
+        // Live books move to the front of the slots, in their old order
+        int[] slotRenumbered = new int[slots.size()];
+        List<Book> liveSlots = new ArrayList<>(books.size());
+        for (Book book : slots) {
+            if (book.live) {
+                slotRenumbered[book.slot] = liveSlots.size();
+                book.slot = liveSlots.size();
+                liveSlots.add(book);
+                for (int i = 0; i < book.chunks.size(); i++) {
+                    book.chunks.set(i, renumbered[book.chunks.get(i)]);
+                }
+            }
+        }
+        for (int chunk = 0; chunk < live; chunk++) {
+            slot[chunk] = slotRenumbered[slot[chunk]];
+        }
+
+        postings.replaceAll((term, list) -> list.retain(renumbered));
+        postings.values().removeIf(list -> list.chunkCount == 0);
+
+        slots.clear();
+        slots.addAll(liveSlots);
+        chunkCount = live;
+        chunkSlot = slot;
+        chunkStartPage = startPage;
+        chunkEndPage = endPage;
+        chunkWords = words;
+        chunkAudioStart = audioStart;
+        chunkAudioLength = audioLength;
+    }
+
+    /**
+     * Splits text into lower-cased runs of letters and digits; every run counts as a word position,
+     * but only its first {@value #MAX_TERM_LENGTH} characters are kept.
+     *
+     * @return the number of words
+     */
+    static int tokenize(CharSequence text, TermConsumer consumer) {
+        StringBuilder term = new StringBuilder();
+        int position = 0;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                }
+            } else if (term.length() > 0) {
+                consumer.accept(term.toString(), position++);
+                term.setLength(0);
+            }
+        }
+        return position;
+    }
+
+    interface TermConsumer {
+        void accept(String term, int position);
+    }
+
+    /**
+     * A chunk matching a query. {@code chunkIndex} is the chunk's position within its book, and
+     * {@code audioOffsetMillis} estimates where the match is spoken, or is -1 if the chunk has no audio yet.
+     */
+    public static final class Hit {
+
+        private final long bookId;
+        private final String title;
+        private final int chunkIndex;
+        private final int startPage;
+        private final int endPage;
+        private final long audioOffsetMillis;
+        private final double score;
+
+        private Hit(long bookId, String title, int chunkIndex, int startPage, int endPage,
+                    long audioOffsetMillis, double score) {
+            this.bookId = bookId;
+            this.title = title;
+            this.chunkIndex = chunkIndex;
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.audioOffsetMillis = audioOffsetMillis;
+            this.score = score;
+        }
+
+        public long getBookId() {
+            return bookId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getChunkIndex() {
+            return chunkIndex;
+        }
+
+        public int getStartPage() {
+            return startPage;
+        }
+
+        public int getEndPage() {
+            return endPage;
+        }
+
+        public long getAudioOffsetMillis() {
+            return audioOffsetMillis;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private static final class Book {
+        private final long id;
+        private final String title;
+        private int slot;
+        // Global ids of the book's chunks, in chunk order
+        private final IntList chunks = new IntList();
+        private int audioChunks;
+        private long audioMillis;
+        private boolean live = true;
+
+        private Book(long id, String title, int slot) {
+            this.id = id;
+            this.title = title;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Posting list of one term: for each chunk containing it, in ascending chunk order, the varint gap
+     * to the previous chunk, the number of occurrences and the varint gaps between their positions.
+     */
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int size;
+        private int lastChunk;
+        private int chunkCount;
+
+        private void add(int chunk, IntList positions) {
+            add(chunk, positions.values, positions.size);
+        }
+
+        private void add(int chunk, int[] positions, int count) {
+            writeVarint(chunk - lastChunk);
+            writeVarint(count);
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                writeVarint(positions[i] - previous);
+                previous = positions[i];
+            }
+            lastChunk = chunk;
+            chunkCount++;
+        }
+
+        /**
+         * Returns the postings of the chunks that {@code renumbered} keeps (maps to a non-negative id).
+         */
+        private Postings retain(int[] renumbered) {
+            Postings kept = new Postings();
+            Cursor cursor = new Cursor(this);
+            while (cursor.next()) {
+                int chunk = renumbered[cursor.chunk];
+                if (chunk >= 0) {
+                    int[] positions = cursor.positions();
+                    kept.add(chunk, positions, positions.length);
+                }
+            }
+            return kept;
+        }
+
+        private void writeVarint(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+            }
+            while ((value & ~0x7f) != 0) {
+                data[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+
+    private static final class Cursor {
+        private final Postings postings;
+        private int offset;
+        private int chunk = -1;
+        private int frequency;
+        private int positionsOffset;
+        private int[] positions;
+
+        private Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        private boolean next() {
+            if (offset >= postings.size) {
+                return false;
+            }
+            chunk = (chunk < 0 ? 0 : chunk) + readVarint();
+            frequency = readVarint();
+            positionsOffset = offset;
+            positions = null;
+            for (int i = 0; i < frequency; i++) {
+                readVarint();
+            }
+            return true;
+        }
+
+        private boolean advanceTo(int target) {
+            while (chunk < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int[] positions() {
+            if (positions == null) {
+                int saved = offset;
+                offset = positionsOffset;
+                positions = new int[frequency];
+                int position = 0;
+                for (int i = 0; i < frequency; i++) {
+                    position += readVarint();
+                    positions[i] = position;
+                }
+                offset = saved;
+            }
+            return positions;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings.data[offset++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int get(int index) {
+            return values[index];
+        }
+
+        private void set(int index, int value) {
+            values[index] = value;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private int indexOf(int value) {
+            // Chunk ids are ascending
+            int index = Arrays.binarySearch(values, 0, size, value);
+            return index < 0 ? -1 : index;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package fenix.aw.reader.util;
+
+import fenix.aw.reader.Exception.AudioCombineException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Concatenates RIFF/WAVE segments in the JVM. Every segment must carry an identical {@code fmt }
+ * chunk; the output gets one header with the summed data length and the segments' sample data is
+ * appended with {@link FileChannel#transferTo}, so the audio never passes through the heap.
+ */
+public class WavAudioCombiner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WavAudioCombiner.class);
+    private static final int MAX_HEADER_SCAN = 64 * 1024;
+    private static final long MAX_RIFF_SIZE = 0xFFFFFFFFL;
+
+    /**
+     * Location of a segment's {@code fmt } and {@code data} chunks.
+     */
+    public static final class WavInfo {
+
+        private final byte[] format;
+        private final long dataOffset;
+        private final long dataLength;
+
+        WavInfo(byte[] format, long dataOffset, long dataLength) {
+            this.format = format;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+
+        /**
+         * Raw body of the {@code fmt } chunk.
+         */
+        public byte[] getFormat() {
+            return format.clone();
+        }
+
+        public long getDataOffset() {
+            return dataOffset;
+        }
+
+        public long getDataLength() {
+            return dataLength;
+        }
+
+        public int getByteRate() {
+            return ByteBuffer.wrap(format).order(ByteOrder.LITTLE_ENDIAN).getInt(8);
+        }
+
+        public long getDurationMillis() {
+            int byteRate = getByteRate();
+            return byteRate <= 0 ? 0 : dataLength * 1000 / byteRate;
+        }
+
+        public boolean isCompatibleWith(WavInfo other) {
+            return Arrays.equals(format, other.format);
+        }
+    }
+
+    public static boolean isWav(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".wav");
+    }
+
+    public static WavInfo readInfo(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(fileSize, MAX_HEADER_SCAN))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // fill the header buffer
+            }
+            header.flip();
+
+            if (header.remaining() < 12 || header.getInt(0) != fourCC("RIFF") || header.getInt(8) != fourCC("WAVE")) {
+                throw new AudioCombineException("Not a RIFF/WAVE file: " + file);
+            }
+
+            byte[] format = null;
+            int position = 12;
+            while (position + 8 <= header.limit()) {
+                int id = header.getInt(position);
+                long size = Integer.toUnsignedLong(header.getInt(position + 4));
+                int body = position + 8;
+                if (id == fourCC("fmt ")) {
+                    if (body + size > header.limit()) {
+                        break;
+                    }
+                    format = new byte[(int) size];
+                    header.get(body, format);
+                } else if (id == fourCC("data")) {
+                    if (format == null) {
+                        throw new AudioCombineException("WAV data chunk precedes fmt chunk: " + file);
+                    }
+                    // Streaming writers leave the size unset; trust the file length instead
+                    long available = fileSize - body;
+                    long length = size == 0 || size > available ? available : size;
+                    return new WavInfo(format, body, length);
+                }
+                // Chunks are word aligned
+                position = (int) Math.min(Integer.MAX_VALUE, body + size + (size & 1));
+            }
+            throw new AudioCombineException("No fmt/data chunk found in the first "
+                    + MAX_HEADER_SCAN + " bytes of " + file);
+        }
+    }
+
+    /**
+     * Writes the canonical RIFF header for {@code format} followed by a data chunk of {@code dataLength} bytes.
+     */
+    public static ByteBuffer header(byte[] format, long dataLength) {
+        ByteBuffer header = ByteBuffer.allocate(12 + 8 + format.length + (format.length & 1) + 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long riffSize = header.capacity() - 8 + dataLength;
+        header.putInt(fourCC("RIFF"));
+        header.putInt((int) Math.min(riffSize, MAX_RIFF_SIZE));
+        header.putInt(fourCC("WAVE"));
+        header.putInt(fourCC("fmt "));
+        header.putInt(format.length);
+        header.put(format);
+        if ((format.length & 1) == 1) {
+            header.put((byte) 0);
+        }
+        header.putInt(fourCC("data"));
+        header.putInt((int) Math.min(dataLength, MAX_RIFF_SIZE));
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Combines {@code segments} into {@code output}.
+     *
+     * @throws AudioCombineException if a segment is not WAV or the formats differ; nothing is written then
+     */
+    public Path combine(List<Path> segments, Path output) throws IOException {
+        if (segments == null || segments.isEmpty()) {
+            throw new IllegalArgumentException("Segments cannot be null or empty");
+        }
+
+        List<WavInfo> infos = new ArrayList<>(segments.size());
+        long dataLength = 0;
+        for (Path segment : segments) {
+            if (!isWav(segment)) {
+                throw new AudioCombineException("Unsupported segment format: " + segment.getFileName());
+            }
+            WavInfo info = readInfo(segment);
+            if (!infos.isEmpty() && !info.isCompatibleWith(infos.get(0))) {
+                throw new AudioCombineException("Segment " + segment.getFileName() + " has a different audio format");
+            }
+            infos.add(info);
+            dataLength += info.getDataLength();
+        }
+        ByteBuffer header = header(infos.get(0).getFormat(), dataLength);
+        if (header.remaining() - 8 + dataLength > MAX_RIFF_SIZE) {
+            throw new AudioCombineException("Combined audio exceeds the 4GB WAV limit");
+        }
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Path tempFile = Files.createTempFile(output.toAbsolutePath().getParent(), "combine-", ".tmp");
+        try {
+            try (FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    target.write(header);
+                }
+                for (int i = 0; i < segments.size(); i++) {
+                    transfer(segments.get(i), infos.get(i), target);
+                }
+                target.force(false);
+            }
+            Files.move(tempFile, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        logger.info("Combined {} WAV segments into {} ({} bytes of audio)", segments.size(), output, dataLength);
+        return output;
+    }
+
+    private static void transfer(Path segment, WavInfo info, FileChannel target) throws IOException {
+        try (FileChannel source = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long position = info.getDataOffset();
+            long remaining = info.getDataLength();
+            while (remaining > 0) {
+                long transferred = source.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("Segment ended early: " + segment);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    private static int fourCC(String id) {
+        return (id.charAt(0) & 0xFF)
+                | (id.charAt(1) & 0xFF) << 8
+                | (id.charAt(2) & 0xFF) << 16
+                | (id.charAt(3) & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,42 @@
+package fenix.aw.reader.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudiobookStreamConfigTest {
+
+    private final AudiobookStreamConfig.StreamTimeoutInterceptor interceptor =
+            new AudiobookStreamConfig.StreamTimeoutInterceptor(Duration.ofHours(6));
+
+    @Test
+    void onlyStreamRequestsGetTheStreamTimeout() throws Exception {
+        MockHttpServletRequest streamRequest = new MockHttpServletRequest();
+        streamRequest.setAsyncSupported(true);
+        streamRequest.setAttribute(AudiobookStreamConfig.STREAM_REQUEST, Boolean.TRUE);
+        StandardServletAsyncWebRequest stream = asyncRequest(streamRequest);
+        MockHttpServletRequest otherRequest = new MockHttpServletRequest();
+        otherRequest.setAsyncSupported(true);
+        StandardServletAsyncWebRequest other = asyncRequest(otherRequest);
+
+        interceptor.beforeConcurrentHandling(stream, () -> null);
+        interceptor.beforeConcurrentHandling(other, () -> null);
+        stream.startAsync();
+        other.startAsync();
+
+        assertEquals(Duration.ofHours(6).toMillis(), streamRequest.getAsyncContext().getTimeout());
+        assertEquals(30_000, otherRequest.getAsyncContext().getTimeout());
+    }
+
+    private static StandardServletAsyncWebRequest asyncRequest(MockHttpServletRequest request) {
+        StandardServletAsyncWebRequest asyncRequest =
+                new StandardServletAsyncWebRequest(request, new MockHttpServletResponse());
+        asyncRequest.setTimeout(30_000L);
+        return asyncRequest;
+    }
+}
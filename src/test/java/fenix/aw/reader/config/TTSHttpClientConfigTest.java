@@ -0,0 +1,26 @@
+package fenix.aw.reader.config;
+
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TTSHttpClientConfigTest {
+
+    private static final TimeValue CONFIGURED = TimeValue.ofSeconds(30);
+
+    @Test
+    void keepsConnectionsNoLongerThanTheServerDoes() {
+        assertEquals(TimeValue.ofSeconds(5), TTSHttpClientConfig.keepAlive(response("timeout=5, max=100"), CONFIGURED));
+        assertEquals(CONFIGURED, TTSHttpClientConfig.keepAlive(response("timeout=120"), CONFIGURED));
+        assertEquals(CONFIGURED, TTSHttpClientConfig.keepAlive(response("timeout=soon"), CONFIGURED));
+        assertEquals(CONFIGURED, TTSHttpClientConfig.keepAlive(new BasicHttpResponse(200), CONFIGURED));
+    }
+
+    private static BasicHttpResponse response(String keepAlive) {
+        BasicHttpResponse response = new BasicHttpResponse(200);
+        response.addHeader("Keep-Alive", keepAlive);
+        return response;
+    }
+}
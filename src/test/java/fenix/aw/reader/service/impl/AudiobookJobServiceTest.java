@@ -0,0 +1,295 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.model.ChunkCheckpoint;
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.DocumentStatus;
+import fenix.aw.reader.repository.ChunkCheckpointRepository;
+import fenix.aw.reader.repository.DocumentRepository;
+import fenix.aw.reader.service.AudiobookStream;
+import fenix.aw.reader.service.IFileCatalogService;
+import fenix.aw.reader.service.ISearchService;
+import fenix.aw.reader.service.IStorageService;
+import fenix.aw.reader.service.TTSCheckpointStore;
+import fenix.aw.reader.service.TTSProgressListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives jobs through the service against in-memory repositories and a stubbed TTS client.
+ */
+class AudiobookJobServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    private final List<DocumentStatus> statuses = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong ids = new AtomicLong();
+
+    private ChunkCheckpointRepository checkpointRepository;
+    private IStorageService storage;
+    private TTSClientService tts;
+    private AudiobookJobService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path pdf = Files.write(directory.resolve("book.pdf"), new byte[1000]);
+
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> {
+            Document document = invocation.getArgument(0);
+            if (document.getId() == 0) {
+                document.setId(ids.incrementAndGet());
+            }
+            statuses.add(document.getStatus());
+            documents.put(document.getId(), document);
+            return document;
+        });
+        when(documentRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(documents.get(invocation.<Long>getArgument(0))));
+        when(documentRepository.findByContentDigestAndStatusInOrderByCreatedAtDesc(anyString(), any()))
+                .thenAnswer(invocation -> documents.values().stream()
+                        .filter(document -> invocation.getArgument(0).equals(document.getContentDigest()))
+                        .filter(document -> invocation.<Collection<?>>getArgument(1).contains(document.getStatus()))
+                        .toList());
+        doAnswer(invocation -> documents.remove(invocation.<Long>getArgument(0)))
+                .when(documentRepository).deleteById(anyLong());
+
+        checkpointRepository = mock(ChunkCheckpointRepository.class);
+        when(checkpointRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        storage = mock(IStorageService.class);
+        when(storage.getDigest("book.pdf")).thenReturn(Optional.of("digest"));
+        when(storage.load("book.pdf")).thenReturn(pdf);
+
+        tts = mock(TTSClientService.class);
+        service = new AudiobookJobService(documentRepository, checkpointRepository, storage, tts,
+                mock(IFileCatalogService.class), mock(ISearchService.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "jobPoolSize", 1);
+        ReflectionTestUtils.setField(service, "maxQueuedJobs", 10);
+        ReflectionTestUtils.setField(service, "maxOutstandingCharacters", 1_000_000L);
+        ReflectionTestUtils.setField(service, "charactersPerByte", 0.5);
+        ReflectionTestUtils.setField(service, "throughputWindowSeconds", 60L);
+        ReflectionTestUtils.setField(service, "defaultRetryAfterSeconds", 10L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void completesJobThroughEveryStage() throws Exception {
+        Path segment = Files.write(directory.resolve("0.wav"), new byte[] {1, 2, 3});
+        when(tts.processFileForTTS(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            TTSProgressListener listener = invocation.getArgument(1);
+            listener.onExtractionComplete(1);
+            listener.onSegmentsReady(List.of(segment.toString()));
+            listener.onChunksSynthesized(1);
+            return List.of(segment.toString());
+        });
+        when(tts.combineAudioFiles(anyList(), eq("digest"))).thenReturn(segment.toString());
+
+        Document submitted = service.submit("book.pdf");
+        Document job = awaitTerminal(submitted.getId());
+
+        assertEquals(DocumentStatus.COMPLETED, job.getStatus());
+        assertEquals(segment.toString(), job.getOutputPath());
+        assertEquals(1, job.getTotalChunks());
+        assertEquals(List.of(DocumentStatus.QUEUED, DocumentStatus.EXTRACTING, DocumentStatus.SYNTHESIZING,
+                DocumentStatus.COMBINING, DocumentStatus.COMPLETED), dedupe(statuses));
+        assertEquals(0, service.getQueueStatus().runningJobs());
+        // The same content is served by the finished job
+        assertEquals(submitted.getId(), service.submit("book.pdf").getId());
+    }
+
+    @Test
+    void namesAudioAfterContentOrJobRatherThanUpload() throws Exception {
+        Path segment = Files.write(directory.resolve("0.wav"), new byte[] {1, 2, 3});
+        when(tts.processFileForTTS(anyString(), any(), any(), any())).thenReturn(List.of(segment.toString()));
+        when(tts.combineAudioFiles(anyList(), anyString()))
+                .thenAnswer(invocation -> directory.resolve(invocation.<String>getArgument(1) + ".wav").toString());
+
+        Document first = awaitTerminal(service.submit("book.pdf").getId());
+        // A different upload under the same name
+        when(storage.getDigest("book.pdf")).thenReturn(Optional.of("other"));
+        Document second = awaitTerminal(service.submit("book.pdf").getId());
+        when(storage.getDigest("book.pdf")).thenReturn(Optional.empty());
+        Document third = awaitTerminal(service.submit("book.pdf").getId());
+
+        assertEquals(directory.resolve("digest.wav").toString(), first.getOutputPath());
+        assertEquals(directory.resolve("other.wav").toString(), second.getOutputPath());
+        assertEquals(directory.resolve("job-" + third.getId() + ".wav").toString(), third.getOutputPath());
+    }
+
+    @Test
+    void checkpointsReuseOnlyUnchangedChunksWithTheirSegments() throws Exception {
+        Path kept = Files.write(directory.resolve("kept.wav"), new byte[] {1});
+        Path stale = Files.write(directory.resolve("stale.wav"), new byte[] {2});
+        when(checkpointRepository.findByDocumentId(anyLong())).thenReturn(List.of(
+                checkpoint(0, "key-0", kept), checkpoint(1, "key-1", directory.resolve("lost.wav")),
+                checkpoint(2, "old-key-2", stale)));
+        AtomicReference<TTSCheckpointStore> checkpoints = new AtomicReference<>();
+        when(tts.processFileForTTS(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            checkpoints.set(invocation.getArgument(2));
+            return List.of(kept.toString());
+        });
+        when(tts.combineAudioFiles(anyList(), anyString())).thenReturn(kept.toString());
+
+        awaitTerminal(service.submit("book.pdf").getId());
+        TTSCheckpointStore store = checkpoints.get();
+
+        assertEquals(Optional.of(kept.toString()), store.completedSegment(0, "key-0"));
+        // The segment file is gone
+        assertEquals(Optional.empty(), store.completedSegment(1, "key-1"));
+        // The chunk text changed since it was synthesized
+        assertEquals(Optional.empty(), store.completedSegment(2, "key-2"));
+        assertEquals(Optional.empty(), store.completedSegment(3, "key-3"));
+
+        // Re-synthesized chunks replace their checkpoints
+        Path fresh = Files.write(directory.resolve("fresh.wav"), new byte[] {3});
+        store.record(List.of(1, 2), List.of("key-1", "key-2"), List.of(fresh.toString(), fresh.toString()));
+        assertEquals(Optional.of(fresh.toString()), store.completedSegment(1, "key-1"));
+        assertEquals(Optional.of(fresh.toString()), store.completedSegment(2, "key-2"));
+    }
+
+    @Test
+    void recordsFailure() throws Exception {
+        when(tts.processFileForTTS(anyString(), any(), any(), any()))
+                .thenThrow(new RuntimeException("TTS service communication failed"));
+
+        Document job = awaitTerminal(service.submit("book.pdf").getId());
+
+        assertEquals(DocumentStatus.FAILED, job.getStatus());
+        assertEquals("TTS service communication failed", job.getErrorMessage());
+        assertEquals(0, service.getQueueStatus().outstandingCharacters());
+    }
+
+    @Test
+    void cancelStopsRunningJobAndRemovesIt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(tts.processFileForTTS(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(60_000);
+            return List.of();
+        });
+
+        long jobId = service.submit("book.pdf").getId();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        AudiobookStream stream = service.openStream(jobId).orElseThrow();
+
+        assertTrue(service.cancel(jobId));
+        assertTrue(service.getJob(jobId).isEmpty());
+        IOException listening = assertThrows(IOException.class, () -> stream.writeTo(new ByteArrayOutputStream()));
+        assertEquals("Audiobook job was cancelled", listening.getMessage());
+        assertEquals(0, service.getQueueStatus().runningJobs());
+        assertFalse(service.cancel(jobId));
+    }
+
+    @Test
+    void cancelWaitsForCheckpointWriteAndDeletesItsRows() throws Exception {
+        Path segment = Files.write(directory.resolve("0.wav"), new byte[] {1});
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        when(checkpointRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            saving.countDown();
+            assertTrue(saved.await(5, TimeUnit.SECONDS));
+            return invocation.getArgument(0);
+        });
+        AtomicReference<TTSCheckpointStore> checkpoints = new AtomicReference<>();
+        when(tts.processFileForTTS(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            checkpoints.set(invocation.getArgument(2));
+            checkpoints.get().record(List.of(0), List.of("key-0"), List.of(segment.toString()));
+            Thread.sleep(60_000);
+            return List.of();
+        });
+
+        long jobId = service.submit("book.pdf").getId();
+        assertTrue(saving.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> cancelling = CompletableFuture.supplyAsync(() -> service.cancel(jobId));
+
+        // The batch's rows are not yet written, so deleting now would leave them behind
+        assertThrows(TimeoutException.class, () -> cancelling.get(200, TimeUnit.MILLISECONDS));
+        verify(checkpointRepository, never()).deleteByDocumentId(jobId);
+        saved.countDown();
+        assertTrue(cancelling.get(5, TimeUnit.SECONDS));
+
+        InOrder order = inOrder(checkpointRepository);
+        order.verify(checkpointRepository).saveAll(anyList());
+        order.verify(checkpointRepository).deleteByDocumentId(jobId);
+        // A batch finishing after the cancel writes nothing
+        checkpoints.get().record(List.of(1), List.of("key-1"), List.of(segment.toString()));
+        verify(checkpointRepository, times(1)).saveAll(anyList());
+    }
+
+    private static ChunkCheckpoint checkpoint(int chunkIndex, String chunkKey, Path segment) {
+        ChunkCheckpoint checkpoint = new ChunkCheckpoint();
+        checkpoint.setChunkIndex(chunkIndex);
+        checkpoint.setChunkKey(chunkKey);
+        checkpoint.setSegmentPath(segment.toString());
+        return checkpoint;
+    }
+
+    private Document awaitTerminal(long jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            Document job = service.getJob(jobId).orElseThrow();
+            if (job.getStatus().isTerminal() && service.getQueueStatus().runningJobs() == 0) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        fail("Job " + jobId + " did not finish");
+        return null;
+    }
+
+    private static List<DocumentStatus> dedupe(List<DocumentStatus> statuses) {
+        List<DocumentStatus> stages = new ArrayList<>();
+        synchronized (statuses) {
+            for (DocumentStatus status : statuses) {
+                if (stages.isEmpty() || stages.get(stages.size() - 1) != status) {
+                    stages.add(status);
+                }
+            }
+        }
+        return stages;
+    }
+}
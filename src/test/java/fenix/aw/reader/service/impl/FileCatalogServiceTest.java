@@ -0,0 +1,119 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.model.CatalogItem;
+import fenix.aw.reader.model.CatalogPage;
+import fenix.aw.reader.model.CatalogQuery;
+import fenix.aw.reader.model.CatalogSort;
+import fenix.aw.reader.model.Document;
+import fenix.aw.reader.model.DocumentStatus;
+import fenix.aw.reader.repository.DocumentRepository;
+import fenix.aw.reader.util.StorageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileCatalogServiceTest {
+
+    @TempDir
+    Path root;
+
+    private StorageService storage;
+    private FileCatalogService catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StorageProperties properties = new StorageProperties();
+        properties.setLocation(root.toString());
+        storage = new StorageService(properties);
+        storage.init();
+        for (int i = 0; i < 7; i++) {
+            store("book-" + i + ".pdf", 1000 + (i % 4) * 100, i);
+        }
+
+        Document job = new Document();
+        job.setFileName("book-2.pdf");
+        job.setContentDigest(storage.getDigest("book-2.pdf").orElseThrow());
+        job.setStatus(DocumentStatus.COMPLETED);
+        DocumentRepository documents = mock(DocumentRepository.class);
+        when(documents.findAll(any(Sort.class))).thenReturn(List.of(job));
+
+        catalog = new FileCatalogService(storage, documents, properties);
+        catalog.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        catalog.stop();
+    }
+
+    @Test
+    void pagesThroughEveryFileInSizeOrder() {
+        List<String> names = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CatalogPage page = catalog.list(new CatalogQuery(cursor, 3, CatalogSort.SIZE, true,
+                    null, null, null, null, null), "http://localhost/files/");
+            page.items().forEach(item -> {
+                names.add(item.fileName());
+                sizes.add(item.size());
+            });
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(List.of("book-3.pdf", "book-6.pdf", "book-2.pdf", "book-5.pdf", "book-1.pdf",
+                "book-4.pdf", "book-0.pdf"), names);
+        assertEquals(List.of(1300L, 1200L, 1200L, 1100L, 1100L, 1000L, 1000L), sizes);
+    }
+
+    @Test
+    void filtersBySizeRangeAndJobStatus() {
+        CatalogPage range = catalog.list(new CatalogQuery(null, 10, CatalogSort.SIZE, false,
+                null, 1100L, 1200L, null, null), "/files/");
+        assertEquals(List.of("book-1.pdf", "book-5.pdf", "book-2.pdf", "book-6.pdf"),
+                range.items().stream().map(CatalogItem::fileName).toList());
+        assertNull(range.nextCursor());
+
+        CatalogPage completed = catalog.list(new CatalogQuery(null, 10, CatalogSort.NAME, false,
+                DocumentStatus.COMPLETED, null, null, null, null), "/files/");
+        assertEquals(1, completed.items().size());
+        assertEquals("/files/book-2.pdf", completed.items().get(0).url());
+    }
+
+    @Test
+    void seesNewUploadsAndRejectsCursorOfAnotherSort() throws Exception {
+        store("new book.pdf", 500, 99);
+
+        CatalogPage page = catalog.list(new CatalogQuery(null, 1, CatalogSort.SIZE, false,
+                null, null, null, null, null), "/files/");
+        assertEquals("new book.pdf", page.items().get(0).fileName());
+        assertEquals("/files/new%20book.pdf", page.items().get(0).url());
+        assertNotNull(page.items().get(0).digest());
+        assertThrows(IllegalArgumentException.class, () -> catalog.list(new CatalogQuery(page.nextCursor(), 1,
+                CatalogSort.NAME, false, null, null, null, null, null), "/files/"));
+    }
+
+    private void store(String name, int size, int seed) throws Exception {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) ('a' + seed));
+        System.arraycopy("%PDF-1.7".getBytes(StandardCharsets.US_ASCII), 0, content, 0, 8);
+        storage.store(name, new ByteArrayInputStream(content), size);
+    }
+}
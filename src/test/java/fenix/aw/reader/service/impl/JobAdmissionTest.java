@@ -0,0 +1,46 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.Exception.JobQueueFullException;
+import fenix.aw.reader.model.JobQueueStatus;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobAdmissionTest {
+
+    @Test
+    void refusesJobsBeyondQueueDepthWithDefaultRetryBeforeAnyProgress() {
+        JobAdmission admission = new JobAdmission(1, 1, 1_000_000, 60, 7);
+        admission.admit(1000).started();
+        admission.admit(1000);
+
+        JobQueueFullException full = assertThrows(JobQueueFullException.class, () -> admission.admit(1000));
+        assertEquals(7, full.getRetryAfterSeconds());
+        JobQueueStatus status = admission.status();
+        assertEquals(1, status.runningJobs());
+        assertEquals(1, status.queuedJobs());
+        assertNull(status.estimatedWaitSeconds());
+    }
+
+    @Test
+    void retryAfterFollowsThroughputAndFreedCapacityAdmitsAgain() {
+        JobAdmission admission = new JobAdmission(2, 10, 10_000, 60, 7);
+        JobAdmission.Ticket first = admission.admit(6_000);
+        first.started();
+        first.extracted(8_000);
+        // Measured over at least a second: 2000 characters per second
+        first.synthesized(2_000);
+
+        JobQueueFullException full = assertThrows(JobQueueFullException.class, () -> admission.admit(8_000));
+        // 6000 outstanding + 8000 - 10000 = 4000 characters over, at 2000 per second
+        assertEquals(2, full.getRetryAfterSeconds());
+        assertEquals(6_000, admission.outstandingCharacters());
+        assertEquals(0, admission.status().estimatedWaitSeconds());
+
+        first.close();
+        first.close();
+        // Larger than the whole limit, but nothing else is outstanding
+        admission.admit(20_000).close();
+        assertEquals(0, admission.outstandingCharacters());
+    }
+}
@@ -0,0 +1,70 @@
+package fenix.aw.reader.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinearSynthesisCostModelTest {
+
+    @Test
+    void keepsInitialTermsUntilEnoughObservations() {
+        LinearSynthesisCostModel model = new LinearSynthesisCostModel(200, 4);
+        for (int i = 0; i < 4; i++) {
+            model.observe(100 * (i + 1), 10_000);
+        }
+
+        assertEquals(600, model.estimateMillis(100), 1e-9);
+    }
+
+    @Test
+    void convergesOnSyntheticLatencies() {
+        LinearSynthesisCostModel model = new LinearSynthesisCostModel(200, 4);
+        Random random = new Random(42);
+        feed(model, random, 300, 2, 200);
+
+        assertEquals(300, model.estimateMillis(0), 15);
+        assertEquals(300 + 2 * 1000, model.estimateMillis(1000), 30);
+
+        // The backend gets faster: older observations decay away
+        feed(model, random, 500, 1, 300);
+
+        assertEquals(500, model.estimateMillis(0), 25);
+        assertEquals(500 + 1000, model.estimateMillis(1000), 30);
+    }
+
+    @Test
+    void batchesOfOneSizeStillCalibrateThatSize() {
+        LinearSynthesisCostModel model = new LinearSynthesisCostModel(200, 4);
+        for (int i = 0; i < 20; i++) {
+            model.observe(500, 1200);
+        }
+
+        assertEquals(1200, model.estimateMillis(500), 1e-6);
+    }
+
+    @Test
+    void ignoresEmptyBatchesAndNegativeLatencies() {
+        LinearSynthesisCostModel model = new LinearSynthesisCostModel(200, 4);
+        for (int i = 0; i < 10; i++) {
+            model.observe(0, 50);
+            model.observe(100, -1);
+        }
+
+        assertEquals(600, model.estimateMillis(100), 1e-9);
+    }
+
+    /**
+     * Observes {@code count} batches of 100 to 2000 characters taking {@code overhead + perChar * characters}
+     * milliseconds, with up to 5% noise either way.
+     */
+    private static void feed(LinearSynthesisCostModel model, Random random, double overhead, double perChar,
+                             int count) {
+        for (int i = 0; i < count; i++) {
+            int characters = 100 + random.nextInt(1900);
+            double latency = (overhead + perChar * characters) * (0.95 + 0.1 * random.nextDouble());
+            model.observe(characters, Math.round(latency));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package fenix.aw.reader.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressiveAudioTest {
+
+    private static final int HEADER_LENGTH = 44;
+
+    @TempDir
+    Path directory;
+
+    private final ExecutorService listener = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        listener.shutdownNow();
+    }
+
+    @Test
+    void streamsSegmentsInOrderUnderOneHeader() throws Exception {
+        byte[] first = samples(100, (byte) 1);
+        byte[] second = samples(50, (byte) 2);
+        byte[] third = samples(75, (byte) 3);
+        ProgressiveAudio audio = new ProgressiveAudio();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Future<?> streaming = listener.submit(() -> {
+            audio.writeTo(out);
+            return null;
+        });
+
+        audio.addSegments(List.of(writeWav("0.wav", first)));
+        // The first segment is sent before the next one exists
+        awaitSize(out, HEADER_LENGTH + first.length);
+        audio.addSegments(List.of(writeWav("1.wav", second), writeWav("2.wav", third)));
+        audio.finish();
+        streaming.get(5, TimeUnit.SECONDS);
+
+        byte[] body = out.toByteArray();
+        assertEquals("RIFF", new String(body, 0, 4, StandardCharsets.US_ASCII));
+        ByteBuffer header = ByteBuffer.wrap(body, 0, HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0xFFFFFFFF, header.getInt(40), "data length is left open");
+        assertArrayEquals(concat(first, second, third), Arrays.copyOfRange(body, HEADER_LENGTH, body.length));
+    }
+
+    @Test
+    void endsStreamWithErrorWhenJobFails() throws Exception {
+        byte[] first = samples(100, (byte) 1);
+        ProgressiveAudio audio = new ProgressiveAudio();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Future<?> streaming = listener.submit(() -> {
+            audio.writeTo(out);
+            return null;
+        });
+
+        audio.addSegments(List.of(writeWav("0.wav", first)));
+        awaitSize(out, HEADER_LENGTH + first.length);
+        audio.fail("TTS service communication failed");
+
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> streaming.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, failed.getCause());
+        assertEquals("TTS service communication failed", failed.getCause().getMessage());
+        assertEquals(HEADER_LENGTH + first.length, out.size());
+        // Later listeners still get what was synthesized before the failure, then the same error
+        ByteArrayOutputStream late = new ByteArrayOutputStream();
+        assertThrows(IOException.class, () -> audio.writeTo(late));
+        assertArrayEquals(out.toByteArray(), late.toByteArray());
+    }
+
+    @Test
+    void endsStreamBeforeSegmentWithDifferentFormat() throws Exception {
+        byte[] first = samples(100, (byte) 1);
+        ProgressiveAudio audio = new ProgressiveAudio();
+        audio.addSegments(List.of(writeWav("0.wav", first), writeWav("1.wav", samples(100, (byte) 2), 44100f),
+                writeWav("2.wav", samples(100, (byte) 3))));
+        audio.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        IOException mismatch = assertThrows(IOException.class, () -> audio.writeTo(out));
+
+        assertTrue(mismatch.getMessage().startsWith("Segment 1 has a different audio format"), mismatch.getMessage());
+        // Nothing of the mismatched segment or anything after it was written
+        assertEquals(HEADER_LENGTH + first.length, out.size());
+    }
+
+    @Test
+    void releasesListenerWhenCancelledOrInterrupted() throws Exception {
+        ProgressiveAudio cancelled = new ProgressiveAudio();
+        Future<?> waiting = listener.submit(() -> {
+            cancelled.writeTo(new ByteArrayOutputStream());
+            return null;
+        });
+        Thread.sleep(100);
+        cancelled.fail("Audiobook job was cancelled");
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertEquals("Audiobook job was cancelled", failed.getCause().getMessage());
+
+        // A timed out stream request interrupts the thread it holds
+        ProgressiveAudio running = new ProgressiveAudio();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                running.writeTo(new ByteArrayOutputStream());
+            } catch (Throwable ex) {
+                error.set(ex);
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        thread.interrupt();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertInstanceOf(InterruptedIOException.class, error.get());
+    }
+
+    @Test
+    void finishedStreamWithoutSegmentsIsEmpty() throws Exception {
+        ProgressiveAudio audio = new ProgressiveAudio();
+        audio.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        audio.writeTo(out);
+
+        assertEquals(0, out.size());
+        assertEquals("audio/wav", audio.getContentType());
+    }
+
+    private static void awaitSize(ByteArrayOutputStream out, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (out.size() < size) {
+            if (System.nanoTime() > deadline) {
+                fail("Stream has " + out.size() + " bytes, expected " + size);
+            }
+            Thread.sleep(10);
+        }
+        // Nothing beyond what was available yet
+        assertEquals(size, out.size());
+    }
+
+    private static byte[] samples(int count, byte value) {
+        byte[] data = new byte[count * 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (value + i % 7);
+        }
+        return data;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private String writeWav(String name, byte[] data) throws IOException {
+        return writeWav(name, data, 22050f);
+    }
+
+    private String writeWav(String name, byte[] data, float sampleRate) throws IOException {
+        AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, false);
+        Path file = directory.resolve(name);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data), format, data.length / 2)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file.toFile());
+        }
+        return file.toString();
+    }
+}
@@ -0,0 +1,222 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.Exception.InvalidUploadException;
+import fenix.aw.reader.Exception.StorageFileNotFoundException;
+import fenix.aw.reader.Exception.UploadOffsetMismatchException;
+import fenix.aw.reader.Exception.UploadTooLargeException;
+import fenix.aw.reader.model.UploadSession;
+import fenix.aw.reader.util.StorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageServiceTest {
+
+    @TempDir
+    Path root;
+
+    private StorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setLocation(root.toString());
+        properties.setMaxFileSize(DataSize.ofKilobytes(64));
+        storage = new StorageService(properties);
+        storage.init();
+    }
+
+    @Test
+    void streamsPdfIntoStorage() throws Exception {
+        byte[] pdf = pdf(10_000);
+
+        String digest = storage.store("book.pdf", new ByteArrayInputStream(pdf), pdf.length);
+
+        assertEquals(sha256(pdf), digest);
+        assertArrayEquals(pdf, Files.readAllBytes(root.resolve("book.pdf")));
+        assertEquals(digest, storage.getDigest("book.pdf").orElseThrow());
+    }
+
+    @Test
+    void rejectsContentThatIsNotPdf() {
+        byte[] html = "<html>not a pdf</html>".getBytes(StandardCharsets.US_ASCII);
+
+        assertThrows(InvalidUploadException.class,
+                () -> storage.store("book.pdf", new ByteArrayInputStream(html), -1));
+        assertFalse(Files.exists(root.resolve("book.pdf")));
+    }
+
+    @Test
+    void rejectsOversizedStreamWithoutContentLength() {
+        byte[] pdf = pdf(100_000);
+
+        assertThrows(UploadTooLargeException.class,
+                () -> storage.store("book.pdf", new ByteArrayInputStream(pdf), -1));
+        assertFalse(Files.exists(root.resolve("book.pdf")));
+    }
+
+    @Test
+    void resumableUploadCompletesFromChunksAcrossRestart() throws Exception {
+        byte[] pdf = pdf(30_000);
+        String uploadId = storage.createUpload("scan.pdf", pdf.length).id();
+
+        assertEquals(3, storage.appendUpload(uploadId, 0, chunk(pdf, 0, 3)).offset());
+        // A repeated chunk is refused with the offset to resume from
+        UploadOffsetMismatchException mismatch = assertThrows(UploadOffsetMismatchException.class,
+                () -> storage.appendUpload(uploadId, 0, chunk(pdf, 0, 3)));
+        assertEquals(3, mismatch.getExpectedOffset());
+        assertFalse(storage.appendUpload(uploadId, 3, chunk(pdf, 3, 20_000)).complete());
+
+        // A new instance only has what is on disk
+        setUp();
+        assertEquals(20_000, storage.getUpload(uploadId).offset());
+        UploadSession upload = storage.appendUpload(uploadId, 20_000, chunk(pdf, 20_000, pdf.length));
+
+        assertTrue(upload.complete());
+        assertEquals(sha256(pdf), upload.digest());
+        assertArrayEquals(pdf, Files.readAllBytes(root.resolve("scan.pdf")));
+        assertEquals(0, Files.list(root.resolve(".uploads")).count());
+    }
+
+    @Test
+    void resumableUploadOfNonPdfIsDiscarded() {
+        byte[] html = "<html>not a pdf</html>".getBytes(StandardCharsets.US_ASCII);
+        String uploadId = storage.createUpload("scan.pdf", html.length).id();
+
+        assertThrows(InvalidUploadException.class, () -> storage.appendUpload(uploadId, 0, chunk(html, 0, html.length)));
+        assertThrows(StorageFileNotFoundException.class, () -> storage.getUpload(uploadId));
+    }
+
+    @Test
+    void concurrentUploadsOfTheSameContentShareOneObject() throws Exception {
+        byte[] pdf = pdf(20_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> uploads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String name = "copy-" + i + ".pdf";
+                uploads.add(executor.submit(() -> {
+                    start.await();
+                    return storage.store(name, new ByteArrayInputStream(pdf), pdf.length);
+                }));
+            }
+            start.countDown();
+            for (Future<String> upload : uploads) {
+                assertEquals(sha256(pdf), upload.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        try (Stream<Path> objects = Files.list(root.resolve(".objects"))) {
+            assertEquals(List.of(sha256(pdf) + ".pdf"), objects.map(path -> path.getFileName().toString()).toList());
+        }
+    }
+
+    @Test
+    void aliasesSurviveRestartFromTheJournal() throws Exception {
+        Files.writeString(root.resolve(".aliases.properties"), "old.pdf=0123\n");
+        storage = restart();
+        byte[] first = pdf(1_000);
+        byte[] second = pdf(2_000);
+        storage.store("my\tbook.pdf", new ByteArrayInputStream(first), first.length);
+        storage.store("other.pdf", new ByteArrayInputStream(first), first.length);
+        storage.store("my\tbook.pdf", new ByteArrayInputStream(second), second.length);
+
+        Path journal = root.resolve(".aliases.journal");
+        // The legacy entry, then one line per store
+        assertEquals(4, Files.readAllLines(journal).size());
+
+        storage = restart();
+        assertEquals(sha256(second), storage.getDigest("my\tbook.pdf").orElseThrow());
+        assertEquals(sha256(first), storage.getDigest("other.pdf").orElseThrow());
+        assertEquals("0123", storage.getDigest("old.pdf").orElseThrow());
+        assertEquals(3, Files.readAllLines(journal).size());
+        assertFalse(Files.exists(root.resolve(".aliases.properties")));
+    }
+
+    @Test
+    void objectIsDeletedWithItsLastAlias() throws Exception {
+        byte[] first = pdf(1_000);
+        byte[] second = pdf(2_000);
+        storage.store("a.pdf", new ByteArrayInputStream(first), first.length);
+        storage.store("b.pdf", new ByteArrayInputStream(first), first.length);
+        storage.store("c.pdf", new ByteArrayInputStream(second), second.length);
+
+        // Overwriting one of two aliases keeps the shared object
+        storage.store("a.pdf", new ByteArrayInputStream(second), second.length);
+        assertEquals(Stream.of(sha256(first), sha256(second)).sorted().toList(), objects());
+        assertArrayEquals(first, Files.readAllBytes(root.resolve("b.pdf")));
+
+        assertTrue(storage.delete("b.pdf"));
+        assertEquals(List.of(sha256(second)), objects());
+        assertFalse(Files.exists(root.resolve("b.pdf")));
+        assertTrue(storage.getDigest("b.pdf").isEmpty());
+        assertFalse(storage.delete("b.pdf"));
+
+        storage.delete("a.pdf");
+        assertEquals(List.of(sha256(second)), objects());
+        assertArrayEquals(second, Files.readAllBytes(root.resolve("c.pdf")));
+
+        // The deletes are replayed from the journal, and objects nothing refers to are dropped
+        Files.write(root.resolve(".objects").resolve(sha256(first) + ".pdf"), first);
+        storage = restart();
+        assertEquals(List.of(sha256(second)), objects());
+        assertTrue(storage.getDigest("a.pdf").isEmpty());
+        storage.delete("c.pdf");
+        assertEquals(List.of(), objects());
+    }
+
+    private StorageService restart() {
+        StorageProperties properties = new StorageProperties();
+        properties.setLocation(root.toString());
+        properties.setMaxFileSize(DataSize.ofKilobytes(64));
+        StorageService restarted = new StorageService(properties);
+        restarted.init();
+        return restarted;
+    }
+
+    private List<String> objects() throws Exception {
+        try (Stream<Path> objects = Files.list(root.resolve(".objects"))) {
+            return objects.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".pdf"))
+                    .map(name -> name.substring(0, name.length() - 4))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static ByteArrayInputStream chunk(byte[] content, int from, int to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(content, from, to));
+    }
+
+    private static byte[] pdf(int size) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) 'x');
+        System.arraycopy("%PDF-1.7".getBytes(StandardCharsets.US_ASCII), 0, content, 0, 8);
+        return content;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
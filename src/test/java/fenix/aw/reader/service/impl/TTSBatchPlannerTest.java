@@ -0,0 +1,78 @@
+package fenix.aw.reader.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TTSBatchPlannerTest {
+
+    // 100 ms per request plus 1 ms per character
+    private final LinearSynthesisCostModel costModel = new LinearSynthesisCostModel(100, 1);
+
+    @Test
+    void closesBatchBeforeItExceedsTarget() {
+        TTSBatchPlanner planner = new TTSBatchPlanner(costModel, 400, 16);
+
+        // Three chunks cost exactly the target, a fourth would exceed it
+        List<List<String>> batches = planner.plan(List.of(text('a', 100), text('b', 100), text('c', 100),
+                text('d', 100), text('e', 100)));
+
+        assertEquals(List.of(List.of(text('a', 100), text('b', 100), text('c', 100)),
+                List.of(text('d', 100), text('e', 100))), batches);
+    }
+
+    @Test
+    void capsChunksPerBatch() {
+        TTSBatchPlanner planner = new TTSBatchPlanner(costModel, 10_000, 4);
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            chunks.add("chunk " + i);
+        }
+
+        List<List<String>> batches = planner.plan(chunks);
+
+        assertEquals(List.of(4, 4, 2), batches.stream().map(List::size).toList());
+        assertEquals(chunks, batches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void givesChunkOverBudgetItsOwnBatch() {
+        TTSBatchPlanner planner = new TTSBatchPlanner(costModel, 400, 16);
+
+        List<List<String>> batches = planner.plan(List.of(text('a', 100), text('b', 1000), text('c', 100)));
+
+        assertEquals(List.of(List.of(text('a', 100)), List.of(text('b', 1000)), List.of(text('c', 100))), batches);
+    }
+
+    @Test
+    void streamingMatchesPlanning() {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            chunks.add(text((char) ('a' + i % 26), 20 + (i * 37) % 180));
+        }
+        List<List<String>> planned = new TTSBatchPlanner(costModel, 500, 3).plan(chunks);
+
+        TTSBatchPlanner planner = new TTSBatchPlanner(costModel, 500, 3);
+        List<List<String>> streamed = new ArrayList<>();
+        for (String chunk : chunks) {
+            planner.add(chunk, streamed::add);
+        }
+        planner.flush(streamed::add);
+        planner.flush(streamed::add);
+
+        assertEquals(planned, streamed);
+    }
+
+    @Test
+    void rejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new TTSBatchPlanner(costModel, 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new TTSBatchPlanner(costModel, 400, 0));
+    }
+
+    private static String text(char letter, int length) {
+        return String.valueOf(letter).repeat(length);
+    }
+}
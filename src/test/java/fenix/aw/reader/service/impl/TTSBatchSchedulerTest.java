@@ -0,0 +1,120 @@
+package fenix.aw.reader.service.impl;
+
+import fenix.aw.reader.model.JobPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TTSBatchSchedulerTest {
+
+    private ExecutorService executor;
+    private TTSBatchScheduler scheduler;
+
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        // One batch at a time, so the dispatch order is the execution order
+        TTSConcurrencyLimiter limiter = new TTSConcurrencyLimiter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(limiter, "minConcurrency", 1);
+        ReflectionTestUtils.setField(limiter, "maxConcurrency", 1);
+        ReflectionTestUtils.setField(limiter, "initialConcurrency", 1);
+        ReflectionTestUtils.setField(limiter, "minRate", 1.0);
+        ReflectionTestUtils.setField(limiter, "maxRate", 1.0);
+        limiter.init();
+
+        executor = Executors.newCachedThreadPool();
+        scheduler = new TTSBatchScheduler(executor, limiter, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "quantumChars", 4000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void smallJobDoesNotWaitBehindLargeOne() throws Exception {
+        TTSBatchScheduler.Flow large = scheduler.openFlow("large", JobPriority.NORMAL);
+        TTSBatchScheduler.Flow small = scheduler.openFlow("small", JobPriority.NORMAL);
+
+        List<Future<String>> futures = new ArrayList<>();
+        futures.add(large.submit(1000, () -> {
+            gate.await();
+            return record("L0");
+        }));
+        for (int i = 1; i < 20; i++) {
+            String name = "L" + i;
+            futures.add(large.submit(1000, () -> record(name)));
+        }
+        futures.add(small.submit(500, () -> record("S0")));
+        futures.add(small.submit(500, () -> record("S1")));
+        gate.countDown();
+        awaitAll(futures);
+
+        assertEquals(22, order.size());
+        // The large flow finishes its current quantum, then the small one gets its turn
+        assertTrue(order.indexOf("S1") < 7, "small job ran at " + order);
+        assertEquals(0, scheduler.getQueuedBatches());
+    }
+
+    @Test
+    void higherPriorityClassRunsFirst() throws Exception {
+        TTSBatchScheduler.Flow bulk = scheduler.openFlow("bulk", JobPriority.BULK);
+        TTSBatchScheduler.Flow interactive = scheduler.openFlow("interactive", JobPriority.INTERACTIVE);
+
+        List<Future<String>> futures = new ArrayList<>();
+        futures.add(bulk.submit(100, () -> {
+            gate.await();
+            return record("B0");
+        }));
+        futures.add(bulk.submit(100, () -> record("B1")));
+        futures.add(interactive.submit(100, () -> record("I0")));
+        gate.countDown();
+        awaitAll(futures);
+
+        assertEquals(List.of("B0", "I0", "B1"), order);
+    }
+
+    @Test
+    void closingFlowDropsQueuedBatches() throws Exception {
+        TTSBatchScheduler.Flow flow = scheduler.openFlow("cancelled", JobPriority.NORMAL);
+        Future<String> running = flow.submit(100, () -> {
+            gate.await();
+            return record("R");
+        });
+        Future<String> queued = flow.submit(100, () -> record("Q"));
+
+        flow.close();
+        gate.countDown();
+        running.get(5, TimeUnit.SECONDS);
+
+        assertTrue(queued.isCancelled());
+        assertEquals(List.of("R"), order);
+    }
+
+    private String record(String name) {
+        order.add(name);
+        return name;
+    }
+
+    private static void awaitAll(List<Future<String>> futures) throws Exception {
+        for (Future<String> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package fenix.aw.reader.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TTSChunkCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<TTSChunkCache> caches = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(TTSChunkCache::close);
+    }
+
+    @Test
+    void replaysAndCompactsJournal() throws Exception {
+        TTSChunkCache cache = open(1024);
+        Path one = audio("one.wav", 10);
+        Path two = audio("two.wav", 20);
+        Path gone = audio("gone.wav", 30);
+        cache.put(cache.keyFor("one"), one.toString());
+        cache.put(cache.keyFor("two"), two.toString());
+        cache.put(cache.keyFor("one"), one.toString());
+        cache.put(cache.keyFor("gone"), gone.toString());
+        // The job's file is not needed once cached, but losing the cache's own copy is a miss that is journaled
+        Files.delete(gone);
+        assertTrue(cache.get(cache.keyFor("gone")).isPresent());
+        Files.delete(directory.resolve("cache").resolve("audio").resolve(cache.keyFor("gone") + ".wav"));
+        assertEquals(Optional.empty(), cache.get(cache.keyFor("gone")));
+        cache.close();
+
+        Path journal = directory.resolve("cache").resolve("index.journal");
+        assertEquals(5, Files.readAllLines(journal).size());
+        // Torn write of a crash
+        Files.writeString(journal, "PUT\tabc", StandardOpenOption.APPEND);
+
+        TTSChunkCache reopened = open(1024);
+        assertEquals(2, reopened.size());
+        assertSameAudio(one, reopened.get(reopened.keyFor("one")));
+        assertSameAudio(two, reopened.get(reopened.keyFor("  two ")));
+        assertEquals(Optional.empty(), reopened.get(reopened.keyFor("gone")));
+        assertEquals(2, Files.readAllLines(journal).size());
+    }
+
+    @Test
+    void evictionDeletesCachedAudioButNotFilesHandedOut() throws Exception {
+        TTSChunkCache cache = open(1);
+        Path first = audio("first.wav", 400 * 1024);
+        Path second = audio("second.wav", 400 * 1024);
+        Path third = audio("third.wav", 400 * 1024);
+        cache.put(cache.keyFor("first"), first.toString());
+        Path firstHit = Path.of(cache.get(cache.keyFor("first")).orElseThrow());
+        cache.put(cache.keyFor("second"), second.toString());
+        cache.put(cache.keyFor("third"), third.toString());
+
+        // Over 1 MB: the least recently used entry and its cached audio go
+        assertEquals(2, cache.size());
+        assertEquals(Optional.empty(), cache.get(cache.keyFor("first")));
+        assertEquals(2, cachedAudio().size());
+        assertTrue(cachedAudioBytes() <= 1024 * 1024);
+        // Files of the job that synthesized it and of the job that hit it are theirs
+        assertTrue(Files.exists(first));
+        assertSameAudio(first, Optional.of(firstHit.toString()));
+
+        // Lookups count as use
+        cache.get(cache.keyFor("second"));
+        cache.put(cache.keyFor("fourth"), audio("fourth.wav", 400 * 1024).toString());
+        assertEquals(Optional.empty(), cache.get(cache.keyFor("third")));
+        assertSameAudio(second, cache.get(cache.keyFor("second")));
+        assertEquals(2, cachedAudio().size());
+        cache.close();
+
+        // Audio nothing in the index refers to is removed on startup
+        Files.write(directory.resolve("cache").resolve("audio").resolve("orphan.wav"), new byte[10]);
+        TTSChunkCache reopened = open(1);
+        assertEquals(2, reopened.size());
+        assertEquals(Optional.empty(), reopened.get(reopened.keyFor("first")));
+        assertEquals(2, cachedAudio().size());
+    }
+
+    private TTSChunkCache open(long maxSizeMb) {
+        TTSChunkCache cache = new TTSChunkCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", directory.resolve("cache").toString());
+        ReflectionTestUtils.setField(cache, "maxSizeMb", maxSizeMb);
+        ReflectionTestUtils.setField(cache, "maxAgeDays", 30L);
+        ReflectionTestUtils.setField(cache, "namespace", "");
+        ReflectionTestUtils.setField(cache, "pythonTTSUrl", "stub");
+        ReflectionTestUtils.setField(cache, "audioTempDir", directory.resolve("hits").toString());
+        cache.init();
+        caches.add(cache);
+        return cache;
+    }
+
+    private Path audio(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) name.hashCode());
+        return Files.write(directory.resolve(name), data);
+    }
+
+    private List<Path> cachedAudio() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("cache").resolve("audio"))) {
+            return files.toList();
+        }
+    }
+
+    private long cachedAudioBytes() throws IOException {
+        long bytes = 0;
+        for (Path file : cachedAudio()) {
+            bytes += Files.size(file);
+        }
+        return bytes;
+    }
+
+    private static void assertSameAudio(Path expected, Optional<String> actual) throws IOException {
+        assertTrue(actual.isPresent());
+        assertNotEquals(expected.toString(), actual.get());
+        assertEquals(-1, Files.mismatch(expected, Path.of(actual.get())));
+    }
+}
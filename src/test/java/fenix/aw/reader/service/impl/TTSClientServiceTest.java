@@ -0,0 +1,398 @@
+package fenix.aw.reader.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import fenix.aw.reader.model.JobPriority;
+import fenix.aw.reader.model.TTSBatchRequest;
+import fenix.aw.reader.service.SynthesisCostModel;
+import fenix.aw.reader.service.TTSCheckpointStore;
+import fenix.aw.reader.service.TTSProgressListener;
+import fenix.aw.reader.util.PDFChunk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs batches against a local stub TTS service that injects faults and latency per request.
+ */
+class TTSClientServiceTest {
+
+    private static final int SLOW = -1;
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+    private ExecutorService hedgeExecutor;
+    private TTSChunkCache cache;
+    private TTSConcurrencyLimiter limiter;
+    private TTSClientService service;
+    // Texts of every request to /tts-echo, which answers with one new file per text
+    private final List<List<String>> echoed = Collections.synchronizedList(new ArrayList<>());
+    // Numbers the files of each /tts-echo request; never reset, so every answer gets fresh paths
+    private final AtomicInteger echoRequests = new AtomicInteger();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    // Requests wait for this latch while it is set
+    private volatile CountDownLatch gate;
+    // Maps the 1-based request number to the HTTP status to answer, or SLOW
+    private volatile IntUnaryOperator behaviour = request -> 200;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/tts", exchange -> {
+            int status = behaviour.applyAsInt(requests.incrementAndGet());
+            exchange.getRequestBody().readAllBytes();
+            CountDownLatch requestGate = gate;
+            if (requestGate != null) {
+                try {
+                    requestGate.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (status == SLOW) {
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                status = 200;
+            }
+            byte[] body = (status == 200 ? "{\"file_paths\":[\"a.wav\",\"b.wav\"]}" : "{}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/tts-echo", exchange -> {
+            List<String> texts = new ObjectMapper().readValue(exchange.getRequestBody(), TTSBatchRequest.class).text();
+            echoed.add(texts);
+            int request = echoRequests.incrementAndGet();
+            List<String> paths = new ArrayList<>();
+            for (String text : texts) {
+                paths.add(Files.writeString(directory.resolve(text + "-" + request + ".wav"), text).toString());
+            }
+            byte[] body = new ObjectMapper().writeValueAsBytes(Map.of("file_paths", paths));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        limiter = new TTSConcurrencyLimiter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(limiter, "minConcurrency", 1);
+        ReflectionTestUtils.setField(limiter, "maxConcurrency", 10);
+        ReflectionTestUtils.setField(limiter, "initialConcurrency", 10);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(limiter, "latencyTolerance", 1000.0);
+        ReflectionTestUtils.setField(limiter, "minRate", 100.0);
+        ReflectionTestUtils.setField(limiter, "maxRate", 1000.0);
+        limiter.init();
+
+        SynthesisCostModel costModel = new SynthesisCostModel() {
+            @Override
+            public double estimateMillis(int characters) {
+                return 100;
+            }
+
+            @Override
+            public void observe(int characters, long latencyMillis) {
+            }
+        };
+
+        // Disabled unless a test turns it on; keys chunks either way
+        cache = new TTSChunkCache();
+        ReflectionTestUtils.setField(cache, "pythonTTSUrl", "stub");
+        ReflectionTestUtils.setField(cache, "namespace", "");
+
+        hedgeExecutor = Executors.newCachedThreadPool();
+        service = new TTSClientService(new RestTemplate(), cache,
+                new TTSBatchScheduler(hedgeExecutor, limiter, new SimpleMeterRegistry()), hedgeExecutor, hedgeExecutor, limiter,
+                costModel, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "pythonTTSUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/tts");
+        ReflectionTestUtils.setField(service, "retryMaxAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryInitialBackoffMillis", 10L);
+        ReflectionTestUtils.setField(service, "retryMaxBackoffMillis", 50L);
+        ReflectionTestUtils.setField(service, "hedgeQuantile", 0.95);
+        ReflectionTestUtils.setField(service, "hedgeMinSamples", 1);
+        ReflectionTestUtils.setField(service, "hedgeMinDelayMillis", 200L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (gate != null) {
+            gate.countDown();
+        }
+        server.stop(0);
+        hedgeExecutor.shutdownNow();
+    }
+
+    @Test
+    void retriesTransientFailures() {
+        behaviour = request -> request == 1 ? 503 : request == 2 ? 429 : 200;
+
+        assertEquals(List.of("a.wav", "b.wav"), service.requestBatch(List.of("one", "two")));
+        assertEquals(3, requests.get());
+        // 10 * 0.9 * 0.9, then one additive step that does not reach the next integer
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void backsOffOnTimeouts() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setReadTimeout(200);
+        ReflectionTestUtils.setField(service, "restTemplate", new RestTemplate(requestFactory));
+        behaviour = request -> request == 1 ? SLOW : 200;
+
+        assertEquals(List.of("a.wav", "b.wav"), service.requestBatch(List.of("one", "two")));
+        assertEquals(2, requests.get());
+        assertEquals(9, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        behaviour = request -> 500;
+
+        assertThrows(RuntimeException.class, () -> service.requestBatch(List.of("one", "two")));
+        assertEquals(3, requests.get());
+        assertEquals(7, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        behaviour = request -> 400;
+
+        assertThrows(RuntimeException.class, () -> service.requestBatch(List.of("one", "two")));
+        assertEquals(1, requests.get());
+        // Client errors say nothing about backend load
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void hedgesSlowBatch() {
+        ReflectionTestUtils.setField(service, "hedgingEnabled", true);
+        // The first request only seeds the latency window, the second is the slow primary
+        behaviour = request -> request == 2 ? SLOW : 200;
+        service.requestBatch(List.of("warm", "up"));
+
+        long start = System.nanoTime();
+        assertEquals(List.of("a.wav", "b.wav"), service.requestBatch(List.of("one", "two")));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(3, requests.get());
+        assertTrue(elapsedMillis < 2000, "hedge should answer before the slow primary, took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void sendsOnlyCacheMissesAndKeepsBatchOrder() throws Exception {
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", directory.resolve("cache").toString());
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 1024L);
+        ReflectionTestUtils.setField(cache, "audioTempDir", directory.resolve("hits").toString());
+        cache.init();
+        String cachedTwo = Files.writeString(directory.resolve("cached-two.wav"), "two").toString();
+        cache.put(cache.keyFor("two"), cachedTwo);
+        ReflectionTestUtils.setField(service, "pythonTTSUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/tts-echo");
+
+        List<String> segments = service.synthesizeBatch(List.of("one", "two", "three"));
+
+        assertEquals(List.of(List.of("one", "three")), echoed);
+        assertEquals(3, segments.size());
+        assertTrue(segments.get(0).endsWith("one-1.wav"));
+        assertTrue(segments.get(2).endsWith("three-1.wav"));
+        // Hits are handed out as files of their own
+        assertNotEquals(cachedTwo, segments.get(1));
+        assertEquals(List.of("one", "two", "three"), contents(segments));
+        // The misses were cached on the way back
+        assertEquals(List.of("one", "two", "three"), contents(service.synthesizeBatch(List.of("one", "two", "three"))));
+        assertEquals(1, echoed.size());
+        cache.close();
+    }
+
+    @Test
+    void extractionWaitsWhileTooManyBatchesAreInFlight() throws Exception {
+        File pdf = samplePdf(directory.resolve("book.pdf").toFile(), 6);
+        ReflectionTestUtils.setField(service, "batchSize", 1);
+        ReflectionTestUtils.setField(service, "batchTargetMillis", 20000.0);
+        ReflectionTestUtils.setField(service, "maxInFlightBatches", 2);
+        ReflectionTestUtils.setField(service, "pdfChunkSize", 60);
+        ReflectionTestUtils.setField(service, "pdfWindowPages", 1);
+        ReflectionTestUtils.setField(service, "pdfExtractionPartitions", 1);
+        gate = new CountDownLatch(1);
+        AtomicInteger extracted = new AtomicInteger();
+        TTSProgressListener listener = new TTSProgressListener() {
+            @Override
+            public void onChunkExtracted(PDFChunk chunk) {
+                extracted.incrementAndGet();
+            }
+        };
+
+        CompletableFuture<List<String>> job = CompletableFuture.supplyAsync(
+                () -> service.processFileForTTS(pdf.getPath(), listener));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (extracted.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(300);
+        // One chunk per batch, and no chunk is pulled while two batches are outstanding
+        assertEquals(2, extracted.get());
+        assertFalse(job.isDone());
+
+        gate.countDown();
+        List<String> segments = job.get(10, TimeUnit.SECONDS);
+        assertTrue(extracted.get() > 6);
+        // The stub answers every request with two files
+        assertEquals(2 * extracted.get(), segments.size());
+    }
+
+    @Test
+    void resumesUnchangedChunksFromCheckpointsInChunkOrder() throws Exception {
+        File pdf = samplePdf(directory.resolve("book.pdf").toFile(), 3);
+        ReflectionTestUtils.setField(service, "pythonTTSUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/tts-echo");
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "batchTargetMillis", 20000.0);
+        ReflectionTestUtils.setField(service, "maxInFlightBatches", 8);
+        ReflectionTestUtils.setField(service, "pdfChunkSize", 60);
+        ReflectionTestUtils.setField(service, "pdfWindowPages", 1);
+        ReflectionTestUtils.setField(service, "pdfExtractionPartitions", 1);
+        // Chunk index -> {chunk key, segment path}, with the store's contract: same key and file still there
+        Map<Integer, String[]> checkpoints = new ConcurrentHashMap<>();
+        TTSCheckpointStore store = new TTSCheckpointStore() {
+            @Override
+            public Optional<String> completedSegment(int chunkIndex, String chunkKey) {
+                String[] checkpoint = checkpoints.get(chunkIndex);
+                if (checkpoint == null || !checkpoint[0].equals(chunkKey) || !Files.exists(Path.of(checkpoint[1]))) {
+                    return Optional.empty();
+                }
+                return Optional.of(checkpoint[1]);
+            }
+
+            @Override
+            public void record(List<Integer> chunkIndexes, List<String> chunkKeys, List<String> segmentPaths) {
+                for (int i = 0; i < chunkIndexes.size(); i++) {
+                    checkpoints.put(chunkIndexes.get(i), new String[] {chunkKeys.get(i), segmentPaths.get(i)});
+                }
+            }
+        };
+        List<String> texts = Collections.synchronizedList(new ArrayList<>());
+        TTSProgressListener listener = new TTSProgressListener() {
+            @Override
+            public void onChunkExtracted(PDFChunk chunk) {
+                texts.add(chunk.getText());
+            }
+        };
+
+        List<String> first = service.processFileForTTS(pdf.getPath(), listener, store, JobPriority.NORMAL);
+        assertTrue(first.size() > 3);
+        assertEquals(first.size(), checkpoints.size());
+        // Batches run concurrently, so they reach the backend in any order
+        assertEquals(Set.copyOf(texts), echoedTexts());
+
+        // Everything is checkpointed: nothing is sent again
+        echoed.clear();
+        assertEquals(first, service.processFileForTTS(pdf.getPath(), listener, store, JobPriority.NORMAL));
+        assertTrue(echoed.isEmpty());
+
+        // A lost segment file and a chunk whose text hash no longer matches are synthesized again, in place
+        Files.delete(Path.of(first.get(1)));
+        checkpoints.put(3, new String[] {"stale", first.get(3)});
+        texts.clear();
+        List<String> resumed = service.processFileForTTS(pdf.getPath(), listener, store, JobPriority.NORMAL);
+
+        assertEquals(Set.of(texts.get(1), texts.get(3)), echoedTexts());
+        assertEquals(first.size(), resumed.size());
+        for (int i = 0; i < first.size(); i++) {
+            if (i == 1 || i == 3) {
+                assertNotEquals(first.get(i), resumed.get(i));
+                assertTrue(Path.of(resumed.get(i)).getFileName().toString().startsWith(texts.get(i)));
+            } else {
+                assertEquals(first.get(i), resumed.get(i));
+            }
+        }
+        assertEquals(resumed.get(3), checkpoints.get(3)[1]);
+    }
+
+    private static List<String> contents(List<String> paths) throws IOException {
+        List<String> contents = new ArrayList<>();
+        for (String path : paths) {
+            contents.add(Files.readString(Path.of(path)));
+        }
+        return contents;
+    }
+
+    private Set<String> echoedTexts() {
+        synchronized (echoed) {
+            return echoed.stream().flatMap(List::stream).collect(Collectors.toSet());
+        }
+    }
+
+    private static File samplePdf(File file, int pages) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(40, 740);
+                    for (int line = 0; line < 4; line++) {
+                        content.showText("Page " + p + " line " + line + " reads a short sentence.");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
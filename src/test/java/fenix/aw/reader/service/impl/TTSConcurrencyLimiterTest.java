@@ -0,0 +1,181 @@
+package fenix.aw.reader.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TTSConcurrencyLimiterTest {
+
+    private static final long BASELINE_MILLIS = 10;
+
+    @Test
+    void growsAboutOneStepPerRoundTrip() throws Exception {
+        TTSConcurrencyLimiter limiter = limiter(1, 10, 4, 10, 80);
+        overload(limiter);
+        assertEquals(2, limiter.getLimit());
+        assertEquals(40.0, limiter.getRate());
+
+        // 2 -> 2.5 -> 2.9 -> 3.24: a full step takes about as many successes as the limit
+        succeed(limiter, BASELINE_MILLIS);
+        succeed(limiter, BASELINE_MILLIS);
+        assertEquals(2, limiter.getLimit());
+        succeed(limiter, BASELINE_MILLIS);
+        assertEquals(3, limiter.getLimit());
+        double rate = 40.0;
+        for (int i = 0; i < 3; i++) {
+            rate += 1 / rate;
+        }
+        assertEquals(rate, limiter.getRate(), 1e-9);
+    }
+
+    @Test
+    void halvesOnOverloadOncePerRoundOfRequests() throws Exception {
+        TTSConcurrencyLimiter limiter = limiter(1, 10, 8, 10, 80);
+        long startedBeforeCut = limiter.acquire();
+        overload(limiter);
+        assertEquals(4, limiter.getLimit());
+        assertEquals(40.0, limiter.getRate());
+
+        // Started under the old limit, so it does not cut again
+        limiter.release(startedBeforeCut, 0, TTSConcurrencyLimiter.Outcome.OVERLOAD);
+        assertEquals(4, limiter.getLimit());
+
+        overload(limiter);
+        assertEquals(2, limiter.getLimit());
+        assertEquals(20.0, limiter.getRate());
+        // Requests that failed for reasons unrelated to load leave the limits alone
+        limiter.release(limiter.acquire(), 0, TTSConcurrencyLimiter.Outcome.IGNORED);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void cutsWhenLatencyExceedsToleranceOverBaseline() throws Exception {
+        TTSConcurrencyLimiter limiter = limiter(1, 10, 8, 1, 8);
+        succeed(limiter, BASELINE_MILLIS);
+        int grown = limiter.getLimit();
+
+        // Within twice the baseline is still fine
+        succeed(limiter, BASELINE_MILLIS + 5);
+        assertEquals(grown, limiter.getLimit());
+
+        succeed(limiter, BASELINE_MILLIS * 5);
+        assertEquals(4, limiter.getLimit());
+        assertEquals(4.0, limiter.getRate());
+    }
+
+    @Test
+    void judgesLatencyAgainstEachBatchEstimate() throws Exception {
+        TTSConcurrencyLimiter limiter = limiter(1, 10, 4, 10, 1000);
+        Random random = new Random(7);
+        // Small checkpoint flushes and final batches mixed with full cost-packed batches
+        for (int i = 0; i < 40; i++) {
+            double estimate = i % 3 == 0 ? 20 : 1500 + random.nextInt(1000);
+            succeed(limiter, Math.round(estimate * (0.9 + 0.2 * random.nextDouble())), estimate);
+        }
+        assertTrue(limiter.getLimit() >= 9, "limit collapsed to " + limiter.getLimit());
+
+        // A large batch three times slower than its estimate still signals overload
+        succeed(limiter, 6000, 2000);
+        assertTrue(limiter.getLimit() <= 5, "limit not cut: " + limiter.getLimit());
+    }
+
+    @Test
+    void withoutEstimateSuccessOnlyGrows() throws Exception {
+        TTSConcurrencyLimiter limiter = limiter(1, 10, 4, 10, 80);
+        succeed(limiter, 10, 0);
+        succeed(limiter, 5000, 0);
+        assertEquals(4, limiter.getLimit());
+        succeed(limiter, 5000, 0);
+        succeed(limiter, 5000, 0);
+        assertEquals(4, limiter.getLimit());
+        succeed(limiter, 5000, 0);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void staysWithinConfiguredBounds() throws Exception {
+        // The initial limit is clamped to the maximum
+        TTSConcurrencyLimiter limiter = limiter(2, 3, 20, 50, 100);
+        assertEquals(3, limiter.getLimit());
+        for (int i = 0; i < 20; i++) {
+            succeed(limiter, BASELINE_MILLIS);
+        }
+        assertEquals(3, limiter.getLimit());
+        assertEquals(100.0, limiter.getRate());
+
+        for (int i = 0; i < 5; i++) {
+            overload(limiter);
+        }
+        assertEquals(2, limiter.getLimit());
+        assertEquals(50.0, limiter.getRate());
+    }
+
+    @Test
+    void failedRequestsFreeTheirSlot() throws Exception {
+        TTSConcurrencyLimiter limiter = limiter(1, 1, 1, 100, 100);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long first = limiter.acquire();
+            Future<Long> waiting = executor.submit(limiter::acquire);
+            assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+
+            limiter.release(first, 0, TTSConcurrencyLimiter.Outcome.OVERLOAD);
+            long second = waiting.get(5, TimeUnit.SECONDS);
+            assertEquals(1, limiter.getInFlight());
+
+            CompletableFuture<Long> third = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return limiter.acquire();
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }, executor);
+            limiter.release(second, 0, TTSConcurrencyLimiter.Outcome.IGNORED);
+            limiter.release(third.get(5, TimeUnit.SECONDS), 0, TTSConcurrencyLimiter.Outcome.SUCCESS);
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TTSConcurrencyLimiter limiter(int min, int max, int initial, double minRate, double maxRate) {
+        TTSConcurrencyLimiter limiter = new TTSConcurrencyLimiter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(limiter, "minConcurrency", min);
+        ReflectionTestUtils.setField(limiter, "maxConcurrency", max);
+        ReflectionTestUtils.setField(limiter, "initialConcurrency", initial);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.5);
+        ReflectionTestUtils.setField(limiter, "latencyTolerance", 2.0);
+        ReflectionTestUtils.setField(limiter, "minRate", minRate);
+        ReflectionTestUtils.setField(limiter, "maxRate", maxRate);
+        limiter.init();
+        return limiter;
+    }
+
+    private static void succeed(TTSConcurrencyLimiter limiter, long latencyMillis) throws InterruptedException {
+        succeed(limiter, latencyMillis, BASELINE_MILLIS);
+    }
+
+    /**
+     * Completes a request that took {@code latencyMillis} against an estimate of {@code estimatedMillis}.
+     */
+    private static void succeed(TTSConcurrencyLimiter limiter, long latencyMillis, double estimatedMillis)
+            throws InterruptedException {
+        long start = limiter.acquire();
+        limiter.release(start - TimeUnit.MILLISECONDS.toNanos(latencyMillis), estimatedMillis,
+                TTSConcurrencyLimiter.Outcome.SUCCESS);
+    }
+
+    private static void overload(TTSConcurrencyLimiter limiter) throws InterruptedException {
+        limiter.release(limiter.acquire(), 0, TTSConcurrencyLimiter.Outcome.OVERLOAD);
+    }
+}
@@ -0,0 +1,108 @@
+package fenix.aw.reader.util;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractedTextStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storedTextChunksLikeTheParsedPdf() throws Exception {
+        File pdf = samplePdf(directory.resolve("sample.pdf").toFile(), 12);
+        ExtractedTextStore store = new ExtractedTextStore(directory.resolve("text"));
+        PDFProcessor processor = new PDFProcessor(2, ForkJoinPool.commonPool(), store);
+
+        List<String> parsed = describe(new PDFProcessor().openChunkSource(pdf, 300, 3));
+        List<String> firstRun = describe(processor.openChunkSource(pdf, 300, 3));
+        assertTrue(store.open(store.keyFor(pdf)).isPresent());
+        List<String> storedRun = describe(processor.openChunkSource(pdf, 300, 3));
+
+        assertEquals(parsed, firstRun);
+        assertEquals(parsed, storedRun);
+        assertEquals(new PDFProcessor().splitPdfIntoSentences(pdf, 3), processor.splitPdfIntoSentences(pdf, 3));
+    }
+
+    @Test
+    void roundTripsWideCharactersAndEmptyPages() throws Exception {
+        ExtractedTextStore store = new ExtractedTextStore(directory);
+        ExtractedText text;
+        try (ExtractedTextStore.TextWriter writer = store.create("key")) {
+            writer.addPage("first page\n");
+            writer.addPage("");
+            writer.addPage("ünïcode → page\n");
+            text = writer.commit();
+        }
+
+        assertEquals("first page\nünïcode → page\n", text.text().toString());
+        assertEquals(3, text.getPageCount());
+        assertEquals(1, text.pageAt(0));
+        // The empty second page starts where the third does
+        assertEquals(3, text.pageAt(11));
+        assertEquals(store.open("key").orElseThrow().text().toString(), text.text().toString());
+    }
+
+    @Test
+    void latinTextIsStoredOneBytePerCharacter() throws Exception {
+        ExtractedTextStore store = new ExtractedTextStore(directory);
+        try (ExtractedTextStore.TextWriter writer = store.create("latin")) {
+            writer.addPage("café ".repeat(1000));
+            writer.commit();
+        }
+
+        ExtractedText text = store.open("latin").orElseThrow();
+        assertEquals("café ".repeat(1000), text.text().toString());
+        assertEquals("é c", text.text().subSequence(3, 6).toString());
+        assertTrue(directory.resolve("latin.text").toFile().length() < 5000 + 64);
+    }
+
+    private static List<String> describe(PDFChunkSource source) throws Exception {
+        List<String> chunks = new ArrayList<>();
+        try (source) {
+            while (source.hasNext()) {
+                PDFChunk chunk = source.next();
+                chunks.add(chunk.getStartPage() + "-" + chunk.getEndPage() + ":" + chunk.getText());
+            }
+        }
+        return chunks;
+    }
+
+    private static File samplePdf(File file, int pages) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                if (p == 4) {
+                    // An empty page in the middle
+                    continue;
+                }
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(12);
+                    content.newLineAtOffset(40, 740);
+                    for (int line = 0; line < 20; line++) {
+                        content.showText("Page " + p + " line " + line + " reads a short sentence. Then another one");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
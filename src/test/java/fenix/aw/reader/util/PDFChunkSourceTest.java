@@ -0,0 +1,100 @@
+package fenix.aw.reader.util;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PDFChunkSourceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void streamsTheSameChunksAsWholeDocumentSplitting() throws Exception {
+        File pdf = samplePdf(directory.resolve("book.pdf").toFile(), 7);
+        List<String> expected = new PDFProcessor().splitPdfIntoChunks(pdf, 120);
+
+        List<PDFChunk> streamed = new ArrayList<>();
+        try (PDFChunkSource source = new PDFProcessor().openChunkSource(pdf, 120, 2)) {
+            source.forEachRemaining(streamed::add);
+        }
+
+        assertTrue(expected.size() > 7);
+        assertEquals(expected, streamed.stream().map(PDFChunk::getText).toList());
+
+        // Each chunk is labelled with the pages its first and last characters come from
+        List<String> pages = pageTexts(pdf);
+        String text = String.join("", pages);
+        int position = 0;
+        for (PDFChunk chunk : streamed) {
+            int start = text.indexOf(chunk.getText(), position);
+            assertTrue(start >= 0, "chunk not found in document text: " + chunk.getText());
+            int end = start + chunk.getText().length() - 1;
+            assertEquals(pageAt(pages, start), chunk.getStartPage(), chunk.getText());
+            assertEquals(pageAt(pages, end), chunk.getEndPage(), chunk.getText());
+            position = end + 1;
+        }
+        assertEquals(7, streamed.get(streamed.size() - 1).getEndPage());
+    }
+
+    private static List<String> pageTexts(File pdf) throws Exception {
+        List<String> pages = new ArrayList<>();
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int p = 1; p <= document.getNumberOfPages(); p++) {
+                stripper.setStartPage(p);
+                stripper.setEndPage(p);
+                pages.add(stripper.getText(document));
+            }
+        }
+        return pages;
+    }
+
+    private static int pageAt(List<String> pages, int offset) {
+        int pageStart = 0;
+        for (int p = 0; p < pages.size(); p++) {
+            pageStart += pages.get(p).length();
+            if (offset < pageStart) {
+                return p + 1;
+            }
+        }
+        return pages.size();
+    }
+
+    private static File samplePdf(File file, int pages) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(40, 740);
+                    // Sentences run over the page end, so some chunks span two pages
+                    content.showText("rest of a sentence from the page before.");
+                    for (int line = 0; line < 4; line++) {
+                        content.newLine();
+                        content.showText("Page " + p + " line " + line + " reads a sentence of some length.");
+                    }
+                    content.newLine();
+                    content.showText("This one carries on over");
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,80 @@
+package fenix.aw.reader.util;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PDFMemoryBudgetTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void documentsWaitUntilTheyFitInTheBudget() throws Exception {
+        File pdf = samplePdf(directory.resolve("sample.pdf").toFile());
+        long perDocument = new PDFMemoryBudget(1024 * 1024, null, 1, 0).estimate(pdf, 1);
+        // Room for one document, not two
+        PDFMemoryBudget budget = new PDFMemoryBudget(1024 * 1024, null, perDocument * 3 / 2, 0);
+
+        PDFMemoryBudget.Permit first = budget.admit(pdf, 1);
+        CompletableFuture<PDFMemoryBudget.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.admit(pdf, 1);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, budget.getWaiting());
+
+        first.close();
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, budget.getInUse());
+    }
+
+    @Test
+    void chunksTheSameWithScratchFileOnlyParsing() throws Exception {
+        File pdf = samplePdf(directory.resolve("sample.pdf").toFile());
+        PDFMemoryBudget tempFileOnly = new PDFMemoryBudget(0, directory.toFile(), 64L * 1024 * 1024, 0.25);
+
+        assertEquals(new PDFProcessor().splitPdfIntoChunks(pdf, 200),
+                new PDFProcessor(2, ForkJoinPool.commonPool(), null, tempFileOnly).splitPdfIntoChunks(pdf, 200));
+        try (PDFChunkSource source = new PDFProcessor(2, ForkJoinPool.commonPool(), null, tempFileOnly)
+                .openChunkSource(pdf, 200, 2)) {
+            assertTrue(source.hasNext());
+            assertTrue(tempFileOnly.getInUse() > 0);
+        }
+        assertEquals(0, tempFileOnly.getInUse());
+    }
+
+    private static File samplePdf(File file) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 0; p < 4; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.newLineAtOffset(40, 740);
+                    content.showText("Page " + p + " reads a short sentence. Then another one.");
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,88 @@
+package fenix.aw.reader.util;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PDFProcessorTest {
+
+    @TempDir
+    Path directory;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void partitionedExtractionMatchesSerialText() throws Exception {
+        for (int pages : new int[] {1, 5, 7}) {
+            File pdf = samplePdf(directory.resolve(pages + ".pdf").toFile(), pages);
+            String serial = new PDFProcessor(1, executor).loadText(pdf).toString();
+            // Fewer, as many and more partitions than pages, with uneven partition sizes
+            for (int partitions : new int[] {2, 3, pages, pages + 2}) {
+                assertEquals(serial, new PDFProcessor(partitions, executor).loadText(pdf).toString(),
+                        pages + " pages, " + partitions + " partitions");
+            }
+        }
+    }
+
+    @Test
+    void partitionedStreamingMatchesSerialChunks() throws Exception {
+        File pdf = samplePdf(directory.resolve("book.pdf").toFile(), 7);
+        List<String> serial = new PDFProcessor(1, executor).splitPdfIntoChunks(pdf, 150);
+
+        // Windows of 3 pages over 2 partitions put partition and window ends mid-sentence
+        List<String> streamed = new ArrayList<>();
+        try (PDFChunkSource source = new PDFProcessor(2, executor).openChunkSource(pdf, 150, 3)) {
+            source.forEachRemaining(chunk -> streamed.add(chunk.getText()));
+        }
+        assertEquals(serial, streamed);
+    }
+
+    private static File samplePdf(File file, int pages) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(40, 740);
+                    content.showText("carries on from the page before.");
+                    for (int line = 0; line < 3; line++) {
+                        content.newLine();
+                        content.showText("Page " + p + " line " + line + " is a sentence.");
+                    }
+                    content.newLine();
+                    content.showText("And this sentence runs over");
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,115 @@
+package fenix.aw.reader.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTest {
+
+    private static final char[] ALPHABET = {'a', 'b', '.', '.', ' ', ' ', ' ', '\n', '\t', '!', '?', '\r'};
+
+    @Test
+    void chunksMatchPreviousRules() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            String text = randomText(random, random.nextInt(400));
+            int max = 1 + random.nextInt(60);
+            assertEquals(referenceChunks(text, max), TextChunker.splitIntoChunks(text, max),
+                    "max " + max + " text '" + text + "'");
+        }
+    }
+
+    @Test
+    void sentenceChunksMatchPreviousRules() {
+        Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            String text = randomText(random, random.nextInt(400));
+            int max = 1 + random.nextInt(5);
+            assertEquals(referenceSentenceChunks(text, max), TextChunker.splitIntoSentenceChunks(text, max),
+                    "max " + max + " text '" + text + "'");
+        }
+    }
+
+    @Test
+    void acceptsAnyCharSequence() {
+        String text = "First sentence. Second one follows here. Third.";
+        assertEquals(TextChunker.splitIntoChunks(text, 20),
+                TextChunker.splitIntoChunks(new StringBuilder(text), 20));
+        assertEquals(TextChunker.splitIntoChunks(text, 20),
+                TextChunker.splitIntoChunks(CharBuffer.wrap(text), 20));
+    }
+
+    @Test
+    void periodFreeTextIsChunkedAtTheLimit() {
+        // Used to scan back to the start of the text for every chunk
+        String text = "x".repeat(2_000_000);
+
+        List<String> chunks = TextChunker.splitIntoChunks(text, 1000);
+
+        assertEquals(2000, chunks.size());
+        assertTrue(chunks.stream().allMatch(chunk -> chunk.length() == 1000));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return text.toString();
+    }
+
+    // The chunker as it was before it moved to TextChunker
+    private static List<String> referenceChunks(String fullText, int maxCharactersPerChunk) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < fullText.length()) {
+            int end = Math.min(start + maxCharactersPerChunk, fullText.length());
+            if (end < fullText.length()) {
+                int searchStart = Math.max(start, end - maxCharactersPerChunk / 5);
+                int lastPeriod = fullText.lastIndexOf(". ", end);
+                if (lastPeriod > searchStart) {
+                    end = lastPeriod + 1;
+                } else {
+                    int lastSpace = fullText.lastIndexOf(" ", end);
+                    if (lastSpace > searchStart) {
+                        end = lastSpace;
+                    }
+                }
+            }
+            String chunk = fullText.substring(start, end).trim();
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static List<String> referenceSentenceChunks(String fullText, int maxSentencesPerChunk) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder currentChunk = new StringBuilder();
+        int sentenceCount = 0;
+        for (String sentence : fullText.split("(?<=[.!?])\\s+")) {
+            sentence = sentence.trim();
+            if (sentence.isEmpty()) {
+                continue;
+            }
+            if (sentenceCount >= maxSentencesPerChunk) {
+                chunks.add(currentChunk.toString().trim());
+                currentChunk = new StringBuilder();
+                sentenceCount = 0;
+            }
+            currentChunk.append(sentence).append(" ");
+            sentenceCount++;
+        }
+        if (currentChunk.length() > 0) {
+            chunks.add(currentChunk.toString().trim());
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,108 @@
+package fenix.aw.reader.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextSearchIndexTest {
+
+    @Test
+    void findsPhraseWithPageAndAudioOffset() {
+        TextSearchIndex index = new TextSearchIndex();
+        index.startBook(1, "whale.pdf");
+        index.addChunk(1, "Call me Ishmael. Some years ago, never mind how long.", 1, 1);
+        index.addChunk(1, "It is a way I have of driving off the spleen and regulating the circulation.", 1, 2);
+        index.addAudio(1, 4_000);
+        index.addAudio(1, 15_000);
+
+        List<TextSearchIndex.Hit> hits = index.search("\"regulating the circulation\"", null, 10);
+
+        assertEquals(1, hits.size());
+        TextSearchIndex.Hit hit = hits.get(0);
+        assertEquals(1, hit.getBookId());
+        assertEquals(1, hit.getChunkIndex());
+        assertEquals(2, hit.getEndPage());
+        // Word 12 of 15 in a chunk spoken from 4s for 15s
+        assertEquals(4_000 + 15_000 * 12 / 15, hit.getAudioOffsetMillis());
+        assertTrue(index.search("\"the regulating circulation\"", null, 10).isEmpty());
+    }
+
+    @Test
+    void ranksAcrossBooksAndHonoursFilterAndRemoval() {
+        TextSearchIndex index = new TextSearchIndex();
+        index.startBook(1, "a.pdf");
+        index.startBook(2, "b.pdf");
+        // Chunks of concurrent jobs interleave
+        index.addChunk(1, "the sea", 1, 1);
+        index.addChunk(2, "sea sea sea and the sea again", 1, 1);
+        index.addChunk(1, "nothing about water here", 2, 2);
+        index.addChunk(2, "a quiet harbour by the sea", 2, 2);
+
+        List<TextSearchIndex.Hit> hits = index.search("Sea", null, 10);
+        assertEquals(3, hits.size());
+        assertEquals(2, hits.get(0).getBookId());
+        assertEquals(0, hits.get(0).getChunkIndex());
+        assertEquals(-1, hits.get(0).getAudioOffsetMillis());
+
+        List<TextSearchIndex.Hit> second = index.search("sea", 2L, 10);
+        assertEquals(2, second.size());
+        assertTrue(second.stream().allMatch(hit -> hit.getBookId() == 2));
+        assertEquals(1, index.search("harbour sea", null, 10).size());
+
+        index.removeBook(2);
+        assertEquals(1, index.search("sea", null, 10).size());
+        assertEquals(2, index.getChunkCount());
+
+        // Reindexing hides the previous run of the same book
+        index.startBook(1, "a.pdf");
+        index.addChunk(1, "the sea again", 1, 1);
+        assertEquals(1, index.search("sea", null, 10).size());
+        assertTrue(index.search("water", null, 10).isEmpty());
+    }
+
+    @Test
+    void compactsOnceMostChunksAreHidden() {
+        TextSearchIndex index = new TextSearchIndex();
+        index.startBook(1, "a.pdf");
+        index.startBook(2, "b.pdf");
+        index.startBook(3, "c.pdf");
+        index.addChunk(1, "lighthouse keeper", 1, 1);
+        index.addChunk(2, "sea shanty", 1, 1);
+        index.addChunk(3, "sea captain", 1, 1);
+        index.addChunk(1, "keeper of the sea", 2, 2);
+        index.addAudio(1, 2_000);
+        index.addAudio(1, 4_000);
+        index.addChunk(3, "captain's log", 2, 2);
+        assertEquals(9, index.getTermCount());
+
+        index.removeBook(2);
+        // One of five chunks hidden, its terms are still there
+        assertEquals(9, index.getTermCount());
+        index.removeBook(3);
+        assertEquals(2, index.getChunkCount());
+        // Three of five hidden: compacted down to the terms of book 1
+        assertEquals(5, index.getTermCount());
+
+        List<TextSearchIndex.Hit> hits = index.search("sea", null, 10);
+        assertEquals(1, hits.size());
+        assertEquals(1, hits.get(0).getBookId());
+        assertEquals(1, hits.get(0).getChunkIndex());
+        assertEquals(2_000 + 4_000 * 3 / 4, hits.get(0).getAudioOffsetMillis());
+        assertEquals(2, index.search("keeper", 1L, 10).size());
+        assertTrue(index.search("captain", null, 10).isEmpty());
+
+        // Books still being indexed carry on after their chunks were renumbered
+        index.startBook(4, "d.pdf");
+        index.addChunk(4, "the sea again", 1, 1);
+        index.addChunk(1, "a storm at sea", 3, 3);
+        index.addAudio(1, 6_000);
+        List<TextSearchIndex.Hit> storm = index.search("storm", 1L, 10);
+        assertEquals(1, storm.size());
+        assertEquals(2, storm.get(0).getChunkIndex());
+        assertEquals(6_000 + 6_000 * 1 / 4, storm.get(0).getAudioOffsetMillis());
+        assertEquals(3, index.search("sea", null, 10).size());
+        assertEquals(1, index.search("sea", 4L, 10).size());
+    }
+}
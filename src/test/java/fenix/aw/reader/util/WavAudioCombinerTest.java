@@ -0,0 +1,81 @@
+package fenix.aw.reader.util;
+
+import fenix.aw.reader.Exception.AudioCombineException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WavAudioCombinerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final WavAudioCombiner combiner = new WavAudioCombiner();
+
+    @Test
+    void combinesSegmentsInOrder() throws Exception {
+        byte[] first = samples(4410, (byte) 1);
+        byte[] second = samples(2205, (byte) 2);
+        Path a = writeWav("a.wav", first, 22050f);
+        Path b = writeWav("b.wav", second, 22050f);
+
+        Path output = combiner.combine(List.of(a, b), tempDir.resolve("out/book.wav"));
+
+        try (AudioInputStream combined = AudioSystem.getAudioInputStream(output.toFile())) {
+            assertEquals(22050f, combined.getFormat().getSampleRate());
+            assertEquals((first.length + second.length) / 2, combined.getFrameLength());
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(first);
+            expected.write(second);
+            assertArrayEquals(expected.toByteArray(), combined.readAllBytes());
+        }
+        assertEquals(300, WavAudioCombiner.readInfo(output).getDurationMillis());
+    }
+
+    @Test
+    void rejectsSegmentsWithDifferentFormats() throws Exception {
+        Path a = writeWav("a.wav", samples(100, (byte) 1), 22050f);
+        Path b = writeWav("b.wav", samples(100, (byte) 1), 44100f);
+        Path output = tempDir.resolve("book.wav");
+
+        assertThrows(AudioCombineException.class, () -> combiner.combine(List.of(a, b), output));
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    void rejectsNonWavSegments() throws Exception {
+        Path mp3 = Files.write(tempDir.resolve("a.mp3"), new byte[]{'I', 'D', '3', 0});
+
+        assertThrows(AudioCombineException.class,
+                () -> combiner.combine(List.of(mp3), tempDir.resolve("book.wav")));
+    }
+
+    private static byte[] samples(int count, byte value) {
+        byte[] data = new byte[count * 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (value + i % 7);
+        }
+        return data;
+    }
+
+    private Path writeWav(String name, byte[] data, float sampleRate) throws Exception {
+        AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, false);
+        Path file = tempDir.resolve(name);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data), format, data.length / 2)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file.toFile());
+        }
+        return file;
+    }
+}